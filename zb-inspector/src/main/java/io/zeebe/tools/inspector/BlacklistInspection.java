@@ -2,53 +2,213 @@ package io.zeebe.tools.inspector;
 
 import com.fasterxml.jackson.annotation.ObjectIdGenerators.StringIdGenerator;
 import com.google.common.io.CharStreams;
-import io.zeebe.db.ColumnFamily;
 import io.zeebe.db.impl.DbLong;
 import io.zeebe.db.impl.DbNil;
 import io.zeebe.engine.state.ZbColumnFamilies;
 import io.zeebe.engine.state.instance.ElementInstance;
-import io.zeebe.engine.state.instance.ElementInstanceState;
 import io.zeebe.engine.state.instance.Incident;
 import io.zeebe.protocol.impl.record.value.incident.IncidentRecord;
 import io.zeebe.protocol.impl.record.value.workflowinstance.WorkflowInstanceRecord;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import io.zeebe.protocol.record.intent.WorkflowInstanceIntent;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.LongArrayList;
+import org.agrona.collections.MutableInteger;
+import org.agrona.collections.MutableReference;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BlacklistInspection implements EntityInspection {
 
-  @Override
-  public List<String> list(final PartitionState partitionState) {
+  private static final String ELEMENT_RECORD_PROPERTY = "elementRecord";
+  private static final String WORKFLOW_INSTANCE_RECORD_PROPERTY = "workflowInstanceRecord";
 
-    final var elementInstanceState = partitionState.getZeebeState().getWorkflowState()
-        .getElementInstanceState();
+  private static final String JOIN_LOOKUP = "lookup";
+  private static final String JOIN_MERGE = "merge";
+  private static final String JOIN_KEYS = "keys";
+
+  private static final int DEFAULT_MAX_DEPTH = 32;
+  private static final int DEFAULT_MAX_CHILDREN = 100;
+  // the blacklisted keys which are merged with the element instances per seek
+  private static final int MERGE_CHUNK_SIZE = 1_000;
+
+  /**
+   * Supports the option {@code join}, which defines how the blacklisted instances are joined with
+   * the element instances:
+   *
+   * <ul>
+   *   <li>{@code lookup} - looks up the element instance of each blacklisted key (default)
+   *   <li>{@code merge} - collects a chunk of the keys and walks the element instances once in key
+   *       order per chunk, instead of doing a random read per key
+   *   <li>{@code keys} - prints only the keys and doesn't touch the element instances at all
+   * </ul>
+   *
+   * <p>The blacklist is keyed by the workflow instance key, so the workflow instance key range of
+   * the {@link RecordFilter} bounds the walk for each join. The other filters are checked against
+   * the looked up element instance, before it is decoded, and are only supported by the lookup join.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
 
     final var blacklistColumnFamily = partitionState.getZeebeDb()
         .createColumnFamily(ZbColumnFamilies.BLACKLIST, partitionState.getDbContext(), new DbLong(),
             DbNil.INSTANCE);
 
-    final var blacklistedInstances = new ArrayList<String>();
+    final var filter =
+        RecordFilter.of(options, ELEMENT_RECORD_PROPERTY, WORKFLOW_INSTANCE_RECORD_PROPERTY);
+    if (filter.hasErrorType()) {
+      throw new IllegalArgumentException(
+          "Blacklisted instances can't be filtered by " + RecordFilter.OPTION_ERROR_TYPE);
+    }
 
-    blacklistColumnFamily.forEach((key, nil) -> {
-          final var workflowInstanceKey = key.getValue();
+    final var join = options.getString("join", JOIN_LOOKUP);
+    if (filter.hasFieldConditions() && !join.equals(JOIN_LOOKUP)) {
+      throw new IllegalArgumentException(
+          "Blacklisted instances can only be filtered by their fields with join lookup, but got "
+              + join);
+    }
 
-          final var workflowInstance = elementInstanceState.getInstance(workflowInstanceKey);
+    switch (join) {
+      case JOIN_LOOKUP:
+        return listWithLookup(partitionState, cursor, blacklistColumnFamily, filter, entityWriter);
+      case JOIN_MERGE:
+        return listWithMerge(partitionState, cursor, blacklistColumnFamily, filter, entityWriter);
+      case JOIN_KEYS:
+        return cursor.walk(blacklistColumnFamily, filter.getMinWorkflowInstanceKey(),
+            filter.getMaxWorkflowInstanceKey(), (nil, workflowInstanceKey) -> true,
+            (nil, workflowInstanceKey) -> write(entityWriter, workflowInstanceKey, null));
+      default:
+        throw new IllegalArgumentException(
+            "Expected join to be one of lookup, merge or keys, but got " + join);
+    }
+  }
 
-          final var bpmnProcessId = workflowInstance.getValue()
-              .getBpmnProcessId();
+  private static long listWithLookup(final PartitionState partitionState,
+      final ListCursor cursor,
+      final ReadOnlyColumnFamily<DbLong, DbNil> blacklistColumnFamily,
+      final RecordFilter filter,
+      final EntityWriter entityWriter) {
+    final var elementInstanceKey = new DbLong();
+    final var elementInstanceColumnFamily = partitionState.getZeebeDb()
+        .createColumnFamily(ZbColumnFamilies.ELEMENT_INSTANCE_KEY, partitionState.getDbContext(),
+            elementInstanceKey, new DbBufferView());
+    final var workflowInstance = new ElementInstance(-1, WorkflowInstanceIntent.ELEMENT_ACTIVATED,
+        new WorkflowInstanceRecord());
+    // the filter looks up the element instance, the visitor decodes it if it matches
+    final var lookedUpInstance = new MutableReference<DbBufferView>();
 
-          blacklistedInstances.add(toString(workflowInstanceKey, bpmnProcessId));
+    return cursor.walk(blacklistColumnFamily, filter.getMinWorkflowInstanceKey(),
+        filter.getMaxWorkflowInstanceKey(),
+        (nil, workflowInstanceKey) -> {
+          elementInstanceKey.wrapLong(workflowInstanceKey);
+          final var value = elementInstanceColumnFamily.get(elementInstanceKey);
+          lookedUpInstance.set(value);
+
+          // an instance without element instance has no fields to filter by
+          return value == null ? !filter.hasFieldConditions() : filter.matches(value);
+        },
+        (nil, workflowInstanceKey) -> {
+          final var value = lookedUpInstance.get();
+          if (value == null) {
+            write(entityWriter, workflowInstanceKey, null);
+            return;
+          }
+
+          workflowInstance.wrap(value.getBuffer(), 0, value.getLength());
+          write(entityWriter, workflowInstanceKey,
+              workflowInstance.getValue().getBpmnProcessIdBuffer());
         });
+  }
+
+  /**
+   * Merges the blacklisted keys in chunks of {@link #MERGE_CHUNK_SIZE} with the element instances,
+   * each chunk is written before the next one is read, so the memory doesn't grow with the page.
+   */
+  private static long listWithMerge(final PartitionState partitionState,
+      final ListCursor cursor,
+      final ReadOnlyColumnFamily<DbLong, DbNil> blacklistColumnFamily,
+      final RecordFilter filter,
+      final EntityWriter entityWriter) {
+    // the values are only decoded for the blacklisted keys
+    final var elementInstanceColumnFamily = partitionState.getZeebeDb()
+        .createColumnFamily(ZbColumnFamilies.ELEMENT_INSTANCE_KEY, partitionState.getDbContext(),
+            new DbLong(), new DbBufferView());
+    final var workflowInstance = new ElementInstance(-1, WorkflowInstanceIntent.ELEMENT_ACTIVATED,
+        new WorkflowInstanceRecord());
+    final var blacklistedKeys = new LongArrayList();
+    final var firstKey = new DbLong();
+
+    var startKey = cursor.getStartKey();
+    var remaining = cursor.getLimit();
+    while (true) {
+      final var chunkSize = Math.min(remaining, MERGE_CHUNK_SIZE);
+      blacklistedKeys.clear();
+      final var continuation = ListCursor.of(startKey, chunkSize).walk(blacklistColumnFamily,
+          filter.getMinWorkflowInstanceKey(), filter.getMaxWorkflowInstanceKey(),
+          (nil, workflowInstanceKey) -> true,
+          (nil, workflowInstanceKey) -> blacklistedKeys.addLong(workflowInstanceKey));
+
+      if (!blacklistedKeys.isEmpty()) {
+        firstKey.wrapLong(blacklistedKeys.getLong(0));
+        mergeChunk(blacklistedKeys, elementInstanceColumnFamily, firstKey, workflowInstance,
+            entityWriter);
+      }
+
+      remaining -= blacklistedKeys.size();
+      if (continuation == ListCursor.NO_CONTINUATION || remaining == 0) {
+        return continuation;
+      }
+      startKey = continuation;
+    }
+  }
 
-    return blacklistedInstances;
+  private static void mergeChunk(final LongArrayList blacklistedKeys,
+      final ReadOnlyColumnFamily<DbLong, DbBufferView> elementInstanceColumnFamily,
+      final DbLong firstKey,
+      final ElementInstance workflowInstance,
+      final EntityWriter entityWriter) {
+    final var index = new MutableInteger();
+
+    elementInstanceColumnFamily.whileTrue(firstKey, (key, value) -> {
+      final var elementInstanceKey = key.getValue();
+
+      while (index.get() < blacklistedKeys.size()
+          && blacklistedKeys.getLong(index.get()) < elementInstanceKey) {
+        write(entityWriter, blacklistedKeys.getLong(index.getAndIncrement()), null);
+      }
+
+      if (index.get() < blacklistedKeys.size()
+          && blacklistedKeys.getLong(index.get()) == elementInstanceKey) {
+        workflowInstance.wrap(value.getBuffer(), 0, value.getLength());
+        write(entityWriter, elementInstanceKey, workflowInstance.getValue().getBpmnProcessIdBuffer());
+        index.increment();
+      }
+
+      return index.get() < blacklistedKeys.size();
+    });
+
+    while (index.get() < blacklistedKeys.size()) {
+      write(entityWriter, blacklistedKeys.getLong(index.getAndIncrement()), null);
+    }
   }
 
+  /**
+   * Renders the element instance tree of the blacklisted instance. The options {@code max-depth}
+   * and {@code max-children} limit the levels and the children per element instance which are
+   * rendered.
+   */
   @Override
-  public String entity(final PartitionState partitionState, final long key) {
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
     final var elementInstanceState = partitionState.getZeebeState().getWorkflowState()
         .getElementInstanceState();
 
@@ -59,14 +219,26 @@ public class BlacklistInspection implements EntityInspection {
 
     keyType.wrapLong(key);
     final var dbNil = blacklistColumnFamily.get(keyType);
+    if (dbNil == null) {
+      entityConsumer.accept("No entity found for given key " + key);
+      return;
+    }
+
+    final var workflowInstance = elementInstanceState.getInstance(key);
+    if (workflowInstance == null) {
+      entityConsumer.accept("Blacklisted workflow instance " + key + " has no element instance");
+      return;
+    }
+
+    entityConsumer.accept(getBlacklistedWorkflowInstanceAsString(workflowInstance));
 
-    return Optional.ofNullable(dbNil).map(nil -> {
-      final var workflowInstance = elementInstanceState.getInstance(key);
-      return getBlacklistedWorkflowInstanceAsString(elementInstanceState, workflowInstance);
-    }).orElse("No entity found for given key " + key);
+    final var treeRenderer = new ElementInstanceTreeRenderer(partitionState,
+        options.getInt("max-depth", DEFAULT_MAX_DEPTH),
+        options.getInt("max-children", DEFAULT_MAX_CHILDREN));
+    treeRenderer.render(workflowInstance, entityConsumer);
   }
 
-  private static String getBlacklistedWorkflowInstanceAsString(ElementInstanceState elementInstanceState, ElementInstance workflowInstance) {
+  private static String getBlacklistedWorkflowInstanceAsString(ElementInstance workflowInstance) {
 
     final var stringBuilder = new StringBuilder("Blacklisted workflow instance:\n");
 
@@ -79,55 +251,18 @@ public class BlacklistInspection implements EntityInspection {
                  .append("\nBpmnElementType: ").append(workflowInstanceValue.getBpmnElementType())
                  .append("\nParentWorkflowInstanceKey: ").append(workflowInstanceValue.getParentWorkflowInstanceKey());
 
-    return addChildrenRecursive(stringBuilder, 1, elementInstanceState, workflowInstance).toString();
+    return stringBuilder.toString();
   }
 
-  private static StringBuilder addChildrenRecursive(final StringBuilder stringBuilder,
-      final int intend,
-      final ElementInstanceState elementInstanceState,
-      final ElementInstance elementInstance) {
-    if (elementInstance.getKey() != elementInstance.getValue().getWorkflowInstanceKey()) {
-      addElemtentInstance(stringBuilder, intend, elementInstance);
+  /** The BPMN process id is null if the element instance is not joined or doesn't exist. */
+  private static void write(final EntityWriter entityWriter, final long workflowInstanceKey,
+      final DirectBuffer bpmnProcessId) {
+    entityWriter.startEntity("BlacklistedInstance");
+    entityWriter.field("workflow-instance-key", workflowInstanceKey);
+    if (bpmnProcessId != null) {
+      entityWriter.field("BPMN-process-id", bpmnProcessId);
     }
-
-    final var children = elementInstanceState.getChildren(elementInstance.getKey());
-    if (children == null || children.isEmpty()) {
-      return stringBuilder;
-    }
-
-    stringBuilder.append('\n').append("\t".repeat(intend)).append("Childs:\n");
-    for (var child : children) {
-      addChildrenRecursive(stringBuilder, intend + 1, elementInstanceState, child)
-          .append("\n");
-    }
-
-    return stringBuilder;
-  }
-
-  private static void addElemtentInstance(StringBuilder stringBuilder, int intend, ElementInstance childElementInstance) {
-    final var childElementInstanceValue = childElementInstance.getValue();
-    stringBuilder
-        .append('\n').append("\t".repeat(intend))
-        .append("Key: ").append(childElementInstance.getKey())
-        .append('\n').append("\t".repeat(intend))
-        .append("WorkflowInstanceKey: ").append(childElementInstanceValue.getWorkflowInstanceKey())
-        .append('\n').append("\t".repeat(intend))
-        .append("ElementId: ").append(childElementInstanceValue.getElementId())
-        .append('\n').append("\t".repeat(intend))
-        .append("BpmnElementType: ").append(childElementInstanceValue.getBpmnElementType())
-        .append('\n').append("\t".repeat(intend))
-        .append("ParentElementInstanceKey: ").append(childElementInstanceValue.getParentElementInstanceKey())
-        .append('\n').append("\t".repeat(intend))
-        .append("ParentWorkflowInstanceKey: ").append(childElementInstanceValue.getParentWorkflowInstanceKey())
-        .append('\n').append("\t".repeat(intend))
-        .append("FlowScopeKey: ").append(childElementInstanceValue.getFlowScopeKey());
-  }
-
-  private static String toString(final long workflowInstanceKey, final String bpmnProcessId) {
-    return String.format(
-        "Blacklisted Instance [workflow-instance-key: %d, BPMN-process-id: \"%s\"]",
-        workflowInstanceKey,
-        bpmnProcessId);
+    entityWriter.endEntity();
   }
 
 
@@ -0,0 +1,67 @@
+package io.zeebe.tools.inspector;
+
+import org.agrona.ExpandableArrayBuffer;
+
+/**
+ * Encodes the entities into a buffer, which is written to the channel when it reaches the flush
+ * threshold. The buffer is reused, so writing an entity doesn't allocate.
+ */
+abstract class BufferedEntityWriter implements EntityWriter {
+
+  private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+  protected final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(2 * FLUSH_THRESHOLD);
+  protected int offset;
+
+  private final EntityChannel channel;
+  private final int partitionId;
+  private long entityCount;
+
+  /** @param partitionId is written as field of each entity, if it is positive */
+  BufferedEntityWriter(final EntityChannel channel, final int partitionId) {
+    this.channel = channel;
+    this.partitionId = partitionId;
+  }
+
+  @Override
+  public final void startEntity(final String type) {
+    onStartEntity();
+    if (partitionId > 0) {
+      field("partition", partitionId);
+    }
+  }
+
+  @Override
+  public final void endEntity() {
+    onEndEntity();
+    entityCount++;
+
+    if (offset >= FLUSH_THRESHOLD) {
+      flush();
+    }
+  }
+
+  @Override
+  public void text(final String text) {
+    startEntity("Text");
+    field("text", text);
+    endEntity();
+  }
+
+  @Override
+  public final void flush() {
+    if (offset > 0) {
+      channel.write(buffer.byteArray(), offset);
+      offset = 0;
+    }
+  }
+
+  @Override
+  public final long getEntityCount() {
+    return entityCount;
+  }
+
+  protected abstract void onStartEntity();
+
+  protected abstract void onEndEntity();
+}
@@ -0,0 +1,133 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.ZeebeDbException;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import java.util.Arrays;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+/**
+ * Compares a column family of two states with one sequential pass. Both column families are walked
+ * in key order at the same time, like a merge join, so only the current entry of each side is held
+ * in memory, regardless of the size of the states.
+ */
+final class ColumnFamilyDiff {
+
+  private final ZbColumnFamilies columnFamily;
+
+  private long addedKeys;
+  private long removedKeys;
+  private long changedKeys;
+  private long unchangedKeys;
+
+  ColumnFamilyDiff(final ZbColumnFamilies columnFamily) {
+    this.columnFamily = columnFamily;
+  }
+
+  /**
+   * Walks the column family of both states and hands each difference to the visitor, as long as it
+   * returns {@code true}. A column family which doesn't exist in a state is treated as empty.
+   *
+   * @param base the state which is compared with the other one
+   * @param other the state which the changes lead to
+   */
+  void walk(final ReadOnlyZeebeDb base, final ReadOnlyZeebeDb other, final ChangeVisitor visitor) {
+    try (final var baseIterator = base.newIterator(columnFamily);
+        final var otherIterator = other.newIterator(columnFamily)) {
+      if (baseIterator != null) {
+        baseIterator.seekToFirst();
+      }
+      if (otherIterator != null) {
+        otherIterator.seekToFirst();
+      }
+
+      var proceed = true;
+      while (proceed) {
+        final var hasBase = isValid(baseIterator);
+        final var hasOther = isValid(otherIterator);
+        if (!hasBase && !hasOther) {
+          break;
+        }
+
+        // RocksDB orders the keys by their unsigned bytes
+        final var baseKey = hasBase ? baseIterator.key() : null;
+        final var otherKey = hasOther ? otherIterator.key() : null;
+        final var comparison =
+            !hasBase ? 1 : !hasOther ? -1 : Arrays.compareUnsigned(baseKey, otherKey);
+
+        if (comparison < 0) {
+          removedKeys++;
+          proceed = visitor.visit(Change.REMOVED, baseKey, baseIterator.value(), null);
+          baseIterator.next();
+        } else if (comparison > 0) {
+          addedKeys++;
+          proceed = visitor.visit(Change.ADDED, otherKey, null, otherIterator.value());
+          otherIterator.next();
+        } else {
+          final var baseValue = baseIterator.value();
+          final var otherValue = otherIterator.value();
+          if (Arrays.equals(baseValue, otherValue)) {
+            unchangedKeys++;
+          } else {
+            changedKeys++;
+            proceed = visitor.visit(Change.CHANGED, baseKey, baseValue, otherValue);
+          }
+          baseIterator.next();
+          otherIterator.next();
+        }
+      }
+
+      checkStatus(baseIterator);
+      checkStatus(otherIterator);
+    }
+  }
+
+  private static boolean isValid(final RocksIterator iterator) {
+    return iterator != null && iterator.isValid();
+  }
+
+  /**
+   * An iterator also becomes invalid on an I/O error or a corrupted block, which would look like the
+   * end of the column family and show the remaining keys as added or removed.
+   */
+  private void checkStatus(final RocksIterator iterator) {
+    if (iterator == null) {
+      return;
+    }
+
+    try {
+      iterator.status();
+    } catch (final RocksDBException e) {
+      throw new ZeebeDbException(
+          "Unexpected error occurred trying to walk the column family " + columnFamily, e);
+    }
+  }
+
+  void write(final EntityWriter entityWriter) {
+    entityWriter.startEntity("ColumnFamilyDiff");
+    entityWriter.field("key", columnFamily.ordinal());
+    entityWriter.field("name", columnFamily);
+    entityWriter.field("added-keys", addedKeys);
+    entityWriter.field("removed-keys", removedKeys);
+    entityWriter.field("changed-keys", changedKeys);
+    entityWriter.field("unchanged-keys", unchangedKeys);
+    entityWriter.endEntity();
+  }
+
+  enum Change {
+    ADDED,
+    REMOVED,
+    CHANGED
+  }
+
+  @FunctionalInterface
+  interface ChangeVisitor {
+
+    /**
+     * @param baseValue the value in the base state, or {@code null} if the key was added
+     * @param otherValue the value in the other state, or {@code null} if the key was removed
+     * @return {@code true} to continue with the next difference
+     */
+    boolean visit(Change change, byte[] key, byte[] baseValue, byte[] otherValue);
+  }
+}
@@ -0,0 +1,49 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.DbKey;
+import io.zeebe.db.DbValue;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Only wraps a view of the stored bytes without decoding them. This allows to walk a column family
+ * cheaply and decode just the entries which are actually needed.
+ */
+final class DbBufferView implements DbKey, DbValue {
+
+  private final DirectBuffer view = new UnsafeBuffer(0, 0);
+
+  @Override
+  public void wrap(final DirectBuffer buffer, final int offset, final int length) {
+    view.wrap(buffer, offset, length);
+  }
+
+  @Override
+  public int getLength() {
+    return view.capacity();
+  }
+
+  @Override
+  public void write(final MutableDirectBuffer buffer, final int offset) {
+    buffer.putBytes(offset, view, 0, view.capacity());
+  }
+
+  public DirectBuffer getBuffer() {
+    return view;
+  }
+
+  /** Most keys are a single long, other keys are shown as hex. */
+  static String formatKey(final byte[] key) {
+    if (key.length == Long.BYTES) {
+      long value = 0;
+      for (final byte b : key) {
+        value = (value << 8) | (b & 0xFF);
+      }
+      return String.valueOf(value);
+    }
+
+    return "0x" + BitUtil.toHex(key);
+  }
+}
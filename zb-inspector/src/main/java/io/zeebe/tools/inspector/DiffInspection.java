@@ -0,0 +1,167 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.tools.inspector.ColumnFamilyDiff.Change;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Compares the state of a partition with another state of the same partition, like a copy taken
+ * earlier or its snapshot. The column families are the entities of this inspection, their key is
+ * the ordinal of the {@link ZbColumnFamilies}. Each column family is compared with one sequential
+ * pass over both states, the differences are written while they are found.
+ *
+ * <p>The other state is given by the option {@code with}. It can point to the same partition of
+ * another broker - a partition directory, the partitions directory or a directory which contains it
+ * - or directly to a runtime or snapshot directory. The option {@code with-state} defines which
+ * state of another partition directory is opened, like {@code state} for the inspected partition.
+ * The other state is opened read-only like the inspected one, and closed after the inspection.
+ *
+ * <p>A key which only exists in the other state is added, a key which only exists in the inspected
+ * state is removed, and a key with different values in both states is changed.
+ */
+public final class DiffInspection implements EntityInspection {
+
+  // every RocksDB directory contains it, it names the current manifest
+  private static final String DB_CURRENT_FILE = "CURRENT";
+
+  /** Writes the differences of each column family, followed by its summary. */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var base = partitionState.getZeebeDb();
+
+    try (final var other = openOtherState(partitionState, options)) {
+      int visited = 0;
+      for (final var columnFamily : ZbColumnFamilies.values()) {
+        if (columnFamily.ordinal() < cursor.getStartKey()
+            || !existsInEither(columnFamily, base, other)) {
+          continue;
+        }
+
+        if (visited >= cursor.getLimit()) {
+          return columnFamily.ordinal();
+        }
+
+        final var diff = new ColumnFamilyDiff(columnFamily);
+        diff.walk(
+            base,
+            other,
+            (change, key, baseValue, otherValue) -> {
+              writeChange(columnFamily, change, key, baseValue, otherValue, entityWriter);
+              return true;
+            });
+        diff.write(entityWriter);
+        visited++;
+      }
+    }
+
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /** Shows the differences of one column family, followed by its summary. */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var columnFamilies = ZbColumnFamilies.values();
+    if (key < 0 || key >= columnFamilies.length) {
+      entityConsumer.accept("No column family found with key: " + key);
+      return;
+    }
+
+    final var base = partitionState.getZeebeDb();
+    final var columnFamily = columnFamilies[(int) key];
+
+    try (final var other = openOtherState(partitionState, options)) {
+      if (!existsInEither(columnFamily, base, other)) {
+        entityConsumer.accept("No column family found with key: " + key);
+        return;
+      }
+
+      final var entityWriter = new TextEntityWriter(entityConsumer);
+      final var diff = new ColumnFamilyDiff(columnFamily);
+      diff.walk(
+          base,
+          other,
+          (change, entryKey, baseValue, otherValue) -> {
+            writeChange(columnFamily, change, entryKey, baseValue, otherValue, entityWriter);
+            return true;
+          });
+      diff.write(entityWriter);
+    }
+  }
+
+  private static boolean existsInEither(
+      final ZbColumnFamilies columnFamily,
+      final ReadOnlyZeebeDb base,
+      final ReadOnlyZeebeDb other) {
+    return base.getColumnFamilies().contains(columnFamily)
+        || other.getColumnFamilies().contains(columnFamily);
+  }
+
+  private static void writeChange(
+      final ZbColumnFamilies columnFamily,
+      final Change change,
+      final byte[] key,
+      final byte[] baseValue,
+      final byte[] otherValue,
+      final EntityWriter entityWriter) {
+    entityWriter.startEntity("Change");
+    entityWriter.field("column-family", columnFamily);
+    entityWriter.field("change", change);
+    entityWriter.field("entry-key", DbBufferView.formatKey(key));
+    if (baseValue != null) {
+      entityWriter.field("value-bytes-before", baseValue.length);
+    }
+    if (otherValue != null) {
+      entityWriter.field("value-bytes-after", otherValue.length);
+    }
+    entityWriter.endEntity();
+  }
+
+  private static ReadOnlyZeebeDb openOtherState(
+      final PartitionState partitionState, final InspectionOptions options) {
+    final var with = options.getString("with", null);
+    if (with == null) {
+      throw new IllegalArgumentException(
+          "Expected the option with, which points to the state to compare with");
+    }
+
+    final var withState = options.getString("with-state", null);
+    final var path = Path.of(with);
+    final Path dbDirectory;
+    try {
+      if (Partition.isPartitionDirectory(path)) {
+        dbDirectory = new Partition(path, withState).getDbDirectory();
+      } else {
+        final var partitionDirectory =
+            Inspector.getPartitionsDirectory(path)
+                .resolve(String.valueOf(partitionState.getPartitionId()));
+        if (Files.isDirectory(partitionDirectory)) {
+          dbDirectory = new Partition(partitionDirectory, withState).getDbDirectory();
+        } else if (Files.exists(path.resolve(DB_CURRENT_FILE))) {
+          dbDirectory = path;
+        } else {
+          throw new IllegalArgumentException(
+              "Expected the state of partition "
+                  + partitionState.getPartitionId()
+                  + " to compare with, but found none in "
+                  + path);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to find the state to compare with in " + path, e);
+    }
+
+    return ReadOnlyZeebeDb.open(dbDirectory);
+  }
+}
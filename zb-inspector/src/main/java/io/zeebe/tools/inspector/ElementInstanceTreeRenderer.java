@@ -0,0 +1,217 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.ColumnFamily;
+import io.zeebe.db.impl.DbCompositeKey;
+import io.zeebe.db.impl.DbLong;
+import io.zeebe.db.impl.DbNil;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.engine.state.instance.ElementInstance;
+import io.zeebe.engine.state.instance.ElementInstanceState;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.agrona.collections.LongArrayList;
+
+/**
+ * Renders the element instance tree below a workflow instance. The tree is traversed iteratively
+ * and every element instance is handed to the consumer as soon as it is rendered, so neither the
+ * call stack nor the output buffer grow with the size of the tree.
+ *
+ * <p>The children of an element instance are read with one keys-only prefix scan of the
+ * parent-child column family, only the rendered children are loaded afterwards. The depth and the
+ * number of rendered children per element instance are limited, skipped children are still
+ * counted per level. The indents and the counters per level grow with the depth which the walk
+ * reaches, not with the depth limit.
+ */
+final class ElementInstanceTreeRenderer {
+
+  private static final int INITIAL_LEVELS = 8;
+
+  private final ElementInstanceState elementInstanceState;
+  private final ColumnFamily<DbCompositeKey<DbLong, DbLong>, DbNil> parentChildColumnFamily;
+  private final DbLong parentKey = new DbLong();
+  private final StringBuilder builder = new StringBuilder();
+
+  private final int maxDepth;
+  private final int maxChildren;
+  private String[] indents = new String[INITIAL_LEVELS];
+  private long[] childCountPerLevel = new long[INITIAL_LEVELS];
+  private long[] renderedCountPerLevel = new long[INITIAL_LEVELS];
+
+  ElementInstanceTreeRenderer(
+      final PartitionState partitionState, final int maxDepth, final int maxChildren) {
+    if (maxDepth < 1 || maxChildren < 1) {
+      throw new IllegalArgumentException(
+          "Expected max depth and max children to be positive, but got "
+              + maxDepth
+              + " and "
+              + maxChildren);
+    }
+
+    elementInstanceState =
+        partitionState.getZeebeState().getWorkflowState().getElementInstanceState();
+    parentChildColumnFamily =
+        partitionState
+            .getZeebeDb()
+            .createColumnFamily(
+                ZbColumnFamilies.ELEMENT_INSTANCE_PARENT_CHILD,
+                partitionState.getDbContext(),
+                new DbCompositeKey<>(new DbLong(), new DbLong()),
+                DbNil.INSTANCE);
+
+    this.maxDepth = maxDepth;
+    this.maxChildren = maxChildren;
+  }
+
+  void render(final ElementInstance workflowInstance, final Consumer<String> consumer) {
+    final var rootChildren = readChildren(workflowInstance.getKey(), 1);
+    if (rootChildren.count == 0) {
+      return;
+    }
+
+    consumer.accept(indent(1) + "Childs:");
+
+    final var stack = new ArrayDeque<Children>();
+    stack.push(rootChildren);
+
+    while (!stack.isEmpty()) {
+      final var children = stack.peek();
+      final var level = children.level;
+
+      if (!children.hasNext()) {
+        stack.pop();
+
+        final var skipped = children.count - children.keys.size();
+        if (skipped > 0) {
+          consumer.accept(indent(level + 1) + "... " + skipped + " more children not shown");
+        }
+        continue;
+      }
+
+      final var child = elementInstanceState.getInstance(children.next());
+      if (child == null) {
+        continue;
+      }
+
+      consumer.accept(renderElementInstance(level + 1, child));
+      renderedCountPerLevel[level]++;
+
+      final var grandChildren = readChildren(child.getKey(), level + 1);
+      if (grandChildren.count == 0) {
+        continue;
+      }
+
+      if (level + 1 > maxDepth) {
+        consumer.accept(
+            indent(level + 1) + "... " + grandChildren.count + " children not shown (max depth)");
+      } else {
+        consumer.accept(indent(level + 1) + "Childs:");
+        stack.push(grandChildren);
+      }
+    }
+
+    consumer.accept(renderSummary());
+  }
+
+  private Children readChildren(final long elementInstanceKey, final int level) {
+    final var children = new Children(level);
+    final var keepKeys = level <= maxDepth;
+
+    parentKey.wrapLong(elementInstanceKey);
+    parentChildColumnFamily.whileEqualPrefix(
+        parentKey,
+        (key, nil) -> {
+          if (keepKeys && children.keys.size() < maxChildren) {
+            children.keys.addLong(key.getSecond().getValue());
+          }
+          children.count++;
+          return true;
+        });
+
+    ensureLevel(level);
+    childCountPerLevel[level] += children.count;
+    return children;
+  }
+
+  private String indent(final int level) {
+    ensureLevel(level);
+    var indent = indents[level];
+    if (indent == null) {
+      indent = "\t".repeat(level);
+      indents[level] = indent;
+    }
+    return indent;
+  }
+
+  private void ensureLevel(final int level) {
+    if (level < indents.length) {
+      return;
+    }
+
+    final var levels = Math.max(level + 1, indents.length * 2);
+    indents = Arrays.copyOf(indents, levels);
+    childCountPerLevel = Arrays.copyOf(childCountPerLevel, levels);
+    renderedCountPerLevel = Arrays.copyOf(renderedCountPerLevel, levels);
+  }
+
+  private String renderElementInstance(final int intend, final ElementInstance elementInstance) {
+    final var indent = indent(intend);
+    final var value = elementInstance.getValue();
+
+    builder.setLength(0);
+    builder
+        .append(indent).append("Key: ").append(elementInstance.getKey())
+        .append('\n').append(indent)
+        .append("WorkflowInstanceKey: ").append(value.getWorkflowInstanceKey())
+        .append('\n').append(indent)
+        .append("ElementId: ").append(value.getElementId())
+        .append('\n').append(indent)
+        .append("BpmnElementType: ").append(value.getBpmnElementType())
+        .append('\n').append(indent)
+        .append("ParentElementInstanceKey: ").append(value.getParentElementInstanceKey())
+        .append('\n').append(indent)
+        .append("ParentWorkflowInstanceKey: ").append(value.getParentWorkflowInstanceKey())
+        .append('\n').append(indent)
+        .append("FlowScopeKey: ").append(value.getFlowScopeKey());
+    return builder.toString();
+  }
+
+  private String renderSummary() {
+    builder.setLength(0);
+    builder.append("Children per level:");
+
+    for (int level = 1; level < childCountPerLevel.length; level++) {
+      if (childCountPerLevel[level] == 0) {
+        break;
+      }
+
+      builder
+          .append('\n').append(indent(1))
+          .append("Level ").append(level).append(": ")
+          .append(childCountPerLevel[level]).append(" children, ")
+          .append(renderedCountPerLevel[level]).append(" shown");
+    }
+
+    return builder.toString();
+  }
+
+  private static final class Children {
+
+    private final int level;
+    private final LongArrayList keys = new LongArrayList();
+    private long count;
+    private int next;
+
+    private Children(final int level) {
+      this.level = level;
+    }
+
+    private boolean hasNext() {
+      return next < keys.size();
+    }
+
+    private long next() {
+      return keys.getLong(next++);
+    }
+  }
+}
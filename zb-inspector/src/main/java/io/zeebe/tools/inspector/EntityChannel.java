@@ -0,0 +1,68 @@
+package io.zeebe.tools.inspector;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The output of the machine-readable formats. The writers buffer complete entities and write them
+ * in chunks, so the writers of several partitions can share one channel without interleaving their
+ * entities.
+ */
+final class EntityChannel implements AutoCloseable {
+
+  private final WritableByteChannel channel;
+  private final boolean closeChannel;
+
+  private EntityChannel(final WritableByteChannel channel, final boolean closeChannel) {
+    this.channel = channel;
+    this.closeChannel = closeChannel;
+  }
+
+  /** Opens the given file, its previous content is replaced. */
+  static EntityChannel open(final Path file) throws IOException {
+    final var channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    return new EntityChannel(channel, true);
+  }
+
+  /** Writes to the standard output, which is not closed with the channel. */
+  static EntityChannel standardOutput() {
+    return new EntityChannel(new FileOutputStream(FileDescriptor.out).getChannel(), false);
+  }
+
+  /** Writes to the given stream, which is not closed with the channel. */
+  static EntityChannel of(final OutputStream outputStream) {
+    return new EntityChannel(Channels.newChannel(outputStream), false);
+  }
+
+  synchronized void write(final byte[] bytes, final int length) {
+    final var buffer = ByteBuffer.wrap(bytes, 0, length);
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write the entities", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closeChannel) {
+      channel.close();
+    }
+  }
+}
@@ -1,9 +1,29 @@
 package io.zeebe.tools.inspector;
 
-import io.zeebe.engine.state.ZeebeState;
-import java.util.List;
+import java.util.function.Consumer;
 
 public interface EntityInspection {
-  List<String> list(final PartitionState partitionState);
-  String entity(final PartitionState partitionState, final long key);
+
+  /**
+   * Streams the entities of the page described by the cursor to the given writer, as they are read
+   * from the state.
+   *
+   * @return the key to continue the listing with, or {@link ListCursor#NO_CONTINUATION} if there
+   *     are no more entities
+   */
+  long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter);
+
+  /**
+   * Streams the details of the entity with the given key to the consumer. Small entities are
+   * passed as one string, bigger ones in several parts.
+   */
+  void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer);
 }
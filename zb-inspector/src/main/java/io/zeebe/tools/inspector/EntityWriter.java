@@ -0,0 +1,35 @@
+package io.zeebe.tools.inspector;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Writes the entities of a listing field by field, so an inspection can pass the values of the
+ * decoded records directly to the output format, without formatting them as a string first.
+ *
+ * <p>A writer is used by one thread. The text values which are given as buffers are expected to be
+ * UTF-8 encoded.
+ */
+public interface EntityWriter {
+
+  /** Starts a new entity, the type is only used by formats which are read by humans. */
+  void startEntity(String type);
+
+  void field(String name, long value);
+
+  void field(String name, String value);
+
+  void field(String name, DirectBuffer value);
+
+  void field(String name, Enum<?> value);
+
+  void endEntity();
+
+  /** Writes a free-form text which is not an entity, like the details of a single entity. */
+  void text(String text);
+
+  /** Writes the buffered entities to the output. */
+  void flush();
+
+  /** @return the number of entities which were written so far */
+  long getEntityCount();
+}
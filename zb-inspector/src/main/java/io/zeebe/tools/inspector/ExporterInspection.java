@@ -1,41 +1,168 @@
 package io.zeebe.tools.inspector;
 
 import io.zeebe.broker.exporter.stream.ExporterPosition;
-import io.zeebe.db.ColumnFamily;
 import io.zeebe.db.impl.DbString;
 import io.zeebe.engine.state.ZbColumnFamilies;
-import io.zeebe.util.buffer.BufferUtil;
-import java.util.ArrayList;
-import java.util.List;
+import io.zeebe.tools.inspector.PartitionLog.Location;
+import io.zeebe.tools.inspector.PartitionLog.Segment;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import org.agrona.collections.MutableInteger;
+import org.agrona.collections.MutableLong;
 
+/**
+ * Compares the positions of the exporters with the end of the partition's log. The log can only be
+ * compacted up to the position of the slowest exporter, so a lagging exporter holds back the
+ * segments which contain the records after its position.
+ */
 public final class ExporterInspection implements EntityInspection {
 
+  /**
+   * Exporters are keyed by their id instead of a long key. The key of an exporter in this
+   * inspection is its index in the order of the ids, which is also used as start key of the cursor.
+   * The end of the log is read once per partition, not per exporter.
+   *
+   * <p>The lag is shown in log entries and bytes, which only needs the segment of the exporter's
+   * position. Supports the option {@code precision}: {@code exact} also counts the records after the
+   * position, which reads all entries of the lag.
+   */
   @Override
-  public List<String> list(final PartitionState partitionState) {
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
 
-    final ColumnFamily<DbString, ExporterPosition> exporterPositionColumnFamily =
-        getExporterPositionColumnFamily(partitionState);
+    final var log = partitionState.getLog();
+    final var countRecords = options.isExactPrecision();
+    final var index = new MutableInteger();
+    final var continuation = new MutableLong(ListCursor.NO_CONTINUATION);
 
-    final var exporters = new ArrayList<String>();
+    getExporterPositionColumnFamily(partitionState)
+        .whileTrue(
+            (exporterId, exporterPosition) -> {
+              final var key = index.getAndIncrement();
+              if (key < cursor.getStartKey()) {
+                return true;
+              }
 
-    exporterPositionColumnFamily.forEach(
-        (exporterId, exporterPosition) -> {
-          final var id = BufferUtil.bufferAsString(exporterId.getBuffer());
-          final var position = exporterPosition.get();
+              if (key - Math.max(0, cursor.getStartKey()) >= cursor.getLimit()) {
+                continuation.set(key);
+                return false;
+              }
 
-          final var exporter = String.format("Exporter[id: \"%s\", position: %d]", id, position);
-          exporters.add(exporter);
-        });
+              entityWriter.startEntity("Exporter");
+              entityWriter.field("key", key);
+              entityWriter.field("id", exporterId.getBuffer());
+              writeLag(log, exporterPosition.get(), countRecords, entityWriter);
+              entityWriter.endEntity();
+              return true;
+            });
 
-    return exporters;
+    return continuation.get();
   }
 
+  /**
+   * Shows the lag of the exporter and the segments of the log which it holds back. Supports the
+   * option {@code precision} like the listing.
+   */
   @Override
-  public String entity(final PartitionState partitionState, final long key) {
-    return "nope";
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var log = partitionState.getLog();
+    final var countRecords = options.isExactPrecision();
+    final var entityWriter = new TextEntityWriter(entityConsumer);
+    final var index = new MutableInteger();
+    final var position = new MutableLong(-1);
+
+    getExporterPositionColumnFamily(partitionState)
+        .whileTrue(
+            (exporterId, exporterPosition) -> {
+              if (index.getAndIncrement() < key) {
+                return true;
+              }
+
+              position.set(exporterPosition.get());
+              entityWriter.startEntity("Exporter");
+              entityWriter.field("key", key);
+              entityWriter.field("id", exporterId.getBuffer());
+              writeLag(log, exporterPosition.get(), countRecords, entityWriter);
+              entityWriter.endEntity();
+              return false;
+            });
+
+    if (index.get() <= key) {
+      entityConsumer.accept("No exporter found with key: " + key);
+      return;
+    }
+
+    if (log.isEmpty()) {
+      entityConsumer.accept("No log segments found in the partition directory");
+      return;
+    }
+
+    final var builder =
+        new StringBuilder("Log segments (last index: ")
+            .append(log.getLastIndex())
+            .append(", last position: ")
+            .append(log.getLastPosition())
+            .append("):");
+    final var heldSegments = log.getSegmentsAfter(position.get());
+    for (final var segment : log.getSegments()) {
+      builder
+          .append("\n\tSegment ")
+          .append(segment.getId())
+          .append(": first index ")
+          .append(segment.getFirstIndex())
+          .append(", positions ")
+          .append(segment.getFirstPosition())
+          .append(" - ")
+          .append(segment.getLastPosition())
+          .append(", ")
+          .append(segment.getBytes())
+          .append(" bytes")
+          .append(heldSegments.contains(segment) ? ", held back" : "");
+    }
+    entityConsumer.accept(builder.toString());
+  }
+
+  /** Without log segments, for example in a copy of the state, only the position is known. */
+  private static void writeLag(
+      final PartitionLog log,
+      final long position,
+      final boolean countRecords,
+      final EntityWriter entityWriter) {
+    entityWriter.field("position", position);
+    if (log.isEmpty()) {
+      return;
+    }
+
+    final Location location;
+    final long lagRecords;
+    try {
+      location = log.locateAfter(position);
+      lagRecords =
+          countRecords && location != null ? log.countRecordsAfter(position, location) : 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the log", e);
+    }
+
+    final var heldSegments = log.getSegmentsAfter(position);
+    if (countRecords) {
+      entityWriter.field("lag-records", lagRecords);
+    }
+    entityWriter.field("lag-entries", location == null ? 0 : log.countEntriesFrom(location));
+    entityWriter.field("lag-bytes", location == null ? 0 : log.countBytesFrom(location));
+    entityWriter.field("held-segments", heldSegments.size());
+    entityWriter.field(
+        "held-bytes", heldSegments.stream().mapToLong(Segment::getFileBytes).sum());
   }
 
-  private ColumnFamily<DbString, ExporterPosition> getExporterPositionColumnFamily(
+  private ReadOnlyColumnFamily<DbString, ExporterPosition> getExporterPositionColumnFamily(
       final PartitionState partitionState) {
     return partitionState
         .getZeebeDb()
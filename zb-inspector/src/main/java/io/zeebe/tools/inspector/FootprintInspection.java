@@ -0,0 +1,286 @@
+package io.zeebe.tools.inspector;
+
+import static io.zeebe.util.buffer.BufferUtil.bufferAsString;
+
+import io.zeebe.db.impl.DbLong;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.MutableLong;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Finds the workflow instances which take the most space in the state: their element instances and
+ * the variables of their scopes, in bytes of keys and values. A few instances with huge variable
+ * documents or a runaway multi-instance body can make the state and its snapshots grow a lot.
+ */
+public final class FootprintInspection implements EntityInspection {
+
+  private static final int DEFAULT_TOP = 10;
+  private static final int DEFAULT_MAX_TRACKED = 100_000;
+
+  // the element instance key at the start of the variable keys, followed by the variable name
+  private static final int SCOPE_KEY_LENGTH = Long.BYTES;
+  private static final int VARIABLE_NAME_OFFSET = SCOPE_KEY_LENGTH + Integer.BYTES;
+
+  /**
+   * Lists the workflow instances with the biggest footprint, the biggest first. The element
+   * instances and the variables are both keyed by the element instance key, so they are walked
+   * together with one pass. Only the workflow instance key of an element instance is read, and only
+   * the size of a variable.
+   *
+   * <p>Supports the options {@code top}, the number of listed instances, and {@code max-tracked},
+   * the maximum number of instances which are tracked during the pass. If the partition has more
+   * instances, the footprints are estimates - see {@link FootprintTracker}. The cursor is not used.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var top = getTop(options);
+    final var maxTracked = options.getInt("max-tracked", DEFAULT_MAX_TRACKED);
+    if (maxTracked <= 0) {
+      throw new IllegalArgumentException(
+          "Expected max-tracked to be positive, but got " + maxTracked);
+    }
+
+    final var zeebeDb = partitionState.getZeebeDb();
+    final var tracker = new FootprintTracker(maxTracked);
+    final var elementInstanceReader = new PropertyReader("elementRecord", "workflowInstanceRecord");
+    final var workflowInstanceKey = elementInstanceReader.addInteger("workflowInstanceKey");
+    final var valueView = new UnsafeBuffer(0, 0);
+    // only the size of a variable is needed, its value is not copied
+    final var variableValue = ByteBuffer.allocateDirect(1);
+
+    try (final var elementInstances = zeebeDb.newIterator(ZbColumnFamilies.ELEMENT_INSTANCE_KEY);
+        final var variables = zeebeDb.newIterator(ZbColumnFamilies.VARIABLES)) {
+      if (elementInstances == null) {
+        return ListCursor.NO_CONTINUATION;
+      }
+
+      if (variables != null) {
+        variables.seekToFirst();
+      }
+      for (elementInstances.seekToFirst(); elementInstances.isValid(); elementInstances.next()) {
+        final var elementInstanceKey = elementInstances.key();
+        final var elementInstance = elementInstances.value();
+        valueView.wrap(elementInstance);
+        elementInstanceReader.read(valueView, 0, elementInstance.length);
+
+        long variableCount = 0;
+        long variableBytes = 0;
+        while (variables != null && variables.isValid()) {
+          final var variableKey = variables.key();
+          final var comparison =
+              Arrays.compareUnsigned(
+                  variableKey, 0, SCOPE_KEY_LENGTH, elementInstanceKey, 0, SCOPE_KEY_LENGTH);
+          if (comparison > 0) {
+            break;
+          }
+
+          // variables of a scope which is not an element instance anymore are skipped
+          if (comparison == 0) {
+            variableCount++;
+            variableBytes += variableKey.length + variables.value(variableValue);
+            variableValue.clear();
+          }
+          variables.next();
+        }
+
+        tracker.add(
+            elementInstanceReader.getInteger(workflowInstanceKey),
+            elementInstanceKey.length + elementInstance.length,
+            variableCount,
+            variableBytes);
+      }
+    }
+
+    final var elementInstanceColumnFamily = getElementInstanceColumnFamily(partitionState);
+    final var rootReader = new PropertyReader("elementRecord", "workflowInstanceRecord");
+    final var bpmnProcessId = rootReader.addString("bpmnProcessId");
+    final var instanceKey = new DbLong();
+    final var approximate = tracker.isApproximate();
+
+    tracker.writeTop(
+        top,
+        (key, bytes, error, elementInstanceCount, variableCount, variableBytes) -> {
+          entityWriter.startEntity("WorkflowInstance");
+          entityWriter.field("key", key);
+
+          // the element instance of the workflow instance itself has the same key
+          instanceKey.wrapLong(key);
+          final var rootInstance = elementInstanceColumnFamily.get(instanceKey);
+          if (rootInstance != null) {
+            rootReader.read(rootInstance.getBuffer(), 0, rootInstance.getLength());
+            entityWriter.field("BPMN-process-id", rootReader.getString(bpmnProcessId));
+          }
+
+          entityWriter.field("bytes", bytes);
+          if (approximate) {
+            entityWriter.field("bytes-error", error);
+          }
+          entityWriter.field("element-instances", elementInstanceCount);
+          entityWriter.field("variables", variableCount);
+          entityWriter.field("variable-bytes", variableBytes);
+          entityWriter.endEntity();
+        });
+
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /**
+   * Shows the exact footprint of the workflow instance, by walking its element instance tree, and
+   * its biggest variables. Supports the option {@code top}, the number of shown variables.
+   */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var top = getTop(options);
+    final var zeebeDb = partitionState.getZeebeDb();
+    final var dbContext = partitionState.getDbContext();
+
+    final var elementInstanceColumnFamily = getElementInstanceColumnFamily(partitionState);
+    final var childrenColumnFamily =
+        zeebeDb.createColumnFamily(
+            ZbColumnFamilies.ELEMENT_INSTANCE_PARENT_CHILD,
+            dbContext,
+            new DbBufferView(),
+            new DbBufferView());
+    final var variablesColumnFamily =
+        zeebeDb.createColumnFamily(
+            ZbColumnFamilies.VARIABLES, dbContext, new DbBufferView(), new DbBufferView());
+
+    final var elementInstanceKey = new DbLong();
+    elementInstanceKey.wrapLong(key);
+    final var rootInstance = elementInstanceColumnFamily.get(elementInstanceKey);
+    if (rootInstance == null) {
+      entityConsumer.accept("No workflow instance found with key: " + key);
+      return;
+    }
+
+    final var rootReader = new PropertyReader("elementRecord", "workflowInstanceRecord");
+    final var bpmnProcessId = rootReader.addString("bpmnProcessId");
+    rootReader.read(rootInstance.getBuffer(), 0, rootInstance.getLength());
+    final var bpmnProcessIdString = bufferAsString(rootReader.getString(bpmnProcessId));
+
+    final var bytes = new MutableLong();
+    final var elementInstances = new MutableLong();
+    final var variables = new MutableLong();
+    final var variableBytes = new MutableLong();
+    final var biggestVariables =
+        new PriorityQueue<Variable>(Comparator.comparingInt(variable -> variable.bytes));
+    final var pending = new ArrayDeque<Long>();
+    pending.push(key);
+
+    while (!pending.isEmpty()) {
+      final long scopeKey = pending.pop();
+      elementInstanceKey.wrapLong(scopeKey);
+
+      final var elementInstance = elementInstanceColumnFamily.get(elementInstanceKey);
+      if (elementInstance == null) {
+        continue;
+      }
+      bytes.getAndAdd(Long.BYTES + elementInstance.getLength());
+      elementInstances.increment();
+
+      variablesColumnFamily.whileEqualPrefix(
+          elementInstanceKey,
+          (variableKey, variableValue) -> {
+            final var variableSize = variableKey.getLength() + variableValue.getLength();
+            bytes.getAndAdd(variableSize);
+            variables.increment();
+            variableBytes.getAndAdd(variableSize);
+
+            if (top == 0) {
+              return;
+            }
+            if (biggestVariables.size() < top) {
+              biggestVariables.add(new Variable(scopeKey, variableKey.getBuffer(), variableSize));
+            } else if (biggestVariables.peek().bytes < variableSize) {
+              biggestVariables.poll();
+              biggestVariables.add(new Variable(scopeKey, variableKey.getBuffer(), variableSize));
+            }
+          });
+
+      // the children are keyed by the parent key, followed by their own key
+      childrenColumnFamily.whileEqualPrefix(
+          elementInstanceKey,
+          (childKey, nil) -> {
+            pending.push(childKey.getBuffer().getLong(Long.BYTES, ByteOrder.BIG_ENDIAN));
+          });
+    }
+
+    entityConsumer.accept(
+        String.format(
+            "WorkflowInstance[key: %d, BPMN-process-id: \"%s\", bytes: %d, element-instances: %d, variables: %d, variable-bytes: %d]",
+            key,
+            bpmnProcessIdString,
+            bytes.get(),
+            elementInstances.get(),
+            variables.get(),
+            variableBytes.get()));
+
+    if (top > 0 && !biggestVariables.isEmpty()) {
+      final var sortedVariables = new ArrayList<>(biggestVariables);
+      sortedVariables.sort(biggestVariables.comparator().reversed());
+
+      final var builder = new StringBuilder("Biggest variables:");
+      for (final var variable : sortedVariables) {
+        builder
+            .append("\n\t")
+            .append(variable.bytes)
+            .append(" bytes, scope: ")
+            .append(variable.scopeKey)
+            .append(", name: ")
+            .append(variable.name);
+      }
+      entityConsumer.accept(builder.toString());
+    }
+  }
+
+  private static int getTop(final InspectionOptions options) {
+    final var top = options.getInt("top", DEFAULT_TOP);
+    if (top < 0) {
+      throw new IllegalArgumentException("Expected top to be positive, but got " + top);
+    }
+    return top;
+  }
+
+  private ReadOnlyColumnFamily<DbLong, DbBufferView> getElementInstanceColumnFamily(
+      final PartitionState partitionState) {
+    return partitionState
+        .getZeebeDb()
+        .createColumnFamily(
+            ZbColumnFamilies.ELEMENT_INSTANCE_KEY,
+            partitionState.getDbContext(),
+            new DbLong(),
+            new DbBufferView());
+  }
+
+  private static final class Variable {
+
+    private final long scopeKey;
+    private final String name;
+    private final int bytes;
+
+    private Variable(final long scopeKey, final DirectBuffer key, final int bytes) {
+      this.scopeKey = scopeKey;
+      name =
+          key.getStringWithoutLengthUtf8(
+              VARIABLE_NAME_OFFSET, key.capacity() - VARIABLE_NAME_OFFSET);
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package io.zeebe.tools.inspector;
+
+import java.util.PriorityQueue;
+import org.agrona.collections.Long2LongHashMap;
+
+/**
+ * Keeps the workflow instances with the biggest footprint in bytes while the state is walked, with a
+ * fixed amount of memory. Up to the capacity, all instances are tracked exactly. When another
+ * instance is added, it replaces the tracked instance with the smallest footprint and inherits its
+ * bytes as error, like in the Space-Saving algorithm. An instance with a footprint bigger than
+ * {@code total bytes / capacity} is always tracked, and its bytes are overestimated by at most its
+ * error.
+ *
+ * <p>The tracked instances are kept in primitive arrays, which are ordered as a min-heap by their
+ * bytes, so the smallest one is found directly. A footprint only grows, so an update sifts the
+ * instance down the heap.
+ */
+final class FootprintTracker {
+
+  private static final long MISSING_SLOT = -1L;
+
+  private final int capacity;
+  private final Long2LongHashMap slots;
+
+  private final long[] instanceKeys;
+  private final long[] bytes;
+  private final long[] errors;
+  private final long[] elementInstances;
+  private final long[] variables;
+  private final long[] variableBytes;
+
+  // the slots ordered as min-heap by their bytes, and the position of each slot in the heap
+  private final int[] heap;
+  private final int[] heapPositions;
+  private int size;
+
+  private long evictions;
+
+  FootprintTracker(final int capacity) {
+    this.capacity = capacity;
+    slots = new Long2LongHashMap(MISSING_SLOT);
+
+    instanceKeys = new long[capacity];
+    bytes = new long[capacity];
+    errors = new long[capacity];
+    elementInstances = new long[capacity];
+    variables = new long[capacity];
+    variableBytes = new long[capacity];
+
+    heap = new int[capacity];
+    heapPositions = new int[capacity];
+  }
+
+  /** Adds an element instance of the workflow instance, with the variables of its scope. */
+  void add(
+      final long workflowInstanceKey,
+      final long elementInstanceBytes,
+      final long variableCount,
+      final long variableBytesOfScope) {
+    var slot = (int) slots.get(workflowInstanceKey);
+    if (slot == MISSING_SLOT) {
+      slot = track(workflowInstanceKey);
+    }
+
+    bytes[slot] += elementInstanceBytes + variableBytesOfScope;
+    elementInstances[slot]++;
+    variables[slot] += variableCount;
+    variableBytes[slot] += variableBytesOfScope;
+    siftDown(heapPositions[slot]);
+  }
+
+  private int track(final long workflowInstanceKey) {
+    final int slot;
+    if (size < capacity) {
+      slot = size;
+      heap[size] = slot;
+      heapPositions[slot] = size;
+      size++;
+
+      errors[slot] = 0;
+      bytes[slot] = 0;
+      siftUp(heapPositions[slot]);
+    } else {
+      // replace the smallest instance, its bytes are an upper bound of what the new one had so far
+      slot = heap[0];
+      slots.remove(instanceKeys[slot]);
+      evictions++;
+
+      errors[slot] = bytes[slot];
+    }
+
+    instanceKeys[slot] = workflowInstanceKey;
+    elementInstances[slot] = 0;
+    variables[slot] = 0;
+    variableBytes[slot] = 0;
+    slots.put(workflowInstanceKey, slot);
+    return slot;
+  }
+
+  /** @return true if instances were replaced, so the footprints are estimates with an error */
+  boolean isApproximate() {
+    return evictions > 0;
+  }
+
+  /** Writes the tracked instances with the biggest footprint, the biggest first. */
+  void writeTop(final int top, final InstanceVisitor visitor) {
+    final var biggest =
+        new PriorityQueue<Integer>(Math.max(1, top), (a, b) -> Long.compare(bytes[a], bytes[b]));
+    for (int slot = 0; slot < size && top > 0; slot++) {
+      if (biggest.size() < top) {
+        biggest.add(slot);
+      } else if (bytes[biggest.peek()] < bytes[slot]) {
+        biggest.poll();
+        biggest.add(slot);
+      }
+    }
+
+    final var ordered = new int[biggest.size()];
+    for (int i = ordered.length - 1; i >= 0; i--) {
+      ordered[i] = biggest.poll();
+    }
+
+    for (final var slot : ordered) {
+      visitor.visit(
+          instanceKeys[slot],
+          bytes[slot],
+          errors[slot],
+          elementInstances[slot],
+          variables[slot],
+          variableBytes[slot]);
+    }
+  }
+
+  private void siftUp(final int position) {
+    var current = position;
+    while (current > 0) {
+      final var parent = (current - 1) / 2;
+      if (bytes[heap[parent]] <= bytes[heap[current]]) {
+        return;
+      }
+
+      swap(current, parent);
+      current = parent;
+    }
+  }
+
+  private void siftDown(final int position) {
+    var current = position;
+    while (true) {
+      final var left = 2 * current + 1;
+      final var right = left + 1;
+      var smallest = current;
+      if (left < size && bytes[heap[left]] < bytes[heap[smallest]]) {
+        smallest = left;
+      }
+      if (right < size && bytes[heap[right]] < bytes[heap[smallest]]) {
+        smallest = right;
+      }
+      if (smallest == current) {
+        return;
+      }
+
+      swap(current, smallest);
+      current = smallest;
+    }
+  }
+
+  private void swap(final int a, final int b) {
+    final var slotA = heap[a];
+    final var slotB = heap[b];
+    heap[a] = slotB;
+    heap[b] = slotA;
+    heapPositions[slotB] = a;
+    heapPositions[slotA] = b;
+  }
+
+  @FunctionalInterface
+  interface InstanceVisitor {
+
+    /**
+     * @param error the bytes which the footprint may overestimate, 0 if it is exact. The counts of
+     *     an instance with an error only contain the entries since it is tracked.
+     */
+    void visit(
+        long workflowInstanceKey,
+        long bytes,
+        long error,
+        long elementInstances,
+        long variables,
+        long variableBytes);
+  }
+}
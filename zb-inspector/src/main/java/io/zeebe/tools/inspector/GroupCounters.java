@@ -0,0 +1,77 @@
+package io.zeebe.tools.inspector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Counts the entries of a column family per group, like the jobs per job type, while the column
+ * family is walked. The group is looked up with the view of the current entry; only the first
+ * entry of a group is copied. The memory depends on the number of groups, not on the number of
+ * entries.
+ *
+ * <p>The summaries always cover all entries, since the groups are only known after the whole column
+ * family is walked; the cursor of the listing is not used. The option {@code max-groups} defines
+ * how many groups are written, all by default.
+ */
+final class GroupCounters {
+
+  private static final int DEFAULT_MAX_GROUPS = Integer.MAX_VALUE;
+
+  private final int maxGroups;
+  private final String groupName;
+  private final String[] counterNames;
+  private final Map<DirectBuffer, long[]> groups = new HashMap<>();
+
+  /**
+   * @param groupName the name of the field which contains the group
+   * @param counterNames the names of the counters of each group, the groups are ordered by the
+   *     first counter
+   * @throws IllegalArgumentException if the option {@code max-groups} is not positive
+   */
+  GroupCounters(
+      final InspectionOptions options, final String groupName, final String... counterNames) {
+    maxGroups = options.getInt("max-groups", DEFAULT_MAX_GROUPS);
+    if (maxGroups <= 0) {
+      throw new IllegalArgumentException(
+          "Expected max-groups to be positive, but got " + maxGroups);
+    }
+    this.groupName = groupName;
+    this.counterNames = counterNames;
+  }
+
+  /** @return the counters of the group, which can be incremented directly */
+  long[] get(final DirectBuffer group) {
+    final var counters = groups.get(group);
+    if (counters != null) {
+      return counters;
+    }
+
+    final var bytes = new byte[group.capacity()];
+    group.getBytes(0, bytes);
+    final var newCounters = new long[counterNames.length];
+    groups.put(new UnsafeBuffer(bytes), newCounters);
+    return newCounters;
+  }
+
+  /** Writes the groups with the highest first counter, up to the maximum number of groups. */
+  void write(final String type, final EntityWriter entityWriter) {
+    final var entries = new ArrayList<>(groups.entrySet());
+    entries.sort(
+        Comparator.comparingLong((Map.Entry<DirectBuffer, long[]> entry) -> entry.getValue()[0])
+            .reversed());
+
+    for (final var entry : entries.subList(0, Math.min(maxGroups, entries.size()))) {
+      entityWriter.startEntity(type);
+      entityWriter.field(groupName, entry.getKey());
+      final var counters = entry.getValue();
+      for (int i = 0; i < counterNames.length; i++) {
+        entityWriter.field(counterNames[i], counters[i]);
+      }
+      entityWriter.endEntity();
+    }
+  }
+}
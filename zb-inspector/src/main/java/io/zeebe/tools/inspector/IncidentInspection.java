@@ -1,61 +1,73 @@
 package io.zeebe.tools.inspector;
 
-import io.zeebe.db.ColumnFamily;
 import io.zeebe.db.impl.DbLong;
 import io.zeebe.engine.state.ZbColumnFamilies;
 import io.zeebe.engine.state.instance.Incident;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class IncidentInspection implements EntityInspection {
 
-  @Override
-  public List<String> list(final PartitionState partitionState) {
+  private static final String INCIDENT_RECORD_PROPERTY = "incidentRecord";
 
-    final var incidents = new ArrayList<String>();
+  /**
+   * Supports the filters of the {@link RecordFilter}, which are checked before an incident is
+   * decoded. An incident is always created after its workflow instance, on the same partition, so
+   * its key is greater than the key of the workflow instance. The walk starts at the smallest
+   * workflow instance key of the filter.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
 
-    final ColumnFamily<DbLong, Incident> incidentColumnFamily =
-        getIncidentColumnFamily(partitionState);
+    final var filter = RecordFilter.of(options, INCIDENT_RECORD_PROPERTY);
+    final var incident = new Incident();
 
-    incidentColumnFamily.forEach(
-        (key, incident) -> {
-          final var incidentKey = key.getValue();
+    return cursor.walk(
+        getIncidentColumnFamily(partitionState),
+        filter.getMinWorkflowInstanceKey(),
+        Long.MAX_VALUE,
+        (value, incidentKey) -> filter.matches(value),
+        (value, incidentKey) -> {
+          incident.wrap(value.getBuffer(), 0, value.getLength());
           final var incidentRecord = incident.getRecord();
 
-          final var incidentAsString =
-              String.format(
-                  "Incident[key: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", error-type: %s]",
-                  incidentKey,
-                  incidentRecord.getWorkflowInstanceKey(),
-                  incidentRecord.getBpmnProcessId(),
-                  incidentRecord.getErrorType());
-
-          incidents.add(incidentAsString);
+          entityWriter.startEntity("Incident");
+          entityWriter.field("key", incidentKey);
+          entityWriter.field("workflow-instance-key", incidentRecord.getWorkflowInstanceKey());
+          entityWriter.field("BPMN-process-id", incidentRecord.getBpmnProcessIdBuffer());
+          entityWriter.field("error-type", incidentRecord.getErrorType());
+          entityWriter.endEntity();
         });
-
-    return incidents;
   }
 
   @Override
-  public String entity(final PartitionState partitionState, final long key) {
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
 
     final var incidentState = partitionState.getZeebeState().getIncidentState();
 
-    return Optional.ofNullable(incidentState.getIncidentRecord(key))
-        .map(
-            incidentRecord ->
-                String.format(
-                    "Incident[key: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", error-type: %s, error-message: \"%s\"]",
-                    key,
-                    incidentRecord.getWorkflowInstanceKey(),
-                    incidentRecord.getBpmnProcessId(),
-                    incidentRecord.getErrorType(),
-                    incidentRecord.getErrorMessage()))
-        .orElse("No incident found with key: " + key);
+    entityConsumer.accept(
+        Optional.ofNullable(incidentState.getIncidentRecord(key))
+            .map(
+                incidentRecord ->
+                    String.format(
+                        "Incident[key: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", error-type: %s, error-message: \"%s\"]",
+                        key,
+                        incidentRecord.getWorkflowInstanceKey(),
+                        incidentRecord.getBpmnProcessId(),
+                        incidentRecord.getErrorType(),
+                        incidentRecord.getErrorMessage()))
+            .orElse("No incident found with key: " + key));
   }
 
-  private ColumnFamily<DbLong, Incident> getIncidentColumnFamily(
+  private ReadOnlyColumnFamily<DbLong, DbBufferView> getIncidentColumnFamily(
       final PartitionState partitionState) {
     return partitionState
         .getZeebeDb()
@@ -63,6 +75,6 @@ public class IncidentInspection implements EntityInspection {
             ZbColumnFamilies.INCIDENTS,
             partitionState.getDbContext(),
             new DbLong(),
-            new Incident());
+            new DbBufferView());
   }
 }
@@ -0,0 +1,53 @@
+package io.zeebe.tools.inspector;
+
+import java.util.Map;
+
+/**
+ * Options which are specific to an inspection, given as {@code --name value} pairs on the command
+ * line. Inspections ignore the options they don't know.
+ */
+public final class InspectionOptions {
+
+  public static final InspectionOptions NONE = new InspectionOptions(Map.of());
+
+  private static final String PRECISION = "precision";
+  private static final String PRECISION_ESTIMATE = "estimate";
+  private static final String PRECISION_EXACT = "exact";
+
+  private final Map<String, String> options;
+
+  private InspectionOptions(final Map<String, String> options) {
+    this.options = options;
+  }
+
+  public static InspectionOptions of(final Map<String, String> options) {
+    return new InspectionOptions(Map.copyOf(options));
+  }
+
+  public String getString(final String name, final String defaultValue) {
+    return options.getOrDefault(name, defaultValue);
+  }
+
+  public int getInt(final String name, final int defaultValue) {
+    final var value = options.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  public long getLong(final String name, final long defaultValue) {
+    final var value = options.get(name);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+
+  /**
+   * @return true if the option {@code precision} is {@code exact}, false if it is {@code estimate}
+   *     or missing
+   */
+  public boolean isExactPrecision() {
+    final var precision = getString(PRECISION, PRECISION_ESTIMATE);
+    if (!precision.equals(PRECISION_ESTIMATE) && !precision.equals(PRECISION_EXACT)) {
+      throw new IllegalArgumentException(
+          "Expected precision to be estimate or exact, but got " + precision);
+    }
+    return precision.equals(PRECISION_EXACT);
+  }
+}
@@ -1,14 +1,16 @@
 package io.zeebe.tools.inspector;
 
-import io.zeebe.db.ZeebeDb;
-import io.zeebe.engine.state.DefaultZeebeDbFactory;
-import io.zeebe.engine.state.ZbColumnFamilies;
-import io.zeebe.engine.state.ZeebeState;
+import static java.util.Map.entry;
+
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,36 +19,199 @@ public final class Inspector {
   private static final Logger LOGGER = LoggerFactory.getLogger(Inspector.class);
 
   private static final String PARTITIONS_FOLDER = "data/raft-partition/partitions";
-  private static final String DB_FOLDER = "runtime";
 
   private static final Map<String, String> USAGE_COMMAND =
-      Map.of(
-          "incident",
-          "get information about incidents",
-          "blacklist",
-          "get information about blacklisted instances",
-          "workflow",
-          "get information about workflows",
-          "exporter",
-          "get information about exporters");
+      Map.ofEntries(
+          entry(
+              "incident",
+              "get information about incidents"),
+          entry(
+              "blacklist",
+              "get information about blacklisted instances"),
+          entry(
+              "workflow",
+              "get information about workflows"),
+          entry(
+              "exporter",
+              "get information about exporters"),
+          entry(
+              "job",
+              "get information about jobs - the list summarizes them per job type"),
+          entry(
+              "timer",
+              "get information about timers - the list summarizes their due dates, the key of an entity is the element instance key"),
+          entry(
+              "message-subscription",
+              "get information about message subscriptions - the list summarizes them per message name, the key of an entity is the element instance key"),
+          entry(
+              "footprint",
+              "find the workflow instances with the biggest footprint of element instances and variables - the key of an entity is the workflow instance key"),
+          entry(
+              "stats",
+              "get the size of the column families - the key of an entity is the column family's ordinal"),
+          entry(
+              "diff --with <path>",
+              "compare the column families with another state of the partition - the key of an entity is the column family's ordinal"),
+          entry(
+              "replay",
+              "replay the log into an engine with a fresh state and measure the reprocessing - the key of an entity is the value type's ordinal"),
+          entry(
+              "shell [--port <port>]",
+              "keep the partitions open and answer queries from the standard input, or from clients of a local socket"));
 
   private static final Map<String, String> USAGE_SUB_COMMAND =
       Map.of(
-          "list", "get a list of existing entities",
-          "entity <key>", "get information about a specificy entity - a separate key is needed.");
+          "list [--from <key>] [--limit <count>]",
+              "get a list of existing entities - optionally paged, starting at the given key",
+          "entity <key> [options]",
+              "get information about a specificy entity - a separate key is needed.");
+
+  static final Map<String, EntityInspection> COMMAND_FUNCTIONS =
+      Map.ofEntries(
+          entry("incident", new IncidentInspection()),
+          entry("blacklist", new BlacklistInspection()),
+          entry("workflow", new WorkflowInspection()),
+          entry("exporter", new ExporterInspection()),
+          entry("job", new JobInspection()),
+          entry("timer", new TimerInspection()),
+          entry("message-subscription", new MessageSubscriptionInspection()),
+          entry("footprint", new FootprintInspection()),
+          entry("stats", new StatsInspection()),
+          entry("diff", new DiffInspection()),
+          entry("replay", new ReplayInspection()));
+
+  private static final String SHELL_COMMAND = "shell";
+
+  /** The options of a query, on the command line and in the shell. */
+  private static final Set<String> QUERY_OPTIONS =
+      Set.of(
+          "--from",
+          "--limit",
+          "--join",
+          "--max-depth",
+          "--max-children",
+          "--parallelism",
+          "--partition",
+          "--precision",
+          "--top",
+          "--max-groups",
+          "--max-tracked",
+          "--format",
+          "--output",
+          "--bpmn-process-id",
+          "--element-id",
+          "--error-type",
+          "--min-workflow-instance-key",
+          "--max-workflow-instance-key",
+          "--resource",
+          "--with",
+          "--with-state",
+          "--idle-timeout");
+
+  /** The options which define how the partitions are opened. */
+  private static final Set<String> OPEN_OPTIONS = Set.of("--state", "--parallelism");
+
+  private static final Set<String> SHELL_OPTIONS = Set.of("--state", "--parallelism", "--port");
+
+  private static final Set<String> OPTIONS = union(QUERY_OPTIONS, OPEN_OPTIONS);
+
+  private static final Map<String, String> USAGE_OPTIONS =
+      Map.ofEntries(
+          entry(
+              "--join lookup|merge|keys",
+              "blacklist list: look up each instance (default), merge the blacklist with the element instances in key order, or print the keys only"),
+          entry(
+              "--max-depth <levels>",
+              "blacklist entity: the maximum depth of the rendered element instance tree"),
+          entry(
+              "--max-children <count>",
+              "blacklist entity: the maximum number of rendered children per element instance"),
+          entry(
+              "--state runtime|snapshot",
+              "open the runtime state (default) or the latest snapshot - both are opened read-only"),
+          entry(
+              "--parallelism <threads>",
+              "all partitions: the maximum number of partitions which are inspected at the same time"),
+          entry(
+              "--partition <id>",
+              "all partitions: inspect only the given partition"),
+          entry(
+              "--precision estimate|exact",
+              "stats list: use the estimates of RocksDB (default) or count the entries of each column family - exporter: also count the records of the lag"),
+          entry(
+              "--top <count>",
+              "stats entity and exact stats list: the number of biggest entries which are shown - footprint: the number of biggest workflow instances or variables"),
+          entry(
+              "--max-groups <count>",
+              "job list, timer list, message-subscription list: the maximum number of groups which are shown, the summary always covers all entries"),
+          entry(
+              "--max-tracked <count>",
+              "footprint list: the maximum number of workflow instances which are tracked at the same time - with more instances, the footprints are estimated"),
+          entry(
+              "--format text|json|msgpack",
+              "log the entities as text (default), or write them as JSON lines or MsgPack maps"),
+          entry(
+              "--output <file>",
+              "json, msgpack: the file to write the entities to, instead of the standard output"),
+          entry(
+              "--bpmn-process-id <id>",
+              "incident list, blacklist list: only the entities of the given BPMN process id"),
+          entry(
+              "--element-id <id>",
+              "incident list, blacklist list: only the entities of the given element id"),
+          entry(
+              "--error-type <type>",
+              "incident list: only the incidents of the given error type, like IO_MAPPING_ERROR"),
+          entry(
+              "--min-workflow-instance-key <key>",
+              "incident list, blacklist list: only the entities of workflow instances with a greater or equal key"),
+          entry(
+              "--max-workflow-instance-key <key>",
+              "incident list, blacklist list: only the entities of workflow instances with a smaller or equal key"),
+          entry(
+              "--resource none|xml|elements",
+              "workflow entity: don't show the BPMN resource (default), stream it, or summarize its elements"),
+          entry(
+              "--with <path>",
+              "diff: the state to compare with - a partition directory, the partitions directory, a directory which contains it, or a runtime or snapshot directory"),
+          entry(
+              "--with-state runtime|snapshot",
+              "diff: open the runtime state (default) or the latest snapshot of the partition to compare with"),
+          entry(
+              "--idle-timeout <millis>",
+              "replay: end the replay after this time without a processed record, if the end of the log is not reached (default 2000)"),
+          entry(
+              "--port <port>",
+              "shell: answer the queries of clients on this port of the loopback address, instead of the standard input"));
+
+  private static final QueryOutput LOGGING_OUTPUT =
+      new QueryOutput() {
+        @Override
+        public void print(final String line) {
+          LOGGER.info(line);
+        }
 
-  private static final Map<String, EntityInspection> COMMAND_FUNCTIONS =
-      Map.of(
-          "incident",
-          new IncidentInspection(),
-          "blacklist",
-          new BlacklistInspection(),
-          "workflow",
-          new WorkflowInspection(),
-          "exporter",
-          new ExporterInspection());
+        @Override
+        public void log(final String line) {
+          LOGGER.info(line);
+        }
+
+        @Override
+        public void error(final String message, final Throwable error) {
+          LOGGER.error(message, error);
+        }
+
+        @Override
+        public EntityChannel getEntityChannel() {
+          return EntityChannel.standardOutput();
+        }
+      };
 
-  private static final Set<String> SUB_COMMAND_FUNCTIONS = Set.of("list", "entity");
+  private static Set<String> union(final Set<String> first, final Set<String> second) {
+    final var union = new HashSet<>(first);
+    union.addAll(second);
+    return Set.copyOf(union);
+  }
 
   private static void printUsage(String[] args) {
     var builder =
@@ -55,7 +220,12 @@ public final class Inspector {
             .append('\'')
             .append('\n')
             .append(
-                "Expected usage: java -jar inspector.jar <pathToPartition> <command> <subcommand>")
+                "Expected usage: java -jar inspector.jar <pathToPartition> <command> <subcommand> [options]")
+            .append(
+                "\nThe path can also point to the partitions directory, or to a directory which"
+                    + " contains "
+                    + PARTITIONS_FOLDER
+                    + ", to inspect all partitions")
             .append("\nCommand:");
 
     for (var entry : USAGE_COMMAND.entrySet()) {
@@ -68,60 +238,65 @@ public final class Inspector {
       builder.append("\n\t- ").append(entry.getKey()).append("\t\t").append(entry.getValue());
     }
 
+    builder.append("\nOptions:");
+
+    for (var entry : USAGE_OPTIONS.entrySet()) {
+      builder.append("\n\t- ").append(entry.getKey()).append("\t\t").append(entry.getValue());
+    }
+
     LOGGER.warn(builder.toString());
   }
 
   private static void ensureCorrectUsage(String[] args) {
-    if (args.length < 3) {
+    if (args.length < 2 || (args.length < 3 && !args[1].equals(SHELL_COMMAND))) {
       printUsage(args);
       System.exit(1);
     }
 
     final String dir = args[0];
-    final var partitionsDirectory = Path.of(dir);
-    if (!Files.exists(partitionsDirectory)) {
-      LOGGER.error("Root directory does not exist: {}", partitionsDirectory.toAbsolutePath());
+    final var path = Path.of(dir);
+    if (!Files.exists(path)) {
+      LOGGER.error("Root directory does not exist: {}", path.toAbsolutePath());
       printUsage(args);
       System.exit(1);
     }
 
-    try {
-      final var partition = partitionsDirectory.getFileName().toString();
-      Integer.valueOf(partition);
-    } catch (NumberFormatException nfe) {
-      LOGGER.error("The path must point to the partitions directory.");
+    if (!Partition.isPartitionDirectory(path) && !containsPartitions(path)) {
+      LOGGER.error("The path must point to a partition directory or to the partitions directory.");
       printUsage(args);
       System.exit(1);
     }
 
-    final var command = args[1];
-    if (!COMMAND_FUNCTIONS.containsKey(command)) {
+    try {
+      final Map<String, String> openOptions;
+      if (args[1].equals(SHELL_COMMAND)) {
+        openOptions = Query.parseOptions(args, 2, SHELL_OPTIONS);
+        getPort(openOptions);
+      } else {
+        final var query = Arrays.copyOfRange(args, 1, args.length);
+        Query.parse(query, OPTIONS);
+        openOptions = Query.parseOptions(query, getOptionsOffset(query), OPTIONS);
+      }
+      Partition.ensureValidState(openOptions.get("state"));
+      getParallelism(openOptions);
+    } catch (IllegalArgumentException iae) {
+      LOGGER.error("Got unexpected parameters. {}", iae.getMessage());
       printUsage(args);
       System.exit(1);
     }
+  }
 
-    final var subCommand = args[2];
-    if (!SUB_COMMAND_FUNCTIONS.contains(subCommand)) {
-      printUsage(args);
-      System.exit(1);
+  private static boolean containsPartitions(Path path) {
+    try {
+      return !PartitionsInspector.findPartitions(getPartitionsDirectory(path)).isEmpty();
+    } catch (IOException e) {
+      LOGGER.error("Failed to list the partitions of {}", path, e);
+      return false;
     }
+  }
 
-    if (subCommand.equals("entity")) {
-      if (args.length < 4) {
-        LOGGER.error("The entity subcommand expects and key as additional paramter.");
-        printUsage(args);
-        System.exit(1);
-      }
-
-      final var key = args[3];
-      try {
-        Long.parseLong(key);
-      } catch (NumberFormatException nfe) {
-        LOGGER.error("The entity subcommand expects an long key as additional parameter.", nfe);
-        printUsage(args);
-        System.exit(1);
-      }
-    }
+  private static int getOptionsOffset(String[] query) {
+    return query[1].equals("entity") ? 3 : 2;
   }
 
   public static void main(String[] args) throws Exception {
@@ -130,65 +305,128 @@ public final class Inspector {
     ensureCorrectUsage(args);
 
     final var dir = args[0];
-    final var partitionsDir = Path.of(dir);
-    LOGGER.info("Partitions directory: {}", partitionsDir);
-    final var command = args[1];
-    final var subCommand = args[2];
+    final var path = Path.of(dir);
+
+    if (args[1].equals(SHELL_COMMAND)) {
+      runShell(path, Query.parseOptions(args, 2, SHELL_OPTIONS));
+      LOGGER.info("Bye...");
+      return;
+    }
+
+    final var query = Arrays.copyOfRange(args, 1, args.length);
+    final var options = Query.parseOptions(query, getOptionsOffset(query), OPTIONS);
+    final var partitions = getPartitions(path, options.get("state"));
+
+    // every partition is closed after its inspection
+    final var queryRunner =
+        new QueryRunner(
+            partitions,
+            !Partition.isPartitionDirectory(path),
+            new PartitionsInspector(false),
+            getParallelism(options));
+
+    final var parsedQuery = Query.parse(query, OPTIONS);
+    LOGGER.info("Running subcommand: {}", parsedQuery.getSubCommand());
+    try {
+      queryRunner.run(parsedQuery, LOGGING_OUTPUT);
+    } catch (IllegalArgumentException iae) {
+      LOGGER.error("Got unexpected parameters. {}", iae.getMessage());
+      System.exit(1);
+    }
 
-    final var partition = partitionsDir.getFileName().toString();
-    final int partitionId = Integer.valueOf(partition);
-    LOGGER.info("Partition: {}", partitionId);
+    LOGGER.info("Bye...");
+  }
+
+  /**
+   * Opens all partitions in parallel, before the first query is answered. They stay open until the
+   * shell is shut down.
+   */
+  private static void runShell(Path path, Map<String, String> options) throws Exception {
+    final var partitions = getPartitions(path, options.get("state"));
+    final var parallelism = getParallelism(options);
+    final var partitionsInspector = new PartitionsInspector(true);
 
-    final var entityInspection = COMMAND_FUNCTIONS.get(command);
-    ZeebeDb<ZbColumnFamilies> zeebeDb = null;
     try {
-      final var dbDirectory = partitionsDir.resolve(DB_FOLDER);
-      zeebeDb = openZeebeDb(dbDirectory);
-      final var dbContext = zeebeDb.createContext();
-      final var state = new ZeebeState(partitionId, zeebeDb, dbContext);
-
-      final var partitionState = PartitionState.of(zeebeDb, state, dbContext);
-
-      LOGGER.info("Running subcommand: {}", subCommand);
-      if (subCommand.equals("list"))
-      {
-        LOGGER.info(listEntities(partitionState, entityInspection));
-      } else if (subCommand.equals("entity")) {
-        if (args.length < 4) {
-          System.exit(1);
+      LOGGER.info("Open {} partitions", partitions.size());
+      final var results =
+          partitionsInspector.inspect(
+              partitions,
+              parallelism,
+              (partitionState, entityWriter) -> ListCursor.NO_CONTINUATION,
+              partitionId -> new TextEntityWriter(LOGGER::info));
+      for (final var result : results) {
+        if (result.hasFailed()) {
+          LOGGER.error("Failed to open partition {}", result.getPartitionId(), result.getError());
+        } else {
+          LOGGER.info(
+              "Partition {}: database opened in {} ms",
+              result.getPartitionId(),
+              result.getOpenMillis());
         }
+      }
 
-        final var key = Long.parseLong(args[3]);
-        LOGGER.info(getEntity(partitionState, entityInspection, key));
+      final var queryRunner =
+          new QueryRunner(
+              partitions, !Partition.isPartitionDirectory(path), partitionsInspector, parallelism);
+      final var shell = new InspectorShell(queryRunner, QUERY_OPTIONS);
+
+      final var port = getPort(options);
+      if (port < 0) {
+        shell.runOnStandardInput();
+      } else {
+        shell.runOnSocket(port);
       }
 
-      LOGGER.info("Bye...");
     } finally {
-      if (zeebeDb != null) {
-        zeebeDb.close();
-      }
+      partitions.forEach(Partition::close);
     }
   }
 
-  private static ZeebeDb<ZbColumnFamilies> openZeebeDb(Path directory) {
-    LOGGER.info("Open database: {}", directory.toAbsolutePath());
-    return DefaultZeebeDbFactory.DEFAULT_DB_FACTORY.createDb(directory.toFile());
+  /**
+   * Accepts the partitions directory itself or a directory which contains it, like the working
+   * directory of a broker.
+   */
+  static Path getPartitionsDirectory(Path path) {
+    final var partitionsDirectory = path.resolve(PARTITIONS_FOLDER);
+    return Files.isDirectory(partitionsDirectory) ? partitionsDirectory : path;
   }
 
-  private static String listEntities(
-      PartitionState partitionState, EntityInspection entityInspection) {
-    final var builder = new StringBuilder("\nList:");
-    final var list = entityInspection.list(partitionState);
+  private static List<Partition> getPartitions(Path path, String state) throws IOException {
+    if (Partition.isPartitionDirectory(path)) {
+      LOGGER.info("Partition directory: {}", path);
+      return List.of(new Partition(path, state));
+    }
+
+    final var partitionsDirectory = getPartitionsDirectory(path);
+    final var partitions =
+        PartitionsInspector.findPartitions(partitionsDirectory).stream()
+            .map(directory -> new Partition(directory, state))
+            .collect(Collectors.toList());
+    LOGGER.info(
+        "Partitions directory: {} ({} partitions)", partitionsDirectory, partitions.size());
+    return partitions;
+  }
 
-    for (String entity : list) {
-      builder.append("\n\t").append(entity);
+  private static int getParallelism(Map<String, String> options) {
+    final var parallelism =
+        Integer.parseInt(
+            options.getOrDefault(
+                "parallelism", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Expected a positive parallelism, got " + parallelism);
     }
 
-    return builder.toString();
+    return parallelism;
   }
 
-  private static String getEntity(
-      PartitionState partitionState, EntityInspection entityInspection, long key) {
-    return entityInspection.entity(partitionState, key);
+  /** @return the port of the shell, or -1 if the shell reads the standard input */
+  private static int getPort(Map<String, String> options) {
+    final var port = Integer.parseInt(options.getOrDefault("port", "-1"));
+    if (port < -1 || port > 65535) {
+      throw new IllegalArgumentException("Expected a valid port, got " + port);
+    }
+
+    return port;
   }
 }
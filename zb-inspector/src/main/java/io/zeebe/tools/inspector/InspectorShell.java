@@ -0,0 +1,175 @@
+package io.zeebe.tools.inspector;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the partitions open and answers queries line by line, from the standard input or from the
+ * clients of a local socket. A query has the same form as on the command line, without the path:
+ * {@code <command> <subcommand> [key] [options]}.
+ *
+ * <p>The queries are answered one after another, the clients of the socket are served one at a
+ * time.
+ */
+final class InspectorShell {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InspectorShell.class);
+
+  private static final String PROMPT = "inspector> ";
+  private static final String COMMAND_HELP = "help";
+  private static final Set<String> COMMANDS_EXIT = Set.of("exit", "quit");
+  private static final String COMMAND_SHUTDOWN = "shutdown";
+
+  private final QueryRunner queryRunner;
+  private final Set<String> queryOptions;
+
+  /** @param queryOptions the options which can be given in a query */
+  InspectorShell(final QueryRunner queryRunner, final Set<String> queryOptions) {
+    this.queryRunner = queryRunner;
+    this.queryOptions = queryOptions;
+  }
+
+  void runOnStandardInput() throws IOException {
+    runSession(System.in, System.out, true);
+  }
+
+  /**
+   * Listens on the given port of the loopback address until a client sends {@code shutdown}. A
+   * client ends its session with {@code exit}, or by closing the connection.
+   */
+  void runOnSocket(final int port) throws IOException {
+    try (final var serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+      LOGGER.info("Listening for queries on {}", serverSocket.getLocalSocketAddress());
+
+      var shutdown = false;
+      while (!shutdown) {
+        try (final var socket = serverSocket.accept()) {
+          LOGGER.info("Client connected: {}", socket.getRemoteSocketAddress());
+          shutdown = runSession(socket.getInputStream(), socket.getOutputStream(), false);
+          LOGGER.info("Client disconnected: {}", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+          LOGGER.warn("Connection to the client failed", e);
+        }
+      }
+    }
+  }
+
+  /** @return true if the shell should be shut down */
+  private boolean runSession(
+      final InputStream inputStream, final OutputStream outputStream, final boolean prompt)
+      throws IOException {
+    final var reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    final var output = new SessionOutput(new BufferedOutputStream(outputStream));
+
+    while (true) {
+      if (prompt) {
+        output.prompt();
+      }
+
+      final var line = reader.readLine();
+      if (line == null) {
+        return false;
+      }
+
+      final var query = line.trim();
+      if (query.isEmpty()) {
+        continue;
+      } else if (COMMANDS_EXIT.contains(query)) {
+        return false;
+      } else if (query.equals(COMMAND_SHUTDOWN)) {
+        return true;
+      } else if (query.equals(COMMAND_HELP)) {
+        output.print(
+            "Queries: <command> <subcommand> [key] [options], like on the command line. "
+                + "Sessions end with exit, the shell with shutdown.");
+      } else {
+        runQuery(query, output);
+      }
+
+      output.flush();
+    }
+  }
+
+  private void runQuery(final String line, final SessionOutput output) {
+    final var startTime = System.nanoTime();
+    try {
+      final var query = Query.parse(line.split("\\s+"), queryOptions);
+      queryRunner.run(query, output);
+
+      final var message =
+          String.format("Done in %.3f ms", (System.nanoTime() - startTime) / 1e6);
+      if (query.getFormat().equals(Query.FORMAT_TEXT)) {
+        output.print(message);
+      } else {
+        output.log(message);
+      }
+
+    } catch (IllegalArgumentException e) {
+      output.print("Invalid query: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      output.error("Query was interrupted", e);
+    } catch (IOException | RuntimeException e) {
+      output.error("Query failed", e);
+    }
+  }
+
+  /** Prints the text and the machine-readable formats to the same stream, in order. */
+  private static final class SessionOutput implements QueryOutput {
+
+    private final OutputStream outputStream;
+    private final EntityChannel entityChannel;
+
+    private SessionOutput(final OutputStream outputStream) {
+      this.outputStream = outputStream;
+      entityChannel = EntityChannel.of(outputStream);
+    }
+
+    @Override
+    public synchronized void print(final String line) {
+      try {
+        outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+        outputStream.write('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void log(final String line) {
+      LOGGER.info(line);
+    }
+
+    @Override
+    public void error(final String message, final Throwable error) {
+      LOGGER.debug(message, error);
+      print(message + ": " + error);
+    }
+
+    @Override
+    public EntityChannel getEntityChannel() {
+      return entityChannel;
+    }
+
+    private synchronized void prompt() throws IOException {
+      outputStream.write(PROMPT.getBytes(StandardCharsets.UTF_8));
+      outputStream.flush();
+    }
+
+    private synchronized void flush() throws IOException {
+      outputStream.flush();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.engine.state.instance.JobState.State;
+import io.zeebe.util.buffer.BufferUtil;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Shows the jobs of the partition. A growing number of jobs is usually a backlog of a job type
+ * whose workers can't keep up, or jobs which time out again and again.
+ */
+public final class JobInspection implements EntityInspection {
+
+  private static final int JOBS = 0;
+  private static final int ACTIVATABLE = 1;
+  private static final int ACTIVATED = 2;
+  private static final int TIMED_OUT = 3;
+  private static final int FAILED = 4;
+  private static final int ERROR_THROWN = 5;
+
+  private static final DirectBuffer[] STATE_NAMES =
+      Arrays.stream(State.values())
+          .map(state -> BufferUtil.wrapString(state.name()))
+          .toArray(DirectBuffer[]::new);
+
+  /**
+   * Summarizes the jobs per job type, ordered by the number of jobs: how many are activatable,
+   * activated, failed without retries or waiting for an error catch event. Activated jobs with a
+   * deadline in the past are also counted as timed out, they are activatable again as soon as the
+   * broker handles their time out.
+   *
+   * <p>The jobs and their states are both keyed by the job key, so they are walked together with
+   * one pass. Only the type and the deadline of a job are read.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var zeebeDb = partitionState.getZeebeDb();
+    final var now = System.currentTimeMillis();
+
+    final var jobReader = new PropertyReader("jobRecord");
+    final var type = jobReader.addString("type");
+    final var deadline = jobReader.addInteger("deadline");
+    final var stateReader = new PropertyReader();
+    final var state = stateReader.addString("jobState");
+
+    final var counters =
+        new GroupCounters(
+            options,
+            "type",
+            "jobs",
+            "activatable",
+            "activated",
+            "timed-out",
+            "failed",
+            "error-thrown");
+    final var valueView = new UnsafeBuffer(0, 0);
+
+    try (final var jobs = zeebeDb.newIterator(ZbColumnFamilies.JOBS);
+        final var states = zeebeDb.newIterator(ZbColumnFamilies.JOB_STATES)) {
+      if (jobs == null) {
+        return ListCursor.NO_CONTINUATION;
+      }
+
+      if (states != null) {
+        states.seekToFirst();
+      }
+      for (jobs.seekToFirst(); jobs.isValid(); jobs.next()) {
+        final var jobKey = jobs.key();
+        final var job = jobs.value();
+        valueView.wrap(job);
+        jobReader.read(valueView, 0, job.length);
+
+        final var typeCounters = counters.get(jobReader.getString(type));
+        typeCounters[JOBS]++;
+
+        if (states == null) {
+          continue;
+        }
+
+        while (states.isValid() && Arrays.compareUnsigned(states.key(), jobKey) < 0) {
+          states.next();
+        }
+        if (!states.isValid() || !Arrays.equals(states.key(), jobKey)) {
+          continue;
+        }
+
+        final var jobState = states.value();
+        valueView.wrap(jobState);
+        stateReader.read(valueView, 0, jobState.length);
+        final var stateName = stateReader.getString(state);
+
+        if (stateName.equals(STATE_NAMES[State.ACTIVATABLE.ordinal()])) {
+          typeCounters[ACTIVATABLE]++;
+        } else if (stateName.equals(STATE_NAMES[State.ACTIVATED.ordinal()])) {
+          typeCounters[ACTIVATED]++;
+          if (jobReader.getInteger(deadline) < now) {
+            typeCounters[TIMED_OUT]++;
+          }
+        } else if (stateName.equals(STATE_NAMES[State.FAILED.ordinal()])) {
+          typeCounters[FAILED]++;
+        } else if (stateName.equals(STATE_NAMES[State.ERROR_THROWN.ordinal()])) {
+          typeCounters[ERROR_THROWN]++;
+        }
+      }
+    }
+
+    counters.write("JobType", entityWriter);
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var jobState = partitionState.getZeebeState().getJobState();
+    final var job = jobState.getJob(key);
+    if (job == null) {
+      entityConsumer.accept("No job found with key: " + key);
+      return;
+    }
+
+    entityConsumer.accept(
+        String.format(
+            "Job[key: %d, type: \"%s\", state: %s, worker: \"%s\", retries: %d, deadline: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", element-id: \"%s\", error-message: \"%s\"]",
+            key,
+            job.getType(),
+            jobState.getState(key),
+            job.getWorker(),
+            job.getRetries(),
+            job.getDeadline(),
+            job.getWorkflowInstanceKey(),
+            job.getBpmnProcessId(),
+            job.getElementId(),
+            job.getErrorMessage()));
+  }
+}
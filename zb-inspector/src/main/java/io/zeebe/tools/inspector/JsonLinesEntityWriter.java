@@ -0,0 +1,102 @@
+package io.zeebe.tools.inspector;
+
+import java.nio.charset.StandardCharsets;
+import org.agrona.DirectBuffer;
+
+/** Writes each entity as a JSON object in a separate line. */
+final class JsonLinesEntityWriter extends BufferedEntityWriter {
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private boolean firstField;
+
+  JsonLinesEntityWriter(final EntityChannel channel, final int partitionId) {
+    super(channel, partitionId);
+  }
+
+  @Override
+  protected void onStartEntity() {
+    putByte('{');
+    firstField = true;
+  }
+
+  @Override
+  protected void onEndEntity() {
+    putByte('}');
+    putByte('\n');
+  }
+
+  @Override
+  public void field(final String name, final long value) {
+    putName(name);
+    offset += buffer.putLongAscii(offset, value);
+  }
+
+  @Override
+  public void field(final String name, final String value) {
+    putName(name);
+    putByte('"');
+    // only strings which are not part of a record are encoded, like the id of an exporter
+    for (final byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      putEscaped(b);
+    }
+    putByte('"');
+  }
+
+  @Override
+  public void field(final String name, final DirectBuffer value) {
+    putName(name);
+    putByte('"');
+    for (int i = 0; i < value.capacity(); i++) {
+      putEscaped(value.getByte(i));
+    }
+    putByte('"');
+  }
+
+  @Override
+  public void field(final String name, final Enum<?> value) {
+    putName(name);
+    putByte('"');
+    offset += buffer.putStringWithoutLengthAscii(offset, value.name());
+    putByte('"');
+  }
+
+  private void putName(final String name) {
+    if (!firstField) {
+      putByte(',');
+    }
+    firstField = false;
+
+    putByte('"');
+    offset += buffer.putStringWithoutLengthAscii(offset, name);
+    putByte('"');
+    putByte(':');
+  }
+
+  /** The bytes of multi-byte UTF-8 characters are never escaped, they are all above 0x7F. */
+  private void putEscaped(final byte b) {
+    if (b == '"' || b == '\\') {
+      putByte('\\');
+      putByte(b);
+    } else if (b == '\n') {
+      putByte('\\');
+      putByte('n');
+    } else if (b == '\t') {
+      putByte('\\');
+      putByte('t');
+    } else if (b >= 0 && b < 0x20) {
+      putByte('\\');
+      putByte('u');
+      putByte('0');
+      putByte('0');
+      putByte(HEX_DIGITS[b >> 4]);
+      putByte(HEX_DIGITS[b & 0xF]);
+    } else {
+      putByte(b);
+    }
+  }
+
+  private void putByte(final int b) {
+    buffer.putByte(offset++, (byte) b);
+  }
+}
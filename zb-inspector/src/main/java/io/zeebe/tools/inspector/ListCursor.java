@@ -0,0 +1,116 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.DbValue;
+import io.zeebe.db.KeyValuePairVisitor;
+import io.zeebe.db.impl.DbLong;
+import java.util.function.ObjLongConsumer;
+import org.agrona.collections.MutableInteger;
+import org.agrona.collections.MutableLong;
+
+/**
+ * Describes which page of a column family should be listed: the key to start with and the maximum
+ * number of entities to return. The result of a listing is the key to continue with, which can be
+ * passed as start key of the next cursor.
+ */
+public final class ListCursor {
+
+  public static final long NO_CONTINUATION = -1L;
+  public static final ListCursor ALL = new ListCursor(Long.MIN_VALUE, Integer.MAX_VALUE);
+
+  private final long startKey;
+  private final int limit;
+
+  private ListCursor(final long startKey, final int limit) {
+    this.startKey = startKey;
+    this.limit = limit;
+  }
+
+  public static ListCursor of(final long startKey, final int limit) {
+    return new ListCursor(startKey, limit);
+  }
+
+  public long getStartKey() {
+    return startKey;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Visits the entries of the given column family in key order, beginning with the start key and
+   * stopping after the limit is reached. The column family seeks to the start key directly. Nothing
+   * is collected, each entry is handed directly to the visitor.
+   *
+   * @return the key of the first entry which was not visited, or {@link #NO_CONTINUATION} if the
+   *     column family was walked completely
+   */
+  public <ValueType extends DbValue> long walk(
+      final ReadOnlyColumnFamily<DbLong, ValueType> columnFamily,
+      final ObjLongConsumer<ValueType> visitor) {
+    return walk(columnFamily, Long.MIN_VALUE, Long.MAX_VALUE, (value, key) -> true, visitor);
+  }
+
+  /**
+   * Like {@link #walk(ReadOnlyColumnFamily, ObjLongConsumer)}, but visits only the entries with a
+   * key in the given range which pass the filter. The range narrows the seek of the column family,
+   * the entries outside of it are not read at all. The filter is applied before the limit, so a page
+   * contains up to limit matching entries.
+   *
+   * @param minKey the smallest key to visit, inclusive
+   * @param maxKey the greatest key to visit, inclusive
+   */
+  public <ValueType extends DbValue> long walk(
+      final ReadOnlyColumnFamily<DbLong, ValueType> columnFamily,
+      final long minKey,
+      final long maxKey,
+      final EntryFilter<ValueType> filter,
+      final ObjLongConsumer<ValueType> visitor) {
+    final var visited = new MutableInteger();
+    final var continuation = new MutableLong(NO_CONTINUATION);
+    final var firstKey = Math.max(startKey, minKey);
+
+    final KeyValuePairVisitor<DbLong, ValueType> pageVisitor =
+        (key, value) -> {
+          final var entityKey = key.getValue();
+          if (entityKey < firstKey || entityKey > maxKey || !filter.test(value, entityKey)) {
+            return true;
+          }
+
+          if (visited.get() >= limit) {
+            continuation.set(entityKey);
+            return false;
+          }
+
+          visitor.accept(value, entityKey);
+          visited.increment();
+          return true;
+        };
+
+    // negative keys are stored after the positive ones, so we can only seek to positive keys and
+    // bound the walk by a positive key
+    final var seekKey = firstKey > 0 ? new DbLong() : null;
+    if (seekKey != null) {
+      seekKey.wrapLong(firstKey);
+    }
+
+    if (maxKey >= 0 && maxKey < Long.MAX_VALUE) {
+      final var upperBound = new DbLong();
+      upperBound.wrapLong(maxKey + 1);
+      columnFamily.whileTrue(seekKey, upperBound, pageVisitor);
+    } else if (seekKey != null) {
+      columnFamily.whileTrue(seekKey, pageVisitor);
+    } else {
+      columnFamily.whileTrue(pageVisitor);
+    }
+
+    return continuation.get();
+  }
+
+  /** Decides whether an entry is visited, before it counts towards the limit. */
+  @FunctionalInterface
+  public interface EntryFilter<ValueType> {
+
+    boolean test(ValueType value, long key);
+  }
+}
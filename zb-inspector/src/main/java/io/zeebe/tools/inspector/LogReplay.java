@@ -0,0 +1,608 @@
+package io.zeebe.tools.inspector;
+
+import io.atomix.raft.partition.impl.RaftNamespaces;
+import io.atomix.raft.storage.log.RaftLog;
+import io.atomix.raft.zeebe.ZeebeEntry;
+import io.atomix.raft.zeebe.ZeebeLogAppender;
+import io.atomix.storage.StorageLevel;
+import io.atomix.storage.journal.Indexed;
+import io.atomix.storage.journal.JournalReader.Mode;
+import io.zeebe.db.ZeebeDb;
+import io.zeebe.db.impl.rocksdb.ZeebeRocksDbFactory;
+import io.zeebe.engine.processor.CommandResponseWriter;
+import io.zeebe.engine.processor.KeyGenerator;
+import io.zeebe.engine.processor.ReadonlyProcessingContext;
+import io.zeebe.engine.processor.SideEffectProducer;
+import io.zeebe.engine.processor.StreamProcessor;
+import io.zeebe.engine.processor.StreamProcessorLifecycleAware;
+import io.zeebe.engine.processor.TypedRecord;
+import io.zeebe.engine.processor.TypedRecordProcessor;
+import io.zeebe.engine.processor.TypedRecordProcessors;
+import io.zeebe.engine.processor.TypedResponseWriter;
+import io.zeebe.engine.processor.TypedStreamWriter;
+import io.zeebe.engine.processor.workflow.EngineProcessors;
+import io.zeebe.engine.processor.workflow.deployment.distribute.DeploymentDistributor;
+import io.zeebe.engine.processor.workflow.deployment.distribute.PendingDeploymentDistribution;
+import io.zeebe.engine.processor.workflow.message.command.SubscriptionCommandSender;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.logstreams.log.LogStream;
+import io.zeebe.logstreams.log.LogStreamBuilder;
+import io.zeebe.logstreams.storage.atomix.AtomixLogStorage;
+import io.zeebe.logstreams.storage.atomix.ZeebeIndexAdapter;
+import io.zeebe.protocol.impl.record.UnifiedRecordValue;
+import io.zeebe.protocol.record.RecordType;
+import io.zeebe.protocol.record.RejectionType;
+import io.zeebe.protocol.record.ValueType;
+import io.zeebe.protocol.record.intent.Intent;
+import io.zeebe.util.buffer.BufferUtil;
+import io.zeebe.util.buffer.BufferWriter;
+import io.zeebe.util.sched.Actor;
+import io.zeebe.util.sched.ActorScheduler;
+import io.zeebe.util.sched.future.ActorFuture;
+import io.zeebe.util.sched.future.CompletableActorFuture;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays the log of a partition into an embedded engine with a fresh state, like a broker which
+ * starts without a snapshot. The log is read by the stream processor of the engine, which first
+ * reprocesses the records up to the last source event and then processes the remaining records.
+ * Nothing is written: the follow-up records and the responses are dropped, and the log is opened
+ * with an appender which ignores the appends.
+ *
+ * <p>The processors of the engine are wrapped to measure the time which is spent in them per value
+ * type, record type and intent. The replay ends when the log end is reached, or when the engine
+ * processed no record for the idle timeout, since the last records of a log don't necessarily have
+ * a processor. The idle timeout starts with the first processed record or when the reprocessing
+ * finished, because the stream processor scans the whole log before it reprocesses the first
+ * record. The reprocessing can also get stuck, if the log doesn't start at the beginning, like an
+ * extract of a log: the engine retries a record which refers to a missing workflow endlessly. The
+ * failed attempts are measured separately from the processed records and don't count as progress.
+ *
+ * <p>The fresh state is created in a temporary directory, which is deleted after the replay.
+ */
+final class LogReplay {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogReplay.class);
+
+  private static final String PARTITION_NAME_FORMAT = "raft-partition-partition-%d";
+  private static final int MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+  private static final int MAX_SEGMENT_SIZE = 512 * 1024 * 1024;
+  // the default index density of the broker
+  private static final int INDEX_DENSITY = 100;
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  private static final int RECORD_TYPES = RecordType.values().length;
+  private static final int INTENTS = Intent.maxCardinality();
+
+  private final Path partitionDirectory;
+  private final int partitionId;
+  private final long lastPosition;
+  private final long idleTimeoutMillis;
+
+  // indexed by (value type ordinal * RECORD_TYPES + record type ordinal) * INTENTS + intent, only
+  // updated by the stream processor, read after it is closed
+  private final long[] records = new long[ValueType.values().length * RECORD_TYPES * INTENTS];
+  private final long[] nanos = new long[records.length];
+  private final long[] failedAttempts = new long[records.length];
+  private final long[] failedNanos = new long[records.length];
+
+  private volatile long startNanos;
+  private volatile long recoveredNanos;
+  // 0 until the first record was processed successfully
+  private volatile long lastProcessedNanos;
+  private volatile long lastProcessedPosition = -1;
+  private long endNanos;
+  private long openMillis;
+  private boolean reachedEnd;
+
+  /**
+   * @param lastPosition the position of the last record of the log, the replay ends when a record
+   *     at or after it was processed
+   * @param idleTimeoutMillis the time without a processed record after which the replay ends
+   */
+  LogReplay(
+      final Path partitionDirectory,
+      final int partitionId,
+      final long lastPosition,
+      final long idleTimeoutMillis) {
+    this.partitionDirectory = partitionDirectory;
+    this.partitionId = partitionId;
+    this.lastPosition = lastPosition;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /** Replays the whole log, the measurements are available afterwards. */
+  void run() throws IOException, InterruptedException {
+    final var stateDirectory = Files.createTempDirectory("zb-replay-" + partitionId + "-");
+    final var actorScheduler =
+        ActorScheduler.newActorScheduler()
+            .setSchedulerName("replay-" + partitionId)
+            .setCpuBoundActorThreadCount(1)
+            .setIoBoundActorThreadCount(1)
+            .build();
+    actorScheduler.start();
+
+    final var openStartTime = System.currentTimeMillis();
+    final var name = String.format(PARTITION_NAME_FORMAT, partitionId);
+    final var index = ZeebeIndexAdapter.ofDensity(INDEX_DENSITY);
+    RaftLog raftLog = null;
+    LogStream logStream = null;
+    ZeebeDb<ZbColumnFamilies> zeebeDb = null;
+    StreamProcessor streamProcessor = null;
+    try {
+      raftLog =
+          RaftLog.builder()
+              .withDirectory(partitionDirectory.toFile())
+              .withName(name)
+              .withNamespace(RaftNamespaces.RAFT_STORAGE)
+              .withStorageLevel(StorageLevel.DISK)
+              .withMaxEntrySize(MAX_ENTRY_SIZE)
+              .withMaxSegmentSize(MAX_SEGMENT_SIZE)
+              .withJournalIndexFactory(() -> index)
+              .build();
+      final var log = raftLog;
+      final var logStorage =
+          new AtomixLogStorage(
+              index, (idx, mode) -> log.openReader(idx, Mode.ALL), NoopAppender::supply);
+      logStream =
+          LogStreamOpener.open(
+              actorScheduler,
+              LogStream.builder()
+                  .withActorScheduler(actorScheduler)
+                  .withLogStorage(logStorage)
+                  .withLogName(name)
+                  .withPartitionId(partitionId));
+      zeebeDb =
+          ZeebeRocksDbFactory.newFactory(ZbColumnFamilies.class)
+              .createDb(stateDirectory.toFile());
+      openMillis = System.currentTimeMillis() - openStartTime;
+
+      final var partitionCount = countPartitions();
+      streamProcessor =
+          StreamProcessor.builder()
+              .logStream(logStream)
+              .actorScheduler(actorScheduler)
+              .zeebeDb(zeebeDb)
+              .nodeId(0)
+              .commandResponseWriter(new NoopCommandResponseWriter())
+              .streamProcessorFactory(
+                  context -> {
+                    final var processors =
+                        EngineProcessors.createEngineProcessors(
+                            context,
+                            partitionCount,
+                            new SubscriptionCommandSender(
+                                partitionId, (receiverPartitionId, command) -> true),
+                            new NoopDeploymentDistributor(),
+                            (key, partition) -> {},
+                            jobType -> {});
+                    return timeProcessors(
+                        processors, context.getZeebeState().getKeyGenerator());
+                  })
+              .build();
+
+      startNanos = System.nanoTime();
+      streamProcessor.openAsync().join();
+      awaitEnd(streamProcessor);
+
+    } finally {
+      if (streamProcessor != null) {
+        streamProcessor.closeAsync().join();
+      }
+      if (logStream != null) {
+        logStream.closeAsync().join();
+      }
+      if (raftLog != null) {
+        raftLog.close();
+      }
+      if (zeebeDb != null) {
+        closeQuietly(zeebeDb);
+      }
+      stopQuietly(actorScheduler);
+      deleteDirectory(stateDirectory);
+    }
+  }
+
+  private void awaitEnd(final StreamProcessor streamProcessor) throws InterruptedException {
+    while (true) {
+      Thread.sleep(POLL_INTERVAL_MILLIS);
+
+      if (streamProcessor.isFailed()) {
+        throw new IllegalStateException(
+            "The engine failed to replay the log of partition " + partitionId
+                + ", the failure is logged by the stream processor");
+      }
+
+      if (lastProcessedPosition >= lastPosition) {
+        reachedEnd = true;
+        break;
+      }
+
+      // while the log is scanned for the reprocessing, nothing is processed
+      final var idleSinceNanos = Math.max(lastProcessedNanos, recoveredNanos);
+      if (idleSinceNanos == 0) {
+        continue;
+      }
+
+      final var idleMillis = (System.nanoTime() - idleSinceNanos) / 1_000_000;
+      if (idleMillis >= idleTimeoutMillis) {
+        if (recoveredNanos == 0) {
+          LOGGER.warn(
+              "Partition {}: the reprocessing is stuck after position {}, e.g. because the log"
+                  + " doesn't start with the deployments of its workflows",
+              partitionId,
+              lastProcessedPosition);
+        }
+        break;
+      }
+    }
+    endNanos = Math.max(Math.max(lastProcessedNanos, recoveredNanos), startNanos);
+  }
+
+  /**
+   * Registers a wrapper which measures the processor for every processor of the engine, together
+   * with the lifecycle listeners of the engine. The engine only has processors for commands and
+   * events.
+   */
+  private TypedRecordProcessors timeProcessors(
+      final TypedRecordProcessors engineProcessors, final KeyGenerator keyGenerator) {
+    final var processorMap = engineProcessors.getRecordProcessorMap();
+    final var processors = TypedRecordProcessors.processors(keyGenerator);
+    for (final var valueType : ValueType.values()) {
+      for (int intent = 0; intent < INTENTS; intent++) {
+        final var commandProcessor = processorMap.get(RecordType.COMMAND, valueType, intent);
+        if (commandProcessor != null) {
+          processors.onCommand(
+              valueType,
+              Intent.fromProtocolValue(valueType, (short) intent),
+              new TimedProcessor(commandProcessor));
+        }
+
+        final var eventProcessor = processorMap.get(RecordType.EVENT, valueType, intent);
+        if (eventProcessor != null) {
+          processors.onEvent(
+              valueType,
+              Intent.fromProtocolValue(valueType, (short) intent),
+              new TimedProcessor(eventProcessor));
+        }
+      }
+    }
+    engineProcessors.getLifecycleListeners().forEach(processors::withListener);
+
+    return processors.withListener(
+        new StreamProcessorLifecycleAware() {
+          @Override
+          public void onRecovered(final ReadonlyProcessingContext context) {
+            recoveredNanos = System.nanoTime();
+            LOGGER.debug(
+                "Partition {}: reprocessing finished after {} ms",
+                partitionId,
+                (recoveredNanos - startNanos) / 1_000_000);
+          }
+        });
+  }
+
+  private int countPartitions() throws IOException {
+    final var partitionsDirectory = partitionDirectory.getParent();
+    if (partitionsDirectory == null) {
+      return 1;
+    }
+    return Math.max(PartitionsInspector.findPartitions(partitionsDirectory).size(), 1);
+  }
+
+  private static int index(
+      final ValueType valueType, final RecordType recordType, final int intent) {
+    return (valueType.ordinal() * RECORD_TYPES + recordType.ordinal()) * INTENTS + intent;
+  }
+
+  /** @return the records of the value type which were processed successfully */
+  long getRecords(final ValueType valueType) {
+    return sum(records, valueType);
+  }
+
+  /**
+   * @return the time which the processors spent on the successfully processed records of the value
+   *     type
+   */
+  long getNanos(final ValueType valueType) {
+    return sum(nanos, valueType);
+  }
+
+  long getRecords(final ValueType valueType, final RecordType recordType, final int intent) {
+    return records[index(valueType, recordType, intent)];
+  }
+
+  long getNanos(final ValueType valueType, final RecordType recordType, final int intent) {
+    return nanos[index(valueType, recordType, intent)];
+  }
+
+  long getTotalRecords() {
+    return Stream.of(ValueType.values()).mapToLong(this::getRecords).sum();
+  }
+
+  long getTotalNanos() {
+    return Stream.of(ValueType.values()).mapToLong(this::getNanos).sum();
+  }
+
+  /** @return the attempts to process a record of the value type which failed and were retried */
+  long getFailedAttempts(final ValueType valueType) {
+    return sum(failedAttempts, valueType);
+  }
+
+  long getFailedAttempts(
+      final ValueType valueType, final RecordType recordType, final int intent) {
+    return failedAttempts[index(valueType, recordType, intent)];
+  }
+
+  long getTotalFailedAttempts() {
+    return Stream.of(ValueType.values()).mapToLong(this::getFailedAttempts).sum();
+  }
+
+  /** @return the time which the processors spent on the failed attempts */
+  long getTotalFailedNanos() {
+    return Stream.of(ValueType.values()).mapToLong(valueType -> sum(failedNanos, valueType)).sum();
+  }
+
+  /** @return the time to open the log and to create the fresh state */
+  long getOpenMillis() {
+    return openMillis;
+  }
+
+  /** @return the time until the reprocessing finished, or -1 if it didn't finish */
+  long getRecoveredMillis() {
+    return recoveredNanos == 0 ? -1 : (recoveredNanos - startNanos) / 1_000_000;
+  }
+
+  /** @return the time until the last record was processed */
+  long getReplayMillis() {
+    return (endNanos - startNanos) / 1_000_000;
+  }
+
+  long getLastProcessedPosition() {
+    return lastProcessedPosition;
+  }
+
+  long getLastPosition() {
+    return lastPosition;
+  }
+
+  /** @return true if a record at the end of the log was processed, false if the replay got idle */
+  boolean hasReachedEnd() {
+    return reachedEnd;
+  }
+
+  private static long sum(final long[] counters, final ValueType valueType) {
+    final var from = index(valueType, RecordType.values()[0], 0);
+    final var to = from + RECORD_TYPES * INTENTS;
+    long sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += counters[i];
+    }
+    return sum;
+  }
+
+  private static void closeQuietly(final ZeebeDb<?> zeebeDb) {
+    try {
+      zeebeDb.close();
+    } catch (Exception e) {
+      LOGGER.warn("Failed to close the replayed state", e);
+    }
+  }
+
+  private static void stopQuietly(final ActorScheduler actorScheduler) {
+    try {
+      actorScheduler.stop().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOGGER.warn("Failed to stop the actor scheduler of the replay", e);
+    }
+  }
+
+  private static void deleteDirectory(final Path directory) {
+    try (final var files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    } catch (IOException e) {
+      LOGGER.warn("Failed to delete the replayed state in {}", directory, e);
+    }
+  }
+
+  /**
+   * Measures the wrapped processor. The lifecycle calls are passed on, since the stream processor
+   * registers the processors as lifecycle listeners.
+   */
+  private final class TimedProcessor implements TypedRecordProcessor<UnifiedRecordValue> {
+
+    private final TypedRecordProcessor<UnifiedRecordValue> delegate;
+
+    @SuppressWarnings("unchecked")
+    private TimedProcessor(final TypedRecordProcessor<?> delegate) {
+      this.delegate = (TypedRecordProcessor<UnifiedRecordValue>) delegate;
+    }
+
+    // the stream processor only calls this variant, while reprocessing and while processing
+    @Override
+    public void processRecord(
+        final long position,
+        final TypedRecord<UnifiedRecordValue> record,
+        final TypedResponseWriter responseWriter,
+        final TypedStreamWriter streamWriter,
+        final Consumer<SideEffectProducer> sideEffect) {
+      final var index =
+          index(record.getValueType(), record.getRecordType(), record.getIntent().value());
+      final var start = System.nanoTime();
+      var processed = false;
+      try {
+        delegate.processRecord(position, record, responseWriter, streamWriter, sideEffect);
+        processed = true;
+      } finally {
+        final var end = System.nanoTime();
+        if (processed) {
+          records[index]++;
+          nanos[index] += end - start;
+          lastProcessedPosition = Math.max(lastProcessedPosition, record.getPosition());
+          lastProcessedNanos = end;
+        } else {
+          // the engine retries the record, a retry loop must not keep the replay alive
+          failedAttempts[index]++;
+          failedNanos[index] += end - start;
+        }
+      }
+    }
+
+    @Override
+    public void onRecovered(final ReadonlyProcessingContext context) {
+      delegate.onRecovered(context);
+    }
+
+    @Override
+    public void onClose() {
+      delegate.onClose();
+    }
+
+    @Override
+    public void onFailed() {
+      delegate.onFailed();
+    }
+  }
+
+  /** The log stream can only be built by an actor, this one is closed once it is built. */
+  private static final class LogStreamOpener extends Actor {
+
+    private static LogStream open(
+        final ActorScheduler actorScheduler, final LogStreamBuilder logStreamBuilder) {
+      final var opener = new LogStreamOpener();
+      actorScheduler.submitActor(opener).join();
+      try {
+        final var future = new CompletableActorFuture<LogStream>();
+        opener.actor.run(
+            () ->
+                logStreamBuilder
+                    .buildAsync()
+                    .onComplete(
+                        (logStream, error) -> {
+                          if (error == null) {
+                            future.complete(logStream);
+                          } else {
+                            future.completeExceptionally(error);
+                          }
+                        }));
+        return future.join();
+      } finally {
+        opener.actor.close();
+      }
+    }
+  }
+
+  /**
+   * Drops the appends, but confirms each one as written and committed right away. The log storage
+   * appender only releases its backpressure limit when an append is confirmed, otherwise the
+   * follow-up records of the processors would stall the replay once the limit is reached.
+   */
+  private static final class NoopAppender implements ZeebeLogAppender {
+
+    private long nextIndex = 1;
+
+    private static Optional<ZeebeLogAppender> supply() {
+      return Optional.of(new NoopAppender());
+    }
+
+    @Override
+    public void appendEntry(
+        final long lowestPosition,
+        final long highestPosition,
+        final ByteBuffer data,
+        final AppendListener appendListener) {
+      final var entry =
+          new Indexed<>(
+              nextIndex++,
+              new ZeebeEntry(0, System.currentTimeMillis(), lowestPosition, highestPosition, data),
+              data.remaining());
+      appendListener.onWrite(entry);
+      appendListener.onCommit(entry);
+    }
+  }
+
+  /**
+   * Distributes the deployments to no other partition, they are only kept until the distribution is
+   * written as completed.
+   */
+  private static final class NoopDeploymentDistributor implements DeploymentDistributor {
+
+    private final Long2ObjectHashMap<PendingDeploymentDistribution> pendingDeployments =
+        new Long2ObjectHashMap<>();
+
+    @Override
+    public ActorFuture<Void> pushDeployment(
+        final long key, final long position, final DirectBuffer buffer) {
+      pendingDeployments.put(
+          key, new PendingDeploymentDistribution(BufferUtil.cloneBuffer(buffer), position, 0));
+      return CompletableActorFuture.completed(null);
+    }
+
+    @Override
+    public PendingDeploymentDistribution removePendingDeployment(final long key) {
+      return pendingDeployments.remove(key);
+    }
+  }
+
+  private static final class NoopCommandResponseWriter implements CommandResponseWriter {
+
+    @Override
+    public CommandResponseWriter partitionId(final int partitionId) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter key(final long key) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter intent(final Intent intent) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter recordType(final RecordType type) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter valueType(final ValueType valueType) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter rejectionType(final RejectionType rejectionType) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter rejectionReason(final DirectBuffer rejectionReason) {
+      return this;
+    }
+
+    @Override
+    public CommandResponseWriter valueWriter(final BufferWriter value) {
+      return this;
+    }
+
+    @Override
+    public boolean tryWriteResponse(final int requestStreamId, final long requestId) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package io.zeebe.tools.inspector;
+
+import static io.zeebe.util.buffer.BufferUtil.bufferAsString;
+
+import io.zeebe.db.impl.DbLong;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.engine.state.message.MessageSubscription;
+import io.zeebe.util.buffer.BufferUtil;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.MutableInteger;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.rocksdb.RocksIterator;
+
+/**
+ * Shows the message subscriptions of the partition. A message subscription is opened on the
+ * partition of the message's correlation key, the workflow instance subscription on the partition
+ * of the workflow instance. Both are kept until the element instance is left, so many
+ * subscriptions per message name usually mean that the messages are not published, or can't be
+ * correlated.
+ */
+public final class MessageSubscriptionInspection implements EntityInspection {
+
+  private static final int SUBSCRIPTIONS = 0;
+  private static final int MESSAGE_SUBSCRIPTIONS = 1;
+  private static final int CORRELATING = 2;
+  private static final int WORKFLOW_SUBSCRIPTIONS = 3;
+  private static final int OPENING = 4;
+  private static final int CLOSING = 5;
+
+  private static final DirectBuffer STATE_OPENING = BufferUtil.wrapString("STATE_OPENING");
+  private static final DirectBuffer STATE_CLOSING = BufferUtil.wrapString("STATE_CLOSING");
+
+  /**
+   * Summarizes the subscriptions per message name, ordered by the number of subscriptions: the
+   * message subscriptions and how many of them are correlating a message, and the workflow instance
+   * subscriptions and how many of them are still opening or already closing. Each column family is
+   * walked once, only the message name and the state of a subscription are read.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var zeebeDb = partitionState.getZeebeDb();
+    final var counters =
+        new GroupCounters(
+            options,
+            "message-name",
+            "subscriptions",
+            "message-subscriptions",
+            "correlating",
+            "workflow-subscriptions",
+            "opening",
+            "closing");
+    final var valueView = new UnsafeBuffer(0, 0);
+
+    final var messageSubscriptionReader = new PropertyReader();
+    final var messageName = messageSubscriptionReader.addString("messageName");
+    final var commandSentTime = messageSubscriptionReader.addInteger("commandSentTime");
+
+    try (final var subscriptions =
+        zeebeDb.newIterator(ZbColumnFamilies.MESSAGE_SUBSCRIPTION_BY_KEY)) {
+      for (seekToFirst(subscriptions); isValid(subscriptions); subscriptions.next()) {
+        final var subscription = subscriptions.value();
+        valueView.wrap(subscription);
+        messageSubscriptionReader.read(valueView, 0, subscription.length);
+
+        final var nameCounters = counters.get(messageSubscriptionReader.getString(messageName));
+        nameCounters[SUBSCRIPTIONS]++;
+        nameCounters[MESSAGE_SUBSCRIPTIONS]++;
+        // the sent time is set while the message is correlated to the workflow instance
+        if (messageSubscriptionReader.getInteger(commandSentTime) > 0) {
+          nameCounters[CORRELATING]++;
+        }
+      }
+    }
+
+    final var workflowSubscriptionReader = new PropertyReader();
+    final var workflowMessageName = workflowSubscriptionReader.addString("messageName");
+    final var state = workflowSubscriptionReader.addString("state");
+
+    try (final var subscriptions =
+        zeebeDb.newIterator(ZbColumnFamilies.WORKFLOW_SUBSCRIPTION_BY_KEY)) {
+      for (seekToFirst(subscriptions); isValid(subscriptions); subscriptions.next()) {
+        final var subscription = subscriptions.value();
+        valueView.wrap(subscription);
+        workflowSubscriptionReader.read(valueView, 0, subscription.length);
+
+        final var nameCounters =
+            counters.get(workflowSubscriptionReader.getString(workflowMessageName));
+        nameCounters[SUBSCRIPTIONS]++;
+        nameCounters[WORKFLOW_SUBSCRIPTIONS]++;
+        final var subscriptionState = workflowSubscriptionReader.getString(state);
+        if (subscriptionState.equals(STATE_OPENING)) {
+          nameCounters[OPENING]++;
+        } else if (subscriptionState.equals(STATE_CLOSING)) {
+          nameCounters[CLOSING]++;
+        }
+      }
+    }
+
+    counters.write("MessageName", entityWriter);
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /** Shows the message and workflow instance subscriptions of the element instance with the key. */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var subscriptionCount = new MutableInteger();
+
+    // the subscriptions are keyed by the element instance key and the message name
+    final var elementInstanceKey = new DbLong();
+    elementInstanceKey.wrapLong(key);
+    partitionState
+        .getZeebeDb()
+        .createColumnFamily(
+            ZbColumnFamilies.MESSAGE_SUBSCRIPTION_BY_KEY,
+            partitionState.getDbContext(),
+            new DbBufferView(),
+            new MessageSubscription())
+        .whileEqualPrefix(
+            elementInstanceKey,
+            (subscriptionKey, subscription) -> {
+              subscriptionCount.increment();
+              entityConsumer.accept(
+                  String.format(
+                      "MessageSubscription[element-instance-key: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", message-name: \"%s\", correlation-key: \"%s\", correlating: %s]",
+                      subscription.getElementInstanceKey(),
+                      subscription.getWorkflowInstanceKey(),
+                      bufferAsString(subscription.getBpmnProcessId()),
+                      bufferAsString(subscription.getMessageName()),
+                      bufferAsString(subscription.getCorrelationKey()),
+                      subscription.isCorrelating()));
+            });
+
+    partitionState
+        .getZeebeState()
+        .getWorkflowInstanceSubscriptionState()
+        .visitElementSubscriptions(
+            key,
+            subscription -> {
+              subscriptionCount.increment();
+              entityConsumer.accept(
+                  String.format(
+                      "WorkflowInstanceSubscription[element-instance-key: %d, workflow-instance-key: %d, BPMN-process-id: \"%s\", message-name: \"%s\", correlation-key: \"%s\", target-element-id: \"%s\", subscription-partition-id: %d, state: %s]",
+                      subscription.getElementInstanceKey(),
+                      subscription.getWorkflowInstanceKey(),
+                      bufferAsString(subscription.getBpmnProcessId()),
+                      bufferAsString(subscription.getMessageName()),
+                      bufferAsString(subscription.getCorrelationKey()),
+                      bufferAsString(subscription.getTargetElementId()),
+                      subscription.getSubscriptionPartitionId(),
+                      subscription.isOpening()
+                          ? "opening"
+                          : subscription.isClosing() ? "closing" : "opened"));
+              return true;
+            });
+
+    if (subscriptionCount.get() == 0) {
+      entityConsumer.accept("No subscription found for the element instance with key: " + key);
+    }
+  }
+
+  private static void seekToFirst(final RocksIterator iterator) {
+    if (iterator != null) {
+      iterator.seekToFirst();
+    }
+  }
+
+  private static boolean isValid(final RocksIterator iterator) {
+    return iterator != null && iterator.isValid();
+  }
+}
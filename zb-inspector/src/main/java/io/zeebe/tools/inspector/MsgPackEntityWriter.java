@@ -0,0 +1,80 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.msgpack.spec.MsgPackWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Writes each entity as a MsgPack map, the maps are written back to back without a separator. The
+ * field names and enum values are encoded once and reused.
+ */
+final class MsgPackEntityWriter extends BufferedEntityWriter {
+
+  private final MsgPackWriter writer = new MsgPackWriter();
+  private final Map<String, DirectBuffer> encodedNames = new HashMap<>();
+  private final Map<Enum<?>, DirectBuffer> encodedEnums = new HashMap<>();
+  private final UnsafeBuffer stringView = new UnsafeBuffer(0, 0);
+
+  private int mapHeaderOffset;
+  private int fieldCount;
+
+  MsgPackEntityWriter(final EntityChannel channel, final int partitionId) {
+    super(channel, partitionId);
+  }
+
+  @Override
+  protected void onStartEntity() {
+    // the size of the map is only known at the end
+    mapHeaderOffset = offset;
+    fieldCount = 0;
+    writer.wrap(buffer, offset);
+    writer.reserveMapHeader();
+    offset = writer.getOffset();
+  }
+
+  @Override
+  protected void onEndEntity() {
+    writer.writeReservedMapHeader(mapHeaderOffset, fieldCount);
+  }
+
+  @Override
+  public void field(final String name, final long value) {
+    writeName(name).writeInteger(value);
+    offset = writer.getOffset();
+  }
+
+  @Override
+  public void field(final String name, final String value) {
+    // only strings which are not part of a record are encoded, like the id of an exporter
+    stringView.wrap(value.getBytes(StandardCharsets.UTF_8));
+    writeName(name).writeString(stringView);
+    offset = writer.getOffset();
+  }
+
+  @Override
+  public void field(final String name, final DirectBuffer value) {
+    writeName(name).writeString(value);
+    offset = writer.getOffset();
+  }
+
+  @Override
+  public void field(final String name, final Enum<?> value) {
+    final var encodedValue =
+        encodedEnums.computeIfAbsent(value, v -> encode(v.name()));
+    writeName(name).writeString(encodedValue);
+    offset = writer.getOffset();
+  }
+
+  private MsgPackWriter writeName(final String name) {
+    fieldCount++;
+    writer.wrap(buffer, offset);
+    return writer.writeString(encodedNames.computeIfAbsent(name, MsgPackEntityWriter::encode));
+  }
+
+  private static DirectBuffer encode(final String value) {
+    return new UnsafeBuffer(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,114 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.engine.state.ZeebeState;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A partition directory of a broker. The state of the partition is opened on first use and stays
+ * open until the partition is closed, so it can answer several inspections.
+ *
+ * <p>A partition is not thread-safe, it must only be inspected by one thread at a time.
+ */
+final class Partition implements AutoCloseable {
+
+  private static final String DB_FOLDER = "runtime";
+  private static final String SNAPSHOTS_FOLDER = "snapshots";
+
+  private final Path directory;
+  private final int id;
+  private final String state;
+
+  private ReadOnlyZeebeDb zeebeDb;
+  private PartitionState partitionState;
+
+  /** @param state defines which state is opened, runtime (default if null) or snapshot */
+  Partition(final Path directory, final String state) {
+    ensureValidState(state);
+
+    this.directory = directory;
+    this.state = state;
+    id = getPartitionId(directory);
+  }
+
+  static void ensureValidState(final String state) {
+    if (state != null && !state.equals("runtime") && !state.equals("snapshot")) {
+      throw new IllegalArgumentException(
+          "Expected state to be runtime or snapshot, but got " + state);
+    }
+  }
+
+  static boolean isPartitionDirectory(final Path directory) {
+    try {
+      getPartitionId(directory);
+      return true;
+    } catch (NumberFormatException nfe) {
+      return false;
+    }
+  }
+
+  static int getPartitionId(final Path partitionDirectory) {
+    return Integer.parseInt(partitionDirectory.getFileName().toString());
+  }
+
+  int getId() {
+    return id;
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  boolean isOpen() {
+    return partitionState != null;
+  }
+
+  /** @return the state of the partition, which is opened if it is not open yet */
+  PartitionState open() throws IOException {
+    if (partitionState == null) {
+      zeebeDb = ReadOnlyZeebeDb.open(getDbDirectory());
+      final var dbContext = zeebeDb.createContext();
+      final var zeebeState = new ZeebeState(id, zeebeDb, dbContext);
+      partitionState = PartitionState.of(zeebeDb, zeebeState, dbContext, directory, id);
+    }
+
+    return partitionState;
+  }
+
+  @Override
+  public void close() {
+    if (zeebeDb != null) {
+      zeebeDb.close();
+      zeebeDb = null;
+      partitionState = null;
+    }
+  }
+
+  /** @return the directory of the state which is opened, the runtime or the latest snapshot */
+  Path getDbDirectory() throws IOException {
+    if (state == null || state.equals("runtime")) {
+      return directory.resolve(DB_FOLDER);
+    }
+
+    // snapshot directories are named <index>-<term>-<timestamp>
+    try (final var snapshots = Files.list(directory.resolve(SNAPSHOTS_FOLDER))) {
+      return snapshots
+          .filter(Files::isDirectory)
+          .max(Comparator.comparing(Partition::getSnapshotIdParts, Arrays::compare))
+          .orElseThrow(() -> new IllegalStateException("No snapshot found in " + directory));
+    }
+  }
+
+  private static long[] getSnapshotIdParts(final Path snapshot) {
+    try {
+      return Arrays.stream(snapshot.getFileName().toString().split("-"))
+          .mapToLong(Long::parseLong)
+          .toArray();
+    } catch (NumberFormatException nfe) {
+      return new long[0];
+    }
+  }
+}
@@ -0,0 +1,429 @@
+package io.zeebe.tools.inspector;
+
+import io.atomix.raft.partition.impl.RaftNamespaces;
+import io.atomix.raft.storage.log.entry.RaftLogEntry;
+import io.atomix.raft.zeebe.ZeebeEntry;
+import io.atomix.storage.journal.JournalSegmentDescriptor;
+import io.atomix.storage.journal.JournalSegmentFile;
+import io.zeebe.logstreams.impl.log.LogEntryDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * An overview of the segments of a partition's log, which is read without opening the log. Opening
+ * the log reads every entry of every segment. This overview reads the descriptor and the first
+ * entries of each segment, and only walks the entry headers of the last segment to find the end of
+ * the log.
+ *
+ * <p>A position in the log is the address of a record, not a sequence number, so the distance of
+ * two positions doesn't say how many records are between them. The raft index of the entries is a
+ * sequence number, but an entry contains a batch of records.
+ */
+final class PartitionLog {
+
+  private static final String PARTITION_NAME_FORMAT = "raft-partition-partition-%d";
+
+  // each entry starts with its length and its checksum
+  private static final int ENTRY_HEADER_LENGTH = Integer.BYTES + Integer.BYTES;
+
+  private final List<Segment> segments;
+  private final long lastPosition;
+  private final long lastIndex;
+
+  private PartitionLog(final List<Segment> segments, final long lastPosition, final long lastIndex) {
+    this.segments = segments;
+    this.lastPosition = lastPosition;
+    this.lastIndex = lastIndex;
+  }
+
+  /** @return the overview of the log, which is empty if the directory contains no segments */
+  static PartitionLog read(final Path partitionDirectory, final int partitionId)
+      throws IOException {
+    final var name = String.format(PARTITION_NAME_FORMAT, partitionId);
+    final List<Path> segmentFiles;
+    try (final var files = Files.list(partitionDirectory)) {
+      segmentFiles =
+          files
+              .filter(file -> JournalSegmentFile.isSegmentFile(name, file.toFile()))
+              .collect(Collectors.toList());
+    }
+
+    final var segments = new ArrayList<Segment>();
+    for (final var segmentFile : segmentFiles) {
+      segments.add(Segment.read(segmentFile));
+    }
+    segments.sort(Comparator.comparingLong(Segment::getId));
+
+    if (segments.isEmpty()) {
+      return new PartitionLog(List.of(), -1, -1);
+    }
+
+    // usually the last segment contains records, unless it was just rolled over
+    var lastPosition = -1L;
+    for (int i = segments.size() - 1; i >= 0 && lastPosition < 0; i--) {
+      lastPosition = segments.get(i).readLastPosition();
+    }
+
+    // a segment ends before the first record of the next segment which contains records
+    var nextFirstPosition = lastPosition + 1;
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      final var segment = segments.get(i);
+      if (segment.firstPosition >= 0) {
+        segment.lastPosition = nextFirstPosition - 1;
+        nextFirstPosition = segment.firstPosition;
+      }
+    }
+
+    final var lastSegment = segments.get(segments.size() - 1);
+    final var lastIndex = lastSegment.firstIndex + lastSegment.entryOffsets.size() - 1;
+
+    return new PartitionLog(Collections.unmodifiableList(segments), lastPosition, lastIndex);
+  }
+
+  boolean isEmpty() {
+    return segments.isEmpty();
+  }
+
+  List<Segment> getSegments() {
+    return segments;
+  }
+
+  /** @return the position of the last record in the log, or -1 if the log contains no records */
+  long getLastPosition() {
+    return lastPosition;
+  }
+
+  long getLastIndex() {
+    return lastIndex;
+  }
+
+  /**
+   * The segments which can't be deleted until the given position is reached. The last segment is
+   * never deleted, so it's not included.
+   */
+  List<Segment> getSegmentsAfter(final long position) {
+    return segments.stream()
+        .limit(segments.size() - 1L)
+        .filter(segment -> segment.lastPosition > position)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Finds the first entry which contains records after the given position. Only the segment of the
+   * position is read: its entry headers are walked and the entries are searched by bisection, so
+   * only a few entries are decoded.
+   *
+   * @return the location of the entry, or null if the log contains no records after the position
+   */
+  Location locateAfter(final long position) throws IOException {
+    if (position >= lastPosition) {
+      return null;
+    }
+
+    // the last position of a segment is derived from the next one, a position can be after the
+    // last record of the segment and before the first record of the next one
+    final var segmentIndex =
+        IntStream.range(0, segments.size())
+            .filter(i -> segments.get(i).lastPosition > position)
+            .findFirst()
+            .orElseThrow();
+    final var segment = segments.get(segmentIndex);
+
+    try (final var channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+      final var buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      final var entryOffsets = segment.walkEntries(buffer);
+
+      var low = 0;
+      var high = entryOffsets.size();
+      while (low < high) {
+        final var middle = (low + high) >>> 1;
+        if (getHighestPositionFrom(buffer, entryOffsets, middle) > position) {
+          high = middle;
+        } else {
+          low = middle + 1;
+        }
+      }
+
+      if (low < entryOffsets.size()) {
+        return new Location(segment, low, entryOffsets.getInt(low));
+      }
+    }
+
+    final var nextSegment = segments.get(segmentIndex + 1);
+    return new Location(nextSegment, 0, JournalSegmentDescriptor.BYTES);
+  }
+
+  /** @return the number of entries from the given location to the end of the log */
+  long countEntriesFrom(final Location location) {
+    return lastIndex - location.getIndex() + 1;
+  }
+
+  /**
+   * @return the bytes from the given location to the end of the log. The segments after the one of
+   *     the location count with the size of their file, if their entries were not walked. A segment
+   *     is only rolled over if it's full.
+   */
+  long countBytesFrom(final Location location) {
+    var bytes = location.segment.getBytes() - location.offset;
+    for (final var segment : segments) {
+      if (segment.id > location.segment.id) {
+        bytes += segment.getBytes();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Counts the records after the given position by reading all entries from the given location to
+   * the end of the log.
+   */
+  long countRecordsAfter(final long position, final Location location) throws IOException {
+    final var view = new UnsafeBuffer(0, 0);
+    long records = 0;
+
+    for (final var segment : segments) {
+      if (segment.id < location.segment.id) {
+        continue;
+      }
+
+      try (final var channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+        final var buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        final var entryOffsets = segment.walkEntries(buffer);
+        final var first = segment == location.segment ? location.ordinal : 0;
+
+        for (int i = first; i < entryOffsets.size(); i++) {
+          final var entry = readEntry(buffer, entryOffsets.getInt(i));
+          if (!(entry instanceof ZeebeEntry)) {
+            continue;
+          }
+
+          view.wrap(((ZeebeEntry) entry).data());
+          for (int offset = 0; offset < view.capacity(); ) {
+            if (LogEntryDescriptor.getPosition(view, offset) > position) {
+              records++;
+            }
+            offset += LogEntryDescriptor.getFragmentLength(view, offset);
+          }
+        }
+      }
+    }
+
+    return records;
+  }
+
+  /**
+   * @return the highest position of the entry, or of the next entry with records if it contains no
+   *     records, which keeps the positions ordered for the bisection
+   */
+  private static long getHighestPositionFrom(
+      final ByteBuffer buffer, final IntArrayList entryOffsets, final int ordinal) {
+    for (int i = ordinal; i < entryOffsets.size(); i++) {
+      final var entry = readEntry(buffer, entryOffsets.getInt(i));
+      if (entry instanceof ZeebeEntry) {
+        return ((ZeebeEntry) entry).highestPosition();
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private static boolean isValidLength(final int length, final long offset, final long size) {
+    return length > 0 && offset + ENTRY_HEADER_LENGTH + length <= size;
+  }
+
+  /** @return the entry at the given offset, or null if its checksum doesn't match */
+  private static RaftLogEntry readEntry(final ByteBuffer buffer, final int offset) {
+    final var length = buffer.getInt(offset);
+    final var checksum = buffer.getInt(offset + Integer.BYTES);
+    final var bytes = new byte[length];
+    buffer.position(offset + ENTRY_HEADER_LENGTH);
+    buffer.get(bytes);
+
+    final var crc32 = new CRC32();
+    crc32.update(bytes);
+    if ((int) crc32.getValue() != checksum) {
+      return null;
+    }
+
+    return RaftNamespaces.RAFT_STORAGE.deserialize(bytes);
+  }
+
+  /** An entry of the log, with its raft index. */
+  static final class Location {
+
+    private final Segment segment;
+    private final int ordinal;
+    private final int offset;
+
+    private Location(final Segment segment, final int ordinal, final int offset) {
+      this.segment = segment;
+      this.ordinal = ordinal;
+      this.offset = offset;
+    }
+
+    Segment getSegment() {
+      return segment;
+    }
+
+    long getIndex() {
+      return segment.firstIndex + ordinal;
+    }
+  }
+
+  static final class Segment {
+
+    private final Path path;
+    private final long id;
+    private final long firstIndex;
+    private final long fileBytes;
+
+    private long firstPosition = -1;
+    private long lastPosition = -1;
+
+    // the offsets of the entries, only known if the segment was walked
+    private IntArrayList entryOffsets;
+    private int usedBytes = -1;
+
+    private Segment(
+        final Path path, final JournalSegmentDescriptor descriptor, final long fileBytes) {
+      this.path = path;
+      id = descriptor.id();
+      firstIndex = descriptor.index();
+      this.fileBytes = fileBytes;
+    }
+
+    /** Reads the descriptor and the first entries, until the first one which contains records. */
+    private static Segment read(final Path segmentFile) throws IOException {
+      try (final var channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+        final var descriptorBuffer = ByteBuffer.allocate(JournalSegmentDescriptor.BYTES);
+        channel.read(descriptorBuffer, 0);
+        descriptorBuffer.flip();
+        final var segment =
+            new Segment(segmentFile, new JournalSegmentDescriptor(descriptorBuffer), channel.size());
+
+        // the first entries can be raft entries without records, like the configuration
+        var offset = (long) JournalSegmentDescriptor.BYTES;
+        final var headerBuffer = ByteBuffer.allocate(ENTRY_HEADER_LENGTH);
+        while (segment.firstPosition < 0) {
+          headerBuffer.clear();
+          if (channel.read(headerBuffer, offset) < ENTRY_HEADER_LENGTH) {
+            break;
+          }
+          final var length = headerBuffer.getInt(0);
+          if (!isValidLength(length, offset, channel.size())) {
+            break;
+          }
+
+          final var entryBuffer = ByteBuffer.allocate(ENTRY_HEADER_LENGTH + length);
+          channel.read(entryBuffer, offset);
+          final var entry = readEntry(entryBuffer, 0);
+          if (entry == null) {
+            break;
+          }
+          if (entry instanceof ZeebeEntry) {
+            segment.firstPosition = ((ZeebeEntry) entry).lowestPosition();
+          }
+          offset += ENTRY_HEADER_LENGTH + length;
+        }
+
+        return segment;
+      }
+    }
+
+    /**
+     * Walks the entries and reads them backwards until one contains records. Like the journal, the
+     * segment is truncated at an invalid entry: the entry and all entries after it are dropped, so
+     * the remaining offsets stay sorted and the used bytes end before the entry.
+     *
+     * @return the position of the last record in the segment, or -1 if it contains no records
+     */
+    private long readLastPosition() throws IOException {
+      try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        final var buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        final var offsets = walkEntries(buffer);
+
+        for (int i = offsets.size() - 1; i >= 0; i--) {
+          final var entry = readEntry(buffer, offsets.getInt(i));
+          if (entry == null) {
+            // e.g. a partially written entry at the end of the log
+            usedBytes = offsets.getInt(i);
+            while (offsets.size() > i) {
+              offsets.remove(offsets.size() - 1);
+            }
+          } else if (entry instanceof ZeebeEntry) {
+            return ((ZeebeEntry) entry).highestPosition();
+          }
+        }
+
+        return -1;
+      }
+    }
+
+    /**
+     * Walks the headers of the entries, without reading the entries in between. The offsets are
+     * kept, the segment is only walked once.
+     */
+    private IntArrayList walkEntries(final MappedByteBuffer buffer) {
+      if (entryOffsets != null) {
+        return entryOffsets;
+      }
+
+      entryOffsets = new IntArrayList();
+      var offset = JournalSegmentDescriptor.BYTES;
+      while (offset + ENTRY_HEADER_LENGTH <= buffer.capacity()) {
+        final var length = buffer.getInt(offset);
+        if (!isValidLength(length, offset, buffer.capacity())) {
+          break;
+        }
+        entryOffsets.addInt(offset);
+        offset += ENTRY_HEADER_LENGTH + length;
+      }
+      usedBytes = offset;
+
+      return entryOffsets;
+    }
+
+    long getId() {
+      return id;
+    }
+
+    long getFirstIndex() {
+      return firstIndex;
+    }
+
+    /** @return the position of the first record, or -1 if the segment contains no records */
+    long getFirstPosition() {
+      return firstPosition;
+    }
+
+    long getLastPosition() {
+      return lastPosition;
+    }
+
+    /**
+     * @return the bytes which are used by entries, or the size of the file if the entries were not
+     *     walked
+     */
+    long getBytes() {
+      return usedBytes < 0 ? fileBytes : usedBytes;
+    }
+
+    long getFileBytes() {
+      return fileBytes;
+    }
+  }
+}
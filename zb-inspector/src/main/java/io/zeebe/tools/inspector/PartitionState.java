@@ -1,29 +1,37 @@
 package io.zeebe.tools.inspector;
 
 import io.zeebe.db.DbContext;
-import io.zeebe.db.ZeebeDb;
-import io.zeebe.engine.state.ZbColumnFamilies;
 import io.zeebe.engine.state.ZeebeState;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 class PartitionState {
 
-  private final ZeebeDb<ZbColumnFamilies> zeebeDb;
+  private final ReadOnlyZeebeDb zeebeDb;
   private final ZeebeState zeebeState;
   private final DbContext dbContext;
+  private final Path partitionDirectory;
+  private final int partitionId;
 
-  public static PartitionState of(ZeebeDb<ZbColumnFamilies> zeebeDb, ZeebeState zeebeState, DbContext dbContext) {
-    return new PartitionState(zeebeDb, zeebeState, dbContext);
+  private PartitionLog log;
+
+  public static PartitionState of(ReadOnlyZeebeDb zeebeDb, ZeebeState zeebeState, DbContext dbContext,
+      Path partitionDirectory, int partitionId) {
+    return new PartitionState(zeebeDb, zeebeState, dbContext, partitionDirectory, partitionId);
   }
 
   private PartitionState(
-      final ZeebeDb<ZbColumnFamilies> zeebeDb, final ZeebeState zeebeState,
-      final DbContext dbContext) {
+      final ReadOnlyZeebeDb zeebeDb, final ZeebeState zeebeState,
+      final DbContext dbContext, final Path partitionDirectory, final int partitionId) {
     this.zeebeDb = zeebeDb;
     this.zeebeState = zeebeState;
     this.dbContext = dbContext;
+    this.partitionDirectory = partitionDirectory;
+    this.partitionId = partitionId;
   }
 
-  public ZeebeDb<ZbColumnFamilies> getZeebeDb() {
+  public ReadOnlyZeebeDb getZeebeDb() {
     return zeebeDb;
   }
 
@@ -34,4 +42,27 @@ class PartitionState {
   public DbContext getDbContext() {
     return dbContext;
   }
+
+  public int getPartitionId() {
+    return partitionId;
+  }
+
+  public Path getPartitionDirectory() {
+    return partitionDirectory;
+  }
+
+  /**
+   * The overview of the partition's log is read on first use. Like the opened state, it shows the
+   * log at that time.
+   */
+  public PartitionLog getLog() {
+    if (log == null) {
+      try {
+        log = PartitionLog.read(partitionDirectory, partitionId);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read the log of partition " + partitionId, e);
+      }
+    }
+    return log;
+  }
 }
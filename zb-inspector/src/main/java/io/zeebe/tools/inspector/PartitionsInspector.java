@@ -0,0 +1,193 @@
+package io.zeebe.tools.inspector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inspects the partitions of a broker. Several partitions are inspected at the same time on a
+ * bounded thread pool, every partition is opened and inspected by one thread.
+ *
+ * <p>If the partitions are not kept open, they are closed after their inspection, so at most
+ * {@code parallelism} databases are open at once. Otherwise, they stay open for the next
+ * inspection and must be closed by the caller.
+ */
+final class PartitionsInspector {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionsInspector.class);
+
+  private final boolean keepOpen;
+
+  PartitionsInspector(final boolean keepOpen) {
+    this.keepOpen = keepOpen;
+  }
+
+  /** @return the numbered partition directories, ordered by the partition id */
+  static List<Path> findPartitions(final Path partitionsDirectory) throws IOException {
+    try (final var directories = Files.list(partitionsDirectory)) {
+      return directories
+          .filter(Files::isDirectory)
+          .filter(Partition::isPartitionDirectory)
+          .sorted(Comparator.comparingInt(Partition::getPartitionId))
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Inspects the given partitions with at most {@code parallelism} threads. Each partition gets its
+   * own writer, which is created and used by the thread inspecting the partition.
+   *
+   * <p>A failing partition doesn't stop the others, its error is part of its result.
+   *
+   * @return the results in the order of the given partitions
+   */
+  List<PartitionResult> inspect(
+      final List<Partition> partitions,
+      final int parallelism,
+      final PartitionInspection inspection,
+      final IntFunction<EntityWriter> entityWriterFactory)
+      throws InterruptedException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException(
+          "Expected parallelism to be positive, but got " + parallelism);
+    }
+
+    if (partitions.size() == 1) {
+      final var partition = partitions.get(0);
+      return List.of(inspect(partition, inspection, entityWriterFactory.apply(partition.getId())));
+    }
+
+    final var threadCount = Math.min(parallelism, partitions.size());
+    final var threadId = new AtomicInteger();
+    final var executor =
+        Executors.newFixedThreadPool(
+            Math.max(threadCount, 1),
+            runnable -> {
+              final var thread =
+                  new Thread(runnable, "partition-inspector-" + threadId.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    try {
+      final var futures = new ArrayList<Future<PartitionResult>>();
+      for (final var partition : partitions) {
+        futures.add(
+            executor.submit(
+                () ->
+                    inspect(
+                        partition,
+                        inspection,
+                        entityWriterFactory.apply(partition.getId()))));
+      }
+
+      final var results = new ArrayList<PartitionResult>(futures.size());
+      for (final var future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          // inspect catches everything, this is only reached for errors
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Opens the given partition if it is not open yet and runs the inspection on it. The writer is
+   * flushed at the end.
+   */
+  PartitionResult inspect(
+      final Partition partition,
+      final PartitionInspection inspection,
+      final EntityWriter entityWriter) {
+    final var result = new PartitionResult(partition.getId());
+
+    final var openStartTime = System.currentTimeMillis();
+    try {
+      final var partitionState = partition.open();
+
+      final var inspectStartTime = System.currentTimeMillis();
+      result.openMillis = inspectStartTime - openStartTime;
+
+      result.continuation = inspection.inspect(partitionState, entityWriter);
+      entityWriter.flush();
+
+      result.inspectMillis = System.currentTimeMillis() - inspectStartTime;
+      result.entityCount = entityWriter.getEntityCount();
+
+    } catch (RuntimeException | IOException e) {
+      LOGGER.debug("Failed to inspect partition {}", partition.getId(), e);
+      result.error = e;
+    } finally {
+      if (!keepOpen) {
+        partition.close();
+      }
+    }
+
+    return result;
+  }
+
+  @FunctionalInterface
+  interface PartitionInspection {
+
+    /** @return the continuation of a listing, or {@link ListCursor#NO_CONTINUATION} */
+    long inspect(PartitionState partitionState, EntityWriter entityWriter);
+  }
+
+  static final class PartitionResult {
+
+    private final int partitionId;
+    private long openMillis;
+    private long inspectMillis;
+    private long entityCount;
+    private long continuation = ListCursor.NO_CONTINUATION;
+    private Throwable error;
+
+    private PartitionResult(final int partitionId) {
+      this.partitionId = partitionId;
+    }
+
+    int getPartitionId() {
+      return partitionId;
+    }
+
+    long getOpenMillis() {
+      return openMillis;
+    }
+
+    long getInspectMillis() {
+      return inspectMillis;
+    }
+
+    long getEntityCount() {
+      return entityCount;
+    }
+
+    long getContinuation() {
+      return continuation;
+    }
+
+    boolean hasFailed() {
+      return error != null;
+    }
+
+    Throwable getError() {
+      return error;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.msgpack.spec.MsgPackReader;
+import io.zeebe.util.buffer.BufferUtil;
+import java.util.ArrayList;
+import java.util.List;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reads a few properties of a serialized MsgPack value, like the type of a job, without decoding
+ * the whole value. All other properties are skipped, and the reading stops as soon as all
+ * properties are found, or as soon as a found property is rejected by the check which is passed to
+ * {@link #read(DirectBuffer, int, int, PropertyCheck)}. This is cheaper than wrapping the value in
+ * its state class when only a few fields of each entry are needed, e.g. by a summary or a filter.
+ *
+ * <p>The properties are registered once, before the first value is read. The strings and binaries
+ * are views of the value, they are only valid until the next value is read.
+ */
+final class PropertyReader {
+
+  private final DirectBuffer[] recordPath;
+  private final List<DirectBuffer> names = new ArrayList<>();
+  private final List<PropertyType> types = new ArrayList<>();
+
+  private final MsgPackReader reader = new MsgPackReader();
+  private final DirectBuffer name = new UnsafeBuffer(0, 0);
+
+  private long[] integers = new long[0];
+  private DirectBuffer[] strings = new DirectBuffer[0];
+  private boolean[] found = new boolean[0];
+
+  /**
+   * @param recordPath the properties which lead from the stored value to the record, for example
+   *     {@code jobRecord} for a job
+   */
+  PropertyReader(final String... recordPath) {
+    this.recordPath = new DirectBuffer[recordPath.length];
+    for (int i = 0; i < recordPath.length; i++) {
+      this.recordPath[i] = BufferUtil.wrapString(recordPath[i]);
+    }
+  }
+
+  /** @return the index of the property, which is passed to {@link #getInteger(int)} */
+  int addInteger(final String property) {
+    return add(property, PropertyType.INTEGER);
+  }
+
+  /** @return the index of the property, which is passed to {@link #getString(int)} */
+  int addString(final String property) {
+    return add(property, PropertyType.STRING);
+  }
+
+  /**
+   * The bytes of a binary property are only wrapped, not read.
+   *
+   * @return the index of the property, which is passed to {@link #getBinary(int)}
+   */
+  int addBinary(final String property) {
+    return add(property, PropertyType.BINARY);
+  }
+
+  private int add(final String property, final PropertyType type) {
+    names.add(BufferUtil.wrapString(property));
+    types.add(type);
+
+    final var count = names.size();
+    integers = new long[count];
+    strings = new DirectBuffer[count];
+    for (int i = 0; i < count; i++) {
+      strings[i] = new UnsafeBuffer(0, 0);
+    }
+    found = new boolean[count];
+    return count - 1;
+  }
+
+  /**
+   * Reads the registered properties of the given value. A property which is missing keeps its
+   * default value, zero or an empty string.
+   *
+   * @return false if the value doesn't contain the record
+   */
+  boolean read(final DirectBuffer buffer, final int offset, final int length) {
+    return read(buffer, offset, length, index -> true);
+  }
+
+  /**
+   * Like {@link #read(DirectBuffer, int, int)}, but passes each found property to the check and
+   * stops as soon as it rejects one.
+   *
+   * @return false if the value doesn't contain the record, or if the check rejected a property
+   */
+  boolean read(
+      final DirectBuffer buffer, final int offset, final int length, final PropertyCheck check) {
+    for (int i = 0; i < found.length; i++) {
+      found[i] = false;
+      integers[i] = 0;
+      strings[i].wrap(0, 0);
+    }
+
+    reader.wrap(buffer, offset, length);
+    for (final var property : recordPath) {
+      if (!readUntilProperty(property)) {
+        return false;
+      }
+    }
+
+    final var propertyCount = reader.readMapHeader();
+    var remaining = found.length;
+    for (int i = 0; i < propertyCount && remaining > 0; i++) {
+      readString(name);
+
+      final var index = names.indexOf(name);
+      if (index < 0) {
+        reader.skipValue();
+        continue;
+      }
+
+      switch (types.get(index)) {
+        case INTEGER:
+          integers[index] = reader.readInteger();
+          break;
+        case STRING:
+          readString(strings[index]);
+          break;
+        default:
+          readBinary(strings[index]);
+          break;
+      }
+      found[index] = true;
+      remaining--;
+
+      if (!check.accept(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return true if all properties were contained in the last value which was read */
+  boolean hasFoundAll() {
+    for (final var propertyFound : found) {
+      if (!propertyFound) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return true if the property was contained in the last value which was read */
+  boolean isFound(final int index) {
+    return found[index];
+  }
+
+  long getInteger(final int index) {
+    return integers[index];
+  }
+
+  DirectBuffer getString(final int index) {
+    return strings[index];
+  }
+
+  DirectBuffer getBinary(final int index) {
+    return strings[index];
+  }
+
+  private boolean readUntilProperty(final DirectBuffer property) {
+    final var propertyCount = reader.readMapHeader();
+    for (int i = 0; i < propertyCount; i++) {
+      readString(name);
+      if (name.equals(property)) {
+        return true;
+      }
+      reader.skipValue();
+    }
+    return false;
+  }
+
+  private void readString(final DirectBuffer view) {
+    final var length = reader.readStringLength();
+    view.wrap(reader.getBuffer(), reader.getOffset(), length);
+    reader.skipBytes(length);
+  }
+
+  private void readBinary(final DirectBuffer view) {
+    final var length = reader.readBinaryLength();
+    view.wrap(reader.getBuffer(), reader.getOffset(), length);
+    reader.skipBytes(length);
+  }
+
+  private enum PropertyType {
+    INTEGER,
+    STRING,
+    BINARY
+  }
+
+  /** Decides whether the reading continues after a property was found. */
+  @FunctionalInterface
+  interface PropertyCheck {
+
+    /** @return false to stop reading the value */
+    boolean accept(int index);
+  }
+}
@@ -0,0 +1,179 @@
+package io.zeebe.tools.inspector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A query of the inspector in the form {@code <command> <subcommand> [key] [options]}, given on the
+ * command line or in the shell.
+ */
+final class Query {
+
+  static final String FORMAT_TEXT = "text";
+  static final String FORMAT_JSON = "json";
+  static final String FORMAT_MSGPACK = "msgpack";
+  private static final Set<String> FORMATS = Set.of(FORMAT_TEXT, FORMAT_JSON, FORMAT_MSGPACK);
+
+  private static final Set<String> SUB_COMMANDS = Set.of("list", "entity");
+
+  private final String command;
+  private final String subCommand;
+  private final long key;
+  private final Map<String, String> options;
+
+  private Query(
+      final String command,
+      final String subCommand,
+      final long key,
+      final Map<String, String> options) {
+    this.command = command;
+    this.subCommand = subCommand;
+    this.key = key;
+    this.options = options;
+  }
+
+  /**
+   * @param query the command, the subcommand, the key of the entity subcommand and the options
+   * @param validOptions the options which can be given, with their {@code --} prefix
+   * @throws IllegalArgumentException if the query is not valid
+   */
+  static Query parse(final String[] query, final Set<String> validOptions) {
+    if (query.length < 2) {
+      throw new IllegalArgumentException(
+          "Expected a command and a subcommand, but got " + Arrays.toString(query));
+    }
+
+    final var command = query[0];
+    if (!Inspector.COMMAND_FUNCTIONS.containsKey(command)) {
+      throw new IllegalArgumentException("Unknown command " + command);
+    }
+
+    final var subCommand = query[1];
+    if (!SUB_COMMANDS.contains(subCommand)) {
+      throw new IllegalArgumentException("Unknown subcommand " + subCommand);
+    }
+
+    long key = -1;
+    int optionsOffset = 2;
+    if (subCommand.equals("entity")) {
+      if (query.length < 3) {
+        throw new IllegalArgumentException(
+            "The entity subcommand expects a key as additional parameter.");
+      }
+
+      try {
+        key = Long.parseLong(query[2]);
+      } catch (NumberFormatException nfe) {
+        throw new IllegalArgumentException(
+            "The entity subcommand expects a long key as additional parameter, but got "
+                + query[2]);
+      }
+      optionsOffset = 3;
+    }
+
+    final var parsedQuery =
+        new Query(command, subCommand, key, parseOptions(query, optionsOffset, validOptions));
+    parsedQuery.validateOptions();
+    return parsedQuery;
+  }
+
+  static Map<String, String> parseOptions(
+      final String[] args, final int offset, final Set<String> validOptions) {
+    final var options = new HashMap<String, String>();
+
+    for (int i = offset; i < args.length; i += 2) {
+      final var option = args[i];
+      if (!validOptions.contains(option)) {
+        throw new IllegalArgumentException("Unknown option " + option);
+      }
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Expected a value for option " + option);
+      }
+
+      options.put(option.substring(2), args[i + 1]);
+    }
+
+    return options;
+  }
+
+  private void validateOptions() {
+    if (isList()) {
+      getListCursor();
+    }
+    getParallelism(1);
+    getPartitionId();
+
+    final var format = getFormat();
+    if (!FORMATS.contains(format)) {
+      throw new IllegalArgumentException(
+          "Expected format to be one of " + FORMATS + ", but got " + format);
+    }
+  }
+
+  EntityInspection getEntityInspection() {
+    return Inspector.COMMAND_FUNCTIONS.get(command);
+  }
+
+  String getSubCommand() {
+    return subCommand;
+  }
+
+  boolean isList() {
+    return subCommand.equals("list");
+  }
+
+  /** @return the key of the entity subcommand */
+  long getKey() {
+    return key;
+  }
+
+  InspectionOptions getInspectionOptions() {
+    return InspectionOptions.of(options);
+  }
+
+  String getOption(final String name) {
+    return options.get(name);
+  }
+
+  String getFormat() {
+    return options.getOrDefault("format", FORMAT_TEXT);
+  }
+
+  ListCursor getListCursor() {
+    final var startKey =
+        Optional.ofNullable(options.get("from"))
+            .map(Long::parseLong)
+            .orElse(ListCursor.ALL.getStartKey());
+    final var limit =
+        Optional.ofNullable(options.get("limit"))
+            .map(Integer::parseInt)
+            .orElse(ListCursor.ALL.getLimit());
+
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Expected a positive limit, got " + limit);
+    }
+
+    return ListCursor.of(startKey, limit);
+  }
+
+  int getParallelism(final int defaultParallelism) {
+    final var parallelism =
+        Optional.ofNullable(options.get("parallelism"))
+            .map(Integer::parseInt)
+            .orElse(defaultParallelism);
+
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Expected a positive parallelism, got " + parallelism);
+    }
+
+    return parallelism;
+  }
+
+  /** @return the partition the query is restricted to, or empty for all partitions */
+  Optional<Integer> getPartitionId() {
+    return Optional.ofNullable(options.get("partition")).map(Integer::parseInt);
+  }
+}
@@ -0,0 +1,21 @@
+package io.zeebe.tools.inspector;
+
+import java.io.IOException;
+
+/** Receives the results of a query, which are printed as text or written to a channel. */
+interface QueryOutput {
+
+  /** Prints a line of the text format, or a line which describes the result. */
+  void print(String line);
+
+  /**
+   * Logs a line which describes the result of a machine-readable query, so it is kept out of the
+   * entities.
+   */
+  void log(String line);
+
+  void error(String message, Throwable error);
+
+  /** @return the channel for the machine-readable formats, if no output file is given */
+  EntityChannel getEntityChannel() throws IOException;
+}
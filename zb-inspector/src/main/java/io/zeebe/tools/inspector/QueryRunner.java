@@ -0,0 +1,258 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.protocol.Protocol;
+import io.zeebe.tools.inspector.PartitionsInspector.PartitionInspection;
+import io.zeebe.tools.inspector.PartitionsInspector.PartitionResult;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Runs queries against a fixed set of partitions. If the partitions are kept open by the
+ * inspector, each query reuses the state and caches of the previous ones.
+ */
+final class QueryRunner {
+
+  private final List<Partition> partitions;
+  private final boolean allPartitions;
+  private final PartitionsInspector partitionsInspector;
+  private final int defaultParallelism;
+
+  /**
+   * @param allPartitions true if the partitions are all partitions of a broker, the results are
+   *     tagged with the partition then
+   */
+  QueryRunner(
+      final List<Partition> partitions,
+      final boolean allPartitions,
+      final PartitionsInspector partitionsInspector,
+      final int defaultParallelism) {
+    this.partitions = partitions;
+    this.allPartitions = allPartitions;
+    this.partitionsInspector = partitionsInspector;
+    this.defaultParallelism = defaultParallelism;
+  }
+
+  List<Partition> getPartitions() {
+    return partitions;
+  }
+
+  int getDefaultParallelism() {
+    return defaultParallelism;
+  }
+
+  void run(final Query query, final QueryOutput output) throws IOException, InterruptedException {
+    final var format = query.getFormat();
+    final var outputFile = query.getOption("output");
+
+    EntityChannel entityChannel = null;
+    try {
+      if (!format.equals(Query.FORMAT_TEXT)) {
+        entityChannel =
+            outputFile == null ? output.getEntityChannel() : EntityChannel.open(Path.of(outputFile));
+      }
+
+      // the machine-readable output contains only the entities, the summary is logged instead
+      final Consumer<String> summary =
+          format.equals(Query.FORMAT_TEXT) ? output::print : output::log;
+
+      if (query.isList()) {
+        list(query, createEntityWriters(format, entityChannel, "\t", output), summary, output);
+      } else {
+        getEntity(query, createEntityWriters(format, entityChannel, "", output), summary, output);
+      }
+    } finally {
+      if (entityChannel != null && outputFile != null) {
+        entityChannel.close();
+      }
+    }
+  }
+
+  private void list(
+      final Query query,
+      final IntFunction<EntityWriter> entityWriters,
+      final Consumer<String> summary,
+      final QueryOutput output)
+      throws InterruptedException {
+    final var cursor = query.getListCursor();
+    final var inspectionOptions = query.getInspectionOptions();
+    final var entityInspection = query.getEntityInspection();
+    final PartitionInspection inspection =
+        (partitionState, entityWriter) ->
+            entityInspection.list(partitionState, cursor, inspectionOptions, entityWriter);
+
+    final var selectedPartitions = selectPartitions(query);
+
+    summary.accept("List:");
+    final var startTime = System.currentTimeMillis();
+    final var results =
+        partitionsInspector.inspect(
+            selectedPartitions,
+            query.getParallelism(defaultParallelism),
+            inspection,
+            entityWriters);
+    final var duration = System.currentTimeMillis() - startTime;
+
+    if (!allPartitions) {
+      final var result = results.get(0);
+      printResult(result, summary, output);
+
+      if (result.getContinuation() != ListCursor.NO_CONTINUATION) {
+        summary.accept(
+            "More entities available, continue with: list --from " + result.getContinuation());
+      }
+      return;
+    }
+
+    summary.accept("Partitions:");
+    long entityCount = 0;
+    for (final var result : results) {
+      printResult(result, summary, output);
+      entityCount += result.getEntityCount();
+
+      if (result.getContinuation() != ListCursor.NO_CONTINUATION) {
+        summary.accept(
+            "\tMore entities available on partition "
+                + result.getPartitionId()
+                + ", continue with: list --partition "
+                + result.getPartitionId()
+                + " --from "
+                + result.getContinuation());
+      }
+    }
+
+    summary.accept(
+        "Listed "
+            + entityCount
+            + " entities of "
+            + results.size()
+            + " partitions in "
+            + duration
+            + " ms");
+  }
+
+  private void getEntity(
+      final Query query,
+      final IntFunction<EntityWriter> entityWriters,
+      final Consumer<String> summary,
+      final QueryOutput output)
+      throws InterruptedException {
+    final var key = query.getKey();
+    final var inspectionOptions = query.getInspectionOptions();
+    final var entityInspection = query.getEntityInspection();
+    final PartitionInspection inspection =
+        (partitionState, entityWriter) -> {
+          entityInspection.entity(partitionState, key, inspectionOptions, entityWriter::text);
+          return ListCursor.NO_CONTINUATION;
+        };
+
+    final var selectedPartitions = selectPartitions(query);
+
+    final var results =
+        partitionsInspector.inspect(
+            selectedPartitions,
+            query.getParallelism(defaultParallelism),
+            inspection,
+            entityWriters);
+
+    for (final var result : results) {
+      if (result.hasFailed()) {
+        printResult(result, summary, output);
+      } else {
+        summary.accept(
+            "Partition "
+                + result.getPartitionId()
+                + ": database opened in "
+                + result.getOpenMillis()
+                + " ms, inspected in "
+                + result.getInspectMillis()
+                + " ms");
+      }
+    }
+  }
+
+  /**
+   * A query can be restricted to one partition. Otherwise, the entity subcommand only inspects the
+   * partition which is encoded in the key. Keys which don't contain a partition, like the ones of
+   * the stats, are looked up in all partitions.
+   */
+  private List<Partition> selectPartitions(final Query query) {
+    final var requestedPartitionId = query.getPartitionId();
+    if (requestedPartitionId.isPresent()) {
+      final var partitionId = requestedPartitionId.get();
+      final var selectedPartitions = getPartitions(partitionId);
+      if (selectedPartitions.isEmpty()) {
+        throw new IllegalArgumentException("The partition " + partitionId + " doesn't exist");
+      }
+      return selectedPartitions;
+    }
+
+    if (query.isList() || !allPartitions) {
+      return partitions;
+    }
+
+    final var key = query.getKey();
+    final var partitionId = Protocol.decodePartitionId(key);
+    if (partitionId < Protocol.START_PARTITION_ID) {
+      return partitions;
+    }
+
+    final var selectedPartitions = getPartitions(partitionId);
+    if (selectedPartitions.isEmpty()) {
+      throw new IllegalArgumentException(
+          "The key " + key + " belongs to partition " + partitionId + ", which doesn't exist");
+    }
+    return selectedPartitions;
+  }
+
+  private List<Partition> getPartitions(final int partitionId) {
+    return partitions.stream()
+        .filter(partition -> partition.getId() == partitionId)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * The text format prints the entities, tagged with the partition if all partitions are
+   * inspected. The other formats write a partition field instead.
+   */
+  private IntFunction<EntityWriter> createEntityWriters(
+      final String format,
+      final EntityChannel entityChannel,
+      final String indent,
+      final QueryOutput output) {
+    switch (format) {
+      case Query.FORMAT_JSON:
+        return partitionId -> new JsonLinesEntityWriter(entityChannel, partitionId);
+      case Query.FORMAT_MSGPACK:
+        return partitionId -> new MsgPackEntityWriter(entityChannel, partitionId);
+      default:
+        return partitionId -> {
+          final var prefix = allPartitions ? indent + "[partition " + partitionId + "] " : indent;
+          return new TextEntityWriter(entity -> output.print(prefix + entity));
+        };
+    }
+  }
+
+  private static void printResult(
+      final PartitionResult result, final Consumer<String> summary, final QueryOutput output) {
+    if (result.hasFailed()) {
+      output.error(
+          "\tPartition " + result.getPartitionId() + ": failed to inspect", result.getError());
+      return;
+    }
+
+    summary.accept(
+        "\tPartition "
+            + result.getPartitionId()
+            + ": "
+            + result.getEntityCount()
+            + " entities, database opened in "
+            + result.getOpenMillis()
+            + " ms, inspected in "
+            + result.getInspectMillis()
+            + " ms");
+  }
+}
@@ -0,0 +1,283 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.ColumnFamily;
+import io.zeebe.db.DbContext;
+import io.zeebe.db.DbKey;
+import io.zeebe.db.DbValue;
+import io.zeebe.db.KeyValuePairVisitor;
+import io.zeebe.db.ZeebeDbException;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+
+/**
+ * A column family of the {@link ReadOnlyZeebeDb}. All modifying operations fail. In addition to
+ * the operations of the {@link ColumnFamily} it can seek to a key, instead of always starting with
+ * the first entry.
+ *
+ * <p>A column family which doesn't exist in the database is treated as empty.
+ */
+public final class ReadOnlyColumnFamily<KeyType extends DbKey, ValueType extends DbValue>
+    implements ColumnFamily<KeyType, ValueType> {
+
+  private final ReadOnlyZeebeDb zeebeDb;
+  private final ColumnFamilyHandle handle;
+  private final KeyType keyInstance;
+  private final ValueType valueInstance;
+
+  private final ExpandableArrayBuffer keyBuffer = new ExpandableArrayBuffer();
+  private final UnsafeBuffer valueView = new UnsafeBuffer(0, 0);
+
+  ReadOnlyColumnFamily(
+      final ReadOnlyZeebeDb zeebeDb,
+      final ColumnFamilyHandle handle,
+      final KeyType keyInstance,
+      final ValueType valueInstance) {
+    this.zeebeDb = zeebeDb;
+    this.handle = handle;
+    this.keyInstance = keyInstance;
+    this.valueInstance = valueInstance;
+  }
+
+  @Override
+  public void put(final KeyType key, final ValueType value) {
+    throw new UnsupportedOperationException("The database is opened read-only");
+  }
+
+  @Override
+  public void put(final DbContext dbContext, final KeyType key, final ValueType value) {
+    put(key, value);
+  }
+
+  @Override
+  public ValueType get(final KeyType key) {
+    return get(null, key, valueInstance);
+  }
+
+  @Override
+  public ValueType get(final DbContext dbContext, final KeyType key, final ValueType value) {
+    if (handle == null) {
+      return null;
+    }
+
+    key.write(keyBuffer, 0);
+
+    final byte[] bytes;
+    try {
+      bytes =
+          zeebeDb
+              .getRocksDb()
+              .get(handle, zeebeDb.getReadOptions(), keyBuffer.byteArray(), 0, key.getLength());
+    } catch (final RocksDBException e) {
+      throw new ZeebeDbException("Unexpected error occurred trying to read a key", e);
+    }
+
+    if (bytes == null) {
+      return null;
+    }
+
+    valueView.wrap(bytes);
+    value.wrap(valueView, 0, bytes.length);
+    return value;
+  }
+
+  @Override
+  public void forEach(final Consumer<ValueType> consumer) {
+    whileTrue(
+        (key, value) -> {
+          consumer.accept(value);
+          return true;
+        });
+  }
+
+  @Override
+  public void forEach(final BiConsumer<KeyType, ValueType> consumer) {
+    whileTrue(
+        (key, value) -> {
+          consumer.accept(key, value);
+          return true;
+        });
+  }
+
+  @Override
+  public void whileTrue(final KeyValuePairVisitor<KeyType, ValueType> visitor) {
+    whileTrue(null, visitor, keyInstance, valueInstance);
+  }
+
+  @Override
+  public void whileTrue(
+      final DbContext dbContext,
+      final KeyValuePairVisitor<KeyType, ValueType> visitor,
+      final KeyType key,
+      final ValueType value) {
+    if (handle == null) {
+      return;
+    }
+
+    try (final var iterator = newIterator()) {
+      iterator.seekToFirst();
+      visitWhile(iterator, null, key, value, visitor);
+    }
+  }
+
+  /**
+   * Visits the entries in key order, beginning with the first key which is equal to or greater than
+   * the given start key, as long as the visitor returns {@code true}.
+   */
+  public void whileTrue(
+      final DbKey startKey, final KeyValuePairVisitor<KeyType, ValueType> visitor) {
+    if (handle == null) {
+      return;
+    }
+
+    try (final var iterator = newIterator()) {
+      iterator.seek(toByteArray(startKey));
+      visitWhile(iterator, null, keyInstance, valueInstance, visitor);
+    }
+  }
+
+  /**
+   * Visits the entries in key order, beginning with the first key which is equal to or greater than
+   * the given start key and ending before the given upper bound, as long as the visitor returns
+   * {@code true}. The upper bound is passed to RocksDB, which stops reading at the bound instead of
+   * handing out the next entry.
+   *
+   * @param startKey the first key to visit, or {@code null} to start with the first entry
+   * @param upperBound the exclusive end of the visited keys
+   */
+  public void whileTrue(
+      final DbKey startKey,
+      final DbKey upperBound,
+      final KeyValuePairVisitor<KeyType, ValueType> visitor) {
+    if (handle == null) {
+      return;
+    }
+
+    try (final var upperBoundSlice = new Slice(toByteArray(upperBound));
+        final var readOptions =
+            new ReadOptions(zeebeDb.getIteratorReadOptions())
+                .setIterateUpperBound(upperBoundSlice);
+        final var iterator = zeebeDb.getRocksDb().newIterator(handle, readOptions)) {
+      if (startKey == null) {
+        iterator.seekToFirst();
+      } else {
+        iterator.seek(toByteArray(startKey));
+      }
+      visitWhile(iterator, null, keyInstance, valueInstance, visitor);
+    }
+  }
+
+  @Override
+  public void whileEqualPrefix(
+      final DbKey keyPrefix, final BiConsumer<KeyType, ValueType> visitor) {
+    whileEqualPrefix(
+        keyPrefix,
+        (key, value) -> {
+          visitor.accept(key, value);
+          return true;
+        });
+  }
+
+  @Override
+  public void whileEqualPrefix(
+      final DbKey keyPrefix, final KeyValuePairVisitor<KeyType, ValueType> visitor) {
+    if (handle == null) {
+      return;
+    }
+
+    final var prefix = toByteArray(keyPrefix);
+    try (final var iterator = newIterator()) {
+      iterator.seek(prefix);
+      visitWhile(iterator, prefix, keyInstance, valueInstance, visitor);
+    }
+  }
+
+  @Override
+  public void delete(final KeyType key) {
+    throw new UnsupportedOperationException("The database is opened read-only");
+  }
+
+  @Override
+  public void delete(final DbContext dbContext, final KeyType key) {
+    delete(key);
+  }
+
+  @Override
+  public boolean exists(final KeyType key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    if (handle == null) {
+      return true;
+    }
+
+    try (final var iterator = newIterator()) {
+      iterator.seekToFirst();
+      return !iterator.isValid();
+    }
+  }
+
+  @Override
+  public boolean isEmpty(final DbContext dbContext) {
+    return isEmpty();
+  }
+
+  private RocksIterator newIterator() {
+    return zeebeDb.getRocksDb().newIterator(handle, zeebeDb.getIteratorReadOptions());
+  }
+
+  private byte[] toByteArray(final DbKey key) {
+    key.write(keyBuffer, 0);
+    return Arrays.copyOf(keyBuffer.byteArray(), key.getLength());
+  }
+
+  private void visitWhile(
+      final RocksIterator iterator,
+      final byte[] prefix,
+      final KeyType key,
+      final ValueType value,
+      final KeyValuePairVisitor<KeyType, ValueType> visitor) {
+    // views per iteration, the visitor may read from this column family while we iterate
+    final var keyView = new UnsafeBuffer(0, 0);
+    final var iterationValueView = new UnsafeBuffer(0, 0);
+
+    for (; iterator.isValid(); iterator.next()) {
+      final var keyBytes = iterator.key();
+      if (prefix != null && !startsWith(keyBytes, prefix)) {
+        break;
+      }
+
+      final var valueBytes = iterator.value();
+      keyView.wrap(keyBytes);
+      iterationValueView.wrap(valueBytes);
+      key.wrap(keyView, 0, keyBytes.length);
+      value.wrap(iterationValueView, 0, valueBytes.length);
+
+      if (!visitor.visit(key, value)) {
+        break;
+      }
+    }
+  }
+
+  private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+    if (bytes.length < prefix.length) {
+      return false;
+    }
+
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,425 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.db.DbContext;
+import io.zeebe.db.DbKey;
+import io.zeebe.db.DbValue;
+import io.zeebe.db.TransactionOperation;
+import io.zeebe.db.ZeebeDb;
+import io.zeebe.db.ZeebeDbException;
+import io.zeebe.db.ZeebeDbTransaction;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.InfoLogLevel;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.TableProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens the state of a partition read-only. In contrast to the broker's database factory it
+ * doesn't take the lock of the database, never writes, flushes or compacts, and uses small caches
+ * which are sufficient to answer a few queries. This makes it possible to inspect a copy of a live
+ * partition or a snapshot without modifying it.
+ *
+ * <p>RocksDB writes an {@code IDENTITY} file into a database without one, even if it opens it
+ * read-only, and the snapshots of the broker have none. Such a database is opened from a temporary
+ * directory with hard links to its files instead, which is deleted when the database is closed.
+ */
+public final class ReadOnlyZeebeDb implements ZeebeDb<ZbColumnFamilies> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReadOnlyZeebeDb.class);
+
+  private static final long BLOCK_CACHE_SIZE = 16 * 1024 * 1024L;
+  private static final long WRITE_BUFFER_SIZE = 4 * 1024 * 1024L;
+  private static final long ITERATOR_READAHEAD_SIZE = 2 * 1024 * 1024L;
+  private static final String IDENTITY_FILE = "IDENTITY";
+
+  static {
+    RocksDB.loadLibrary();
+  }
+
+  private final RocksDB rocksDb;
+  private final EnumMap<ZbColumnFamilies, ColumnFamilyHandle> handles;
+  private final ReadOptions readOptions;
+  private final ReadOptions iteratorReadOptions;
+  private final List<AutoCloseable> closables;
+
+  private ReadOnlyZeebeDb(
+      final RocksDB rocksDb,
+      final EnumMap<ZbColumnFamilies, ColumnFamilyHandle> handles,
+      final ReadOptions readOptions,
+      final ReadOptions iteratorReadOptions,
+      final List<AutoCloseable> closables) {
+    this.rocksDb = rocksDb;
+    this.handles = handles;
+    this.readOptions = readOptions;
+    this.iteratorReadOptions = iteratorReadOptions;
+    this.closables = closables;
+  }
+
+  public static ReadOnlyZeebeDb open(final Path directory) {
+    final var closables = new ArrayList<AutoCloseable>();
+
+    try {
+      final var dbDirectory = linkWithoutIdentity(directory, closables);
+      final var existingColumnFamilies = listColumnFamilies(dbDirectory, closables);
+
+      final var columnFamilyOptions = createColumnFamilyOptions(closables);
+      final var columnFamilies = new ArrayList<ZbColumnFamilies>();
+      final var descriptors = new ArrayList<ColumnFamilyDescriptor>();
+      for (final var columnFamily : ZbColumnFamilies.values()) {
+        final var name = columnFamily.name().toLowerCase().getBytes();
+        if (existingColumnFamilies.stream().anyMatch(existing -> Arrays.equals(existing, name))) {
+          columnFamilies.add(columnFamily);
+          descriptors.add(new ColumnFamilyDescriptor(name, columnFamilyOptions));
+        }
+      }
+
+      final var dbOptions = createDbOptions(closables);
+      final var handleList = new ArrayList<ColumnFamilyHandle>();
+      final var rocksDb =
+          RocksDB.openReadOnly(dbOptions, dbDirectory.toString(), descriptors, handleList);
+
+      final var handles = new EnumMap<ZbColumnFamilies, ColumnFamilyHandle>(ZbColumnFamilies.class);
+      for (int i = 0; i < columnFamilies.size(); i++) {
+        handles.put(columnFamilies.get(i), handleList.get(i));
+      }
+      // the handles are closed before the database
+      closables.add(rocksDb);
+      closables.addAll(handleList);
+
+      final var readOptions = new ReadOptions();
+      closables.add(readOptions);
+
+      // scans shouldn't evict the blocks of the point lookups from the small cache
+      final var iteratorReadOptions =
+          new ReadOptions().setFillCache(false).setReadaheadSize(ITERATOR_READAHEAD_SIZE);
+      closables.add(iteratorReadOptions);
+
+      return new ReadOnlyZeebeDb(rocksDb, handles, readOptions, iteratorReadOptions, closables);
+    } catch (final RocksDBException e) {
+      closeAll(closables);
+      throw new ZeebeDbException("Unexpected error occurred trying to open the database", e);
+    } catch (final IOException e) {
+      closeAll(closables);
+      throw new ZeebeDbException(
+          "Failed to open the database in " + directory + " without writing into it", e);
+    }
+  }
+
+  /**
+   * @return the directory, or a temporary directory with hard links to its files if it has no
+   *     identity file, which is deleted by the last closable
+   */
+  private static Path linkWithoutIdentity(
+      final Path directory, final List<AutoCloseable> closables) throws IOException {
+    if (!Files.isDirectory(directory) || Files.exists(directory.resolve(IDENTITY_FILE))) {
+      return directory;
+    }
+
+    final var linkDirectory = Files.createTempDirectory("zb-inspector-db-");
+    closables.add(() -> deleteDirectory(linkDirectory));
+    try (final var files = Files.list(directory)) {
+      for (final var file : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(file)) {
+          Files.createLink(linkDirectory.resolve(file.getFileName()), file);
+        }
+      }
+    } catch (final IOException e) {
+      throw new IOException(
+          "it has no " + IDENTITY_FILE + " file and can't be linked into " + linkDirectory
+              + ", the temporary directory (java.io.tmpdir) has to be on the same file system",
+          e);
+    }
+
+    LOGGER.debug("Open the database in {} from the hard links in {}", directory, linkDirectory);
+    return linkDirectory;
+  }
+
+  private static void deleteDirectory(final Path directory) {
+    try (final var files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    } catch (final IOException e) {
+      LOGGER.warn("Failed to delete the linked database in {}", directory, e);
+    }
+  }
+
+  private static List<byte[]> listColumnFamilies(
+      final Path directory, final List<AutoCloseable> closables) throws RocksDBException {
+    final var options = new Options();
+    closables.add(options);
+    return RocksDB.listColumnFamilies(options, directory.toString());
+  }
+
+  private static DBOptions createDbOptions(final List<AutoCloseable> closables) {
+    final var dbOptions =
+        new DBOptions()
+            .setCreateIfMissing(false)
+            .setStatsDumpPeriodSec(0)
+            .setSkipStatsUpdateOnDbOpen(true)
+            .setInfoLogLevel(InfoLogLevel.WARN_LEVEL);
+    closables.add(dbOptions);
+
+    // otherwise RocksDB rotates and writes its LOG file into the opened directory
+    final var logger =
+        new org.rocksdb.Logger(dbOptions) {
+          @Override
+          protected void log(final InfoLogLevel infoLogLevel, final String logMsg) {
+            LOGGER.debug(logMsg);
+          }
+        };
+    closables.add(logger);
+    dbOptions.setLogger(logger);
+
+    return dbOptions;
+  }
+
+  private static ColumnFamilyOptions createColumnFamilyOptions(
+      final List<AutoCloseable> closables) {
+    final var blockCache = new LRUCache(BLOCK_CACHE_SIZE);
+    closables.add(blockCache);
+
+    final var tableConfig =
+        new BlockBasedTableConfig()
+            .setBlockCache(blockCache)
+            .setCacheIndexAndFilterBlocks(true);
+
+    final var columnFamilyOptions =
+        new ColumnFamilyOptions()
+            .setTableFormatConfig(tableConfig)
+            .setWriteBufferSize(WRITE_BUFFER_SIZE)
+            .setDisableAutoCompactions(true);
+    closables.add(columnFamilyOptions);
+
+    return columnFamilyOptions;
+  }
+
+  @Override
+  public <KeyType extends DbKey, ValueType extends DbValue>
+      ReadOnlyColumnFamily<KeyType, ValueType> createColumnFamily(
+          final ZbColumnFamilies columnFamily,
+          final DbContext context,
+          final KeyType keyInstance,
+          final ValueType valueInstance) {
+    return new ReadOnlyColumnFamily<>(
+        this, handles.get(columnFamily), keyInstance, valueInstance);
+  }
+
+  @Override
+  public void createSnapshot(final File snapshotDir) {
+    throw new UnsupportedOperationException("The database is opened read-only");
+  }
+
+  @Override
+  public Optional<String> getProperty(
+      final ZbColumnFamilies columnFamily, final String propertyName) {
+    final var handle = handles.get(columnFamily);
+    if (handle == null) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.ofNullable(rocksDb.getProperty(handle, propertyName));
+    } catch (final RocksDBException e) {
+      LOGGER.debug("Failed to get property {} of {}", propertyName, columnFamily, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads the properties of the SST files of the column family, which contain the number of entries
+   * and their raw sizes. Only the property blocks are read, not the data. Entries which are only
+   * in the memtable are not part of it.
+   */
+  Collection<TableProperties> getTableProperties(final ZbColumnFamilies columnFamily) {
+    final var handle = handles.get(columnFamily);
+    if (handle == null) {
+      return List.of();
+    }
+
+    try {
+      return rocksDb.getPropertiesOfAllTables(handle).values();
+    } catch (final RocksDBException e) {
+      throw new ZeebeDbException("Unexpected error occurred trying to read table properties", e);
+    }
+  }
+
+  @Override
+  public DbContext createContext() {
+    return new ReadOnlyDbContext(rocksDb);
+  }
+
+  @Override
+  public void close() {
+    closeAll(closables);
+  }
+
+  /** @return the column families which exist in the database, ordered by their ordinal */
+  Set<ZbColumnFamilies> getColumnFamilies() {
+    return Collections.unmodifiableSet(handles.keySet());
+  }
+
+  /**
+   * @return an iterator over the raw entries of the column family, with the options for scans, or
+   *     {@code null} if the column family doesn't exist in the database
+   */
+  RocksIterator newIterator(final ZbColumnFamilies columnFamily) {
+    final var handle = handles.get(columnFamily);
+    return handle == null ? null : rocksDb.newIterator(handle, iteratorReadOptions);
+  }
+
+  RocksDB getRocksDb() {
+    return rocksDb;
+  }
+
+  ReadOptions getReadOptions() {
+    return readOptions;
+  }
+
+  ReadOptions getIteratorReadOptions() {
+    return iteratorReadOptions;
+  }
+
+  private static void closeAll(final List<AutoCloseable> closables) {
+    final var reversed = new ArrayList<>(closables);
+    Collections.reverse(reversed);
+
+    for (final var closable : reversed) {
+      try {
+        closable.close();
+      } catch (final Exception e) {
+        LOGGER.error("Failed to close {}", closable, e);
+      }
+    }
+  }
+
+  /** There is nothing to commit, so operations run directly instead of in a transaction. */
+  private static final class ReadOnlyDbContext implements DbContext, ZeebeDbTransaction {
+
+    private static final byte[] ZERO_SIZE_ARRAY = new byte[0];
+
+    private final RocksDB rocksDb;
+    private final ExpandableArrayBuffer keyBuffer = new ExpandableArrayBuffer();
+    private final ExpandableArrayBuffer valueBuffer = new ExpandableArrayBuffer();
+    private final DirectBuffer keyViewBuffer = new UnsafeBuffer(ZERO_SIZE_ARRAY);
+    private final DirectBuffer valueViewBuffer = new UnsafeBuffer(ZERO_SIZE_ARRAY);
+
+    private ReadOnlyDbContext(final RocksDB rocksDb) {
+      this.rocksDb = rocksDb;
+    }
+
+    @Override
+    public void writeKey(final DbKey key) {
+      key.write(keyBuffer, 0);
+    }
+
+    @Override
+    public byte[] getKeyBufferArray() {
+      return keyBuffer.byteArray();
+    }
+
+    @Override
+    public void writeValue(final DbValue value) {
+      value.write(valueBuffer, 0);
+    }
+
+    @Override
+    public byte[] getValueBufferArray() {
+      return valueBuffer.byteArray();
+    }
+
+    @Override
+    public void wrapKeyView(final byte[] key) {
+      keyViewBuffer.wrap(key != null ? key : ZERO_SIZE_ARRAY);
+    }
+
+    @Override
+    public DirectBuffer getKeyView() {
+      return isKeyViewEmpty() ? null : keyViewBuffer;
+    }
+
+    @Override
+    public boolean isKeyViewEmpty() {
+      return keyViewBuffer.capacity() == 0;
+    }
+
+    @Override
+    public void wrapValueView(final byte[] value) {
+      valueViewBuffer.wrap(value != null ? value : ZERO_SIZE_ARRAY);
+    }
+
+    @Override
+    public DirectBuffer getValueView() {
+      return isValueViewEmpty() ? null : valueViewBuffer;
+    }
+
+    @Override
+    public boolean isValueViewEmpty() {
+      return valueViewBuffer.capacity() == 0;
+    }
+
+    @Override
+    public void withPrefixKeyBuffer(final Consumer<ExpandableArrayBuffer> prefixKeyBufferConsumer) {
+      prefixKeyBufferConsumer.accept(new ExpandableArrayBuffer());
+    }
+
+    @Override
+    public RocksIterator newIterator(
+        final ReadOptions options, final ColumnFamilyHandle handle) {
+      return rocksDb.newIterator(handle, options);
+    }
+
+    @Override
+    public void runInTransaction(final TransactionOperation operations) {
+      try {
+        operations.run();
+      } catch (final RuntimeException e) {
+        throw e;
+      } catch (final Exception e) {
+        throw new ZeebeDbException("Unexpected error occurred during the operation", e);
+      }
+    }
+
+    @Override
+    public ZeebeDbTransaction getCurrentTransaction() {
+      return this;
+    }
+
+    @Override
+    public void run(final TransactionOperation operations) throws Exception {
+      operations.run();
+    }
+
+    @Override
+    public void commit() {}
+
+    @Override
+    public void rollback() {}
+  }
+}
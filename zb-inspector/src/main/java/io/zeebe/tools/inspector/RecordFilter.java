@@ -0,0 +1,156 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.protocol.record.value.ErrorType;
+import io.zeebe.util.buffer.BufferUtil;
+import java.util.Arrays;
+import org.agrona.DirectBuffer;
+
+/**
+ * Filters the records of a listing by their fields. The filter is checked against the serialized
+ * MsgPack of the stored value with a {@link PropertyReader}, so only the entries which match are
+ * decoded and written. It reads the fields of the record until the first one doesn't match and
+ * skips all other values without decoding them.
+ *
+ * <p>Supports the options {@code bpmn-process-id}, {@code element-id} and {@code error-type}, which
+ * must be equal to the field of the record, and {@code min-workflow-instance-key} and {@code
+ * max-workflow-instance-key}, which define an inclusive range of workflow instance keys.
+ */
+final class RecordFilter {
+
+  static final String OPTION_ERROR_TYPE = "error-type";
+
+  private final DirectBuffer bpmnProcessId;
+  private final DirectBuffer elementId;
+  private final DirectBuffer errorType;
+  private final long minWorkflowInstanceKey;
+  private final long maxWorkflowInstanceKey;
+  private final int conditionCount;
+
+  // only the properties with a condition are read
+  private final PropertyReader reader;
+  private final int workflowInstanceKeyIndex;
+  private final int bpmnProcessIdIndex;
+  private final int elementIdIndex;
+  private final int errorTypeIndex;
+  private final PropertyReader.PropertyCheck check = this::matchesProperty;
+
+  private RecordFilter(
+      final String[] recordPath,
+      final DirectBuffer bpmnProcessId,
+      final DirectBuffer elementId,
+      final DirectBuffer errorType,
+      final long minWorkflowInstanceKey,
+      final long maxWorkflowInstanceKey) {
+    this.bpmnProcessId = bpmnProcessId;
+    this.elementId = elementId;
+    this.errorType = errorType;
+    this.minWorkflowInstanceKey = minWorkflowInstanceKey;
+    this.maxWorkflowInstanceKey = maxWorkflowInstanceKey;
+
+    var conditions = 0;
+    conditions += bpmnProcessId != null ? 1 : 0;
+    conditions += elementId != null ? 1 : 0;
+    conditions += errorType != null ? 1 : 0;
+    conditions += hasWorkflowInstanceKeyRange() ? 1 : 0;
+    conditionCount = conditions;
+
+    reader = new PropertyReader(recordPath);
+    workflowInstanceKeyIndex =
+        hasWorkflowInstanceKeyRange() ? reader.addInteger("workflowInstanceKey") : -1;
+    bpmnProcessIdIndex = bpmnProcessId != null ? reader.addString("bpmnProcessId") : -1;
+    elementIdIndex = elementId != null ? reader.addString("elementId") : -1;
+    errorTypeIndex = errorType != null ? reader.addString("errorType") : -1;
+  }
+
+  /**
+   * @param recordPath the properties which lead from the stored value to the record, for example
+   *     {@code incidentRecord} for an incident
+   * @throws IllegalArgumentException if an option has an invalid value
+   */
+  static RecordFilter of(final InspectionOptions options, final String... recordPath) {
+    final var errorType = options.getString(OPTION_ERROR_TYPE, null);
+    if (errorType != null
+        && Arrays.stream(ErrorType.values()).noneMatch(type -> type.name().equals(errorType))) {
+      throw new IllegalArgumentException(
+          "Expected error-type to be one of "
+              + Arrays.toString(ErrorType.values())
+              + ", but got "
+              + errorType);
+    }
+
+    final var minWorkflowInstanceKey =
+        options.getLong("min-workflow-instance-key", Long.MIN_VALUE);
+    final var maxWorkflowInstanceKey =
+        options.getLong("max-workflow-instance-key", Long.MAX_VALUE);
+    if (minWorkflowInstanceKey > maxWorkflowInstanceKey) {
+      throw new IllegalArgumentException(
+          "Expected min-workflow-instance-key to be smaller than max-workflow-instance-key, but got "
+              + minWorkflowInstanceKey
+              + " and "
+              + maxWorkflowInstanceKey);
+    }
+
+    return new RecordFilter(
+        recordPath,
+        wrapOption(options, "bpmn-process-id"),
+        wrapOption(options, "element-id"),
+        errorType == null ? null : BufferUtil.wrapString(errorType),
+        minWorkflowInstanceKey,
+        maxWorkflowInstanceKey);
+  }
+
+  private static DirectBuffer wrapOption(final InspectionOptions options, final String name) {
+    final var value = options.getString(name, null);
+    return value == null ? null : BufferUtil.wrapString(value);
+  }
+
+  /** @return true if the filter checks more than the workflow instance key range */
+  boolean hasFieldConditions() {
+    return conditionCount > (hasWorkflowInstanceKeyRange() ? 1 : 0);
+  }
+
+  boolean hasErrorType() {
+    return errorType != null;
+  }
+
+  long getMinWorkflowInstanceKey() {
+    return minWorkflowInstanceKey;
+  }
+
+  long getMaxWorkflowInstanceKey() {
+    return maxWorkflowInstanceKey;
+  }
+
+  boolean matches(final DbBufferView value) {
+    return matches(value.getBuffer(), 0, value.getLength());
+  }
+
+  /** @return true if the serialized value contains a record which matches all conditions */
+  boolean matches(final DirectBuffer buffer, final int offset, final int length) {
+    if (conditionCount == 0) {
+      return true;
+    }
+
+    // a record without a property which has a condition doesn't match
+    return reader.read(buffer, offset, length, check) && reader.hasFoundAll();
+  }
+
+  /** Checks the property which was just read, the reading stops at the first mismatch. */
+  private boolean matchesProperty(final int index) {
+    if (index == workflowInstanceKeyIndex) {
+      final var workflowInstanceKey = reader.getInteger(index);
+      return workflowInstanceKey >= minWorkflowInstanceKey
+          && workflowInstanceKey <= maxWorkflowInstanceKey;
+    } else if (index == bpmnProcessIdIndex) {
+      return reader.getString(index).equals(bpmnProcessId);
+    } else if (index == elementIdIndex) {
+      return reader.getString(index).equals(elementId);
+    } else {
+      return reader.getString(index).equals(errorType);
+    }
+  }
+
+  private boolean hasWorkflowInstanceKeyRange() {
+    return minWorkflowInstanceKey != Long.MIN_VALUE || maxWorkflowInstanceKey != Long.MAX_VALUE;
+  }
+}
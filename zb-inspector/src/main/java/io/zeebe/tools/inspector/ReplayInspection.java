@@ -0,0 +1,167 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.protocol.record.RecordType;
+import io.zeebe.protocol.record.ValueType;
+import io.zeebe.protocol.record.intent.Intent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Measures how fast the engine reprocesses the log of a partition, by replaying it into a fresh
+ * state, see {@link LogReplay}. The value types are the entities of this inspection, their key is
+ * the ordinal of the {@link ValueType}. The inspected state is not used, the log is replayed for
+ * every listing and every entity. The listing can't be paged, since every page would replay the
+ * whole log again and measure different times.
+ *
+ * <p>The option {@code idle-timeout} defines after how many milliseconds without a processed record
+ * the replay ends, if the last record of the log is not processed.
+ */
+public final class ReplayInspection implements EntityInspection {
+
+  private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 2_000;
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  /**
+   * Lists the processing time of each value type which was processed, followed by the summary of
+   * the replay. There are only a few value types, so the listing is always complete.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    if (cursor.getStartKey() != ListCursor.ALL.getStartKey()
+        || cursor.getLimit() != ListCursor.ALL.getLimit()) {
+      throw new IllegalArgumentException(
+          "The replay listing can't be paged, every page would replay the whole log again;"
+              + " remove --from and --limit");
+    }
+
+    final var replay = replay(partitionState, options);
+    final var totalNanos = replay.getTotalNanos();
+
+    for (final var valueType : ValueType.values()) {
+      final var records = replay.getRecords(valueType);
+      final var failedAttempts = replay.getFailedAttempts(valueType);
+      if (records == 0 && failedAttempts == 0) {
+        continue;
+      }
+
+      final var nanos = replay.getNanos(valueType);
+      entityWriter.startEntity("ValueType");
+      entityWriter.field("key", valueType.ordinal());
+      entityWriter.field("name", valueType);
+      entityWriter.field("records", records);
+      entityWriter.field("processing-millis", Math.round(nanos / NANOS_PER_MILLI));
+      entityWriter.field("nanos-per-record", records > 0 ? nanos / records : 0);
+      entityWriter.field("failed-attempts", failedAttempts);
+      entityWriter.field(
+          "share-percent", totalNanos > 0 ? Math.round(100.0 * nanos / totalNanos) : 0);
+      entityWriter.endEntity();
+    }
+
+    writeSummary(replay, entityWriter);
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /** Shows the processing time of the value type per record type and intent. */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var valueTypes = ValueType.values();
+    if (key < 0 || key >= valueTypes.length) {
+      entityConsumer.accept("No value type found with key: " + key);
+      return;
+    }
+
+    final var valueType = valueTypes[(int) key];
+    final var replay = replay(partitionState, options);
+    final var entityWriter = new TextEntityWriter(entityConsumer);
+
+    for (final var recordType : RecordType.values()) {
+      for (int intent = 0; intent < Intent.maxCardinality(); intent++) {
+        final var records = replay.getRecords(valueType, recordType, intent);
+        final var failedAttempts = replay.getFailedAttempts(valueType, recordType, intent);
+        if (records == 0 && failedAttempts == 0) {
+          continue;
+        }
+
+        final var nanos = replay.getNanos(valueType, recordType, intent);
+        entityWriter.startEntity("Intent");
+        entityWriter.field("value-type", valueType);
+        entityWriter.field("record-type", recordType);
+        entityWriter.field("intent", Intent.fromProtocolValue(valueType, (short) intent).name());
+        entityWriter.field("records", records);
+        entityWriter.field("processing-millis", Math.round(nanos / NANOS_PER_MILLI));
+        entityWriter.field("nanos-per-record", records > 0 ? nanos / records : 0);
+        entityWriter.field("failed-attempts", failedAttempts);
+        entityWriter.endEntity();
+      }
+    }
+
+    if (entityWriter.getEntityCount() == 0) {
+      entityConsumer.accept("No records of value type " + valueType + " were processed");
+    }
+    writeSummary(replay, entityWriter);
+  }
+
+  private static LogReplay replay(
+      final PartitionState partitionState, final InspectionOptions options) {
+    final var idleTimeout = options.getLong("idle-timeout", DEFAULT_IDLE_TIMEOUT_MILLIS);
+    if (idleTimeout <= 0) {
+      throw new IllegalArgumentException(
+          "Expected idle-timeout to be positive, but got " + idleTimeout);
+    }
+
+    final var replay =
+        new LogReplay(
+            partitionState.getPartitionDirectory(),
+            partitionState.getPartitionId(),
+            partitionState.getLog().getLastPosition(),
+            idleTimeout);
+    try {
+      replay.run();
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Failed to replay the log of partition " + partitionState.getPartitionId(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted the replay of partition " + partitionState.getPartitionId(), e);
+    }
+    return replay;
+  }
+
+  /**
+   * Writes the throughput of the replay. The time which is not spent in the processors, including
+   * their failed attempts, is spent on reading the log, on the transactions of the state and on
+   * the engine's bookkeeping.
+   */
+  private static void writeSummary(final LogReplay replay, final EntityWriter entityWriter) {
+    final var records = replay.getTotalRecords();
+    final var replayMillis = replay.getReplayMillis();
+    final var processingMillis = Math.round(replay.getTotalNanos() / NANOS_PER_MILLI);
+    final var failedMillis = Math.round(replay.getTotalFailedNanos() / NANOS_PER_MILLI);
+
+    entityWriter.startEntity("Replay");
+    entityWriter.field("processed-records", records);
+    entityWriter.field("failed-attempts", replay.getTotalFailedAttempts());
+    entityWriter.field("failed-millis", failedMillis);
+    entityWriter.field("open-millis", replay.getOpenMillis());
+    entityWriter.field("reprocessing-millis", replay.getRecoveredMillis());
+    entityWriter.field("replay-millis", replayMillis);
+    entityWriter.field("processing-millis", processingMillis);
+    entityWriter.field("other-millis", Math.max(replayMillis - processingMillis - failedMillis, 0));
+    entityWriter.field(
+        "records-per-second", Math.round(replayMillis > 0 ? records * 1000.0 / replayMillis : 0));
+    entityWriter.field("last-processed-position", replay.getLastProcessedPosition());
+    entityWriter.field("last-position", replay.getLastPosition());
+    entityWriter.field("reached-end", String.valueOf(replay.hasReachedEnd()));
+    entityWriter.endEntity();
+  }
+}
@@ -0,0 +1,284 @@
+package io.zeebe.tools.inspector;
+
+import io.zeebe.engine.state.ZbColumnFamilies;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+
+/**
+ * Shows how much each column family contributes to the size of the state. The column families are
+ * the entities of this inspection, their key is the ordinal of the {@link ZbColumnFamilies}.
+ */
+public class StatsInspection implements EntityInspection {
+
+  private static final int DEFAULT_TOP = 10;
+
+  private static final String TOTAL_SST_FILES_SIZE = "rocksdb.total-sst-files-size";
+
+  /**
+   * Lists the column families which exist in the state. Supports the option {@code precision}:
+   *
+   * <ul>
+   *   <li>{@code estimate} - sums up the properties of the SST files, which are available without
+   *       reading the data (default). Deleted and overwritten entries which are not compacted yet
+   *       are still counted, entries which are only in the memtable are missing.
+   *   <li>{@code exact} - counts the keys and their bytes with one pass over each column family.
+   *       Each column family is followed by the histogram of its value sizes and by its biggest
+   *       entries, the option {@code top} defines how many of them are listed.
+   * </ul>
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var exact = options.isExactPrecision();
+    final var top = exact ? getTop(options) : 0;
+
+    final var zeebeDb = partitionState.getZeebeDb();
+    int visited = 0;
+    for (final var columnFamily : zeebeDb.getColumnFamilies()) {
+      if (columnFamily.ordinal() < cursor.getStartKey()) {
+        continue;
+      }
+
+      if (visited >= cursor.getLimit()) {
+        return columnFamily.ordinal();
+      }
+
+      if (exact) {
+        final var statistics = new ColumnFamilyStatistics(columnFamily, top);
+        statistics.collect(partitionState);
+        statistics.write(entityWriter);
+        statistics.writeHistogram(entityWriter);
+        statistics.writeBiggestEntries(entityWriter);
+      } else {
+        writeEstimates(zeebeDb, columnFamily, entityWriter);
+      }
+      visited++;
+    }
+
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /**
+   * Collects the exact statistics of the column family with one pass over it, including a
+   * histogram of the value sizes and the biggest entries. The option {@code top} defines how many
+   * of the biggest entries are shown.
+   */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var columnFamilies = ZbColumnFamilies.values();
+    if (key < 0
+        || key >= columnFamilies.length
+        || !partitionState.getZeebeDb().getColumnFamilies().contains(columnFamilies[(int) key])) {
+      entityConsumer.accept("No column family found with key: " + key);
+      return;
+    }
+
+    final var top = getTop(options);
+    final var statistics = new ColumnFamilyStatistics(columnFamilies[(int) key], top);
+    statistics.collect(partitionState);
+
+    statistics.write(new TextEntityWriter(entityConsumer));
+    entityConsumer.accept(statistics.getHistogramAsString());
+    if (top > 0) {
+      entityConsumer.accept(statistics.getBiggestEntriesAsString());
+    }
+  }
+
+  private static int getTop(final InspectionOptions options) {
+    final var top = options.getInt("top", DEFAULT_TOP);
+    if (top < 0) {
+      throw new IllegalArgumentException("Expected top to be positive, but got " + top);
+    }
+    return top;
+  }
+
+  private static void writeEstimates(
+      final ReadOnlyZeebeDb zeebeDb,
+      final ZbColumnFamilies columnFamily,
+      final EntityWriter entityWriter) {
+    long entries = 0;
+    long keyBytes = 0;
+    long valueBytes = 0;
+    for (final var tableProperties : zeebeDb.getTableProperties(columnFamily)) {
+      entries += tableProperties.getNumEntries() - tableProperties.getNumDeletions();
+      // the raw keys contain the sequence number and type, which RocksDB appends to each key
+      keyBytes += tableProperties.getRawKeySize() - Long.BYTES * tableProperties.getNumEntries();
+      valueBytes += tableProperties.getRawValueSize();
+    }
+
+    entityWriter.startEntity("ColumnFamily");
+    entityWriter.field("key", columnFamily.ordinal());
+    entityWriter.field("name", columnFamily);
+    entityWriter.field("estimated-keys", entries);
+    entityWriter.field("estimated-key-bytes", keyBytes);
+    entityWriter.field("estimated-value-bytes", valueBytes);
+    zeebeDb
+        .getProperty(columnFamily, TOTAL_SST_FILES_SIZE)
+        .ifPresent(size -> entityWriter.field("sst-files-bytes", Long.parseLong(size)));
+    entityWriter.endEntity();
+  }
+
+  private static final class ColumnFamilyStatistics {
+
+    // bucket i counts the values with a size in [2^(i-1), 2^i), bucket 0 the empty values
+    private static final int BUCKET_COUNT = Integer.SIZE + 1;
+
+    private final ZbColumnFamilies columnFamily;
+    private final int top;
+    private final long[] histogram = new long[BUCKET_COUNT];
+    private final PriorityQueue<Entry> biggestEntries =
+        new PriorityQueue<>(Comparator.comparingInt(entry -> entry.valueLength));
+
+    private long keyCount;
+    private long keyBytes;
+    private long valueBytes;
+    private int maxValueLength;
+
+    private ColumnFamilyStatistics(final ZbColumnFamilies columnFamily, final int top) {
+      this.columnFamily = columnFamily;
+      this.top = top;
+    }
+
+    private void collect(final PartitionState partitionState) {
+      partitionState
+          .getZeebeDb()
+          .createColumnFamily(
+              columnFamily, partitionState.getDbContext(), new DbBufferView(), new DbBufferView())
+          .whileTrue(
+              (key, value) -> {
+                add(key.getBuffer(), value.getLength());
+                return true;
+              });
+    }
+
+    private void add(final DirectBuffer key, final int valueLength) {
+      keyCount++;
+      keyBytes += key.capacity();
+      valueBytes += valueLength;
+      maxValueLength = Math.max(maxValueLength, valueLength);
+      histogram[Integer.SIZE - Integer.numberOfLeadingZeros(valueLength)]++;
+
+      if (top == 0) {
+        return;
+      }
+
+      // only the entries which make it into the top are copied
+      if (biggestEntries.size() < top) {
+        biggestEntries.add(new Entry(key, valueLength));
+      } else if (biggestEntries.peek().valueLength < valueLength) {
+        final var entry = biggestEntries.poll();
+        entry.wrap(key, valueLength);
+        biggestEntries.add(entry);
+      }
+    }
+
+    private String getHistogramAsString() {
+      final var builder = new StringBuilder("Value sizes:");
+      for (int bucket = 0; bucket < histogram.length; bucket++) {
+        if (histogram[bucket] == 0) {
+          continue;
+        }
+
+        builder.append("\n\t");
+        if (bucket == 0) {
+          builder.append("0 bytes");
+        } else {
+          builder
+              .append(1L << (bucket - 1)).append(" - ")
+              .append((1L << bucket) - 1).append(" bytes");
+        }
+        builder.append(": ").append(histogram[bucket]);
+      }
+
+      return builder.toString();
+    }
+
+    /** Writes one entity per non-empty bucket of the histogram. */
+    private void writeHistogram(final EntityWriter entityWriter) {
+      for (int bucket = 0; bucket < histogram.length; bucket++) {
+        if (histogram[bucket] == 0) {
+          continue;
+        }
+
+        entityWriter.startEntity("ValueSizes");
+        entityWriter.field("column-family", columnFamily);
+        entityWriter.field("min-bytes", bucket == 0 ? 0 : 1L << (bucket - 1));
+        entityWriter.field("max-bytes", bucket == 0 ? 0 : (1L << bucket) - 1);
+        entityWriter.field("values", histogram[bucket]);
+        entityWriter.endEntity();
+      }
+    }
+
+    /** Writes one entity per biggest entry, the biggest first. */
+    private void writeBiggestEntries(final EntityWriter entityWriter) {
+      for (final var entry : getBiggestEntries()) {
+        entityWriter.startEntity("BiggestEntry");
+        entityWriter.field("column-family", columnFamily);
+        entityWriter.field("value-bytes", entry.valueLength);
+        entityWriter.field("entry-key", DbBufferView.formatKey(entry.key));
+        entityWriter.endEntity();
+      }
+    }
+
+    private ArrayList<Entry> getBiggestEntries() {
+      final var entries = new ArrayList<>(biggestEntries);
+      entries.sort(biggestEntries.comparator().reversed());
+      return entries;
+    }
+
+    private String getBiggestEntriesAsString() {
+      final var entries = getBiggestEntries();
+
+      final var builder = new StringBuilder("Biggest entries:");
+      for (final var entry : entries) {
+        builder
+            .append("\n\t")
+            .append(entry.valueLength)
+            .append(" bytes, key: ")
+            .append(DbBufferView.formatKey(entry.key));
+      }
+
+      return builder.toString();
+    }
+
+    private void write(final EntityWriter entityWriter) {
+      entityWriter.startEntity("ColumnFamily");
+      entityWriter.field("key", columnFamily.ordinal());
+      entityWriter.field("name", columnFamily);
+      entityWriter.field("keys", keyCount);
+      entityWriter.field("key-bytes", keyBytes);
+      entityWriter.field("value-bytes", valueBytes);
+      entityWriter.field("average-value-bytes", keyCount == 0 ? 0 : valueBytes / keyCount);
+      entityWriter.field("max-value-bytes", maxValueLength);
+      entityWriter.endEntity();
+    }
+  }
+
+  private static final class Entry {
+
+    private byte[] key;
+    private int valueLength;
+
+    private Entry(final DirectBuffer key, final int valueLength) {
+      wrap(key, valueLength);
+    }
+
+    private void wrap(final DirectBuffer key, final int valueLength) {
+      if (this.key == null || this.key.length != key.capacity()) {
+        this.key = new byte[key.capacity()];
+      }
+      key.getBytes(0, this.key);
+      this.valueLength = valueLength;
+    }
+  }
+}
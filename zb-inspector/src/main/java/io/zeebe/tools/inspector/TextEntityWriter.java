@@ -0,0 +1,78 @@
+package io.zeebe.tools.inspector;
+
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+
+/**
+ * Renders each entity as one line in the form {@code Type[name: value, name: "text"]} and passes
+ * it to the consumer.
+ */
+final class TextEntityWriter implements EntityWriter {
+
+  private final Consumer<String> consumer;
+  private final StringBuilder builder = new StringBuilder();
+  private boolean firstField;
+  private long entityCount;
+
+  TextEntityWriter(final Consumer<String> consumer) {
+    this.consumer = consumer;
+  }
+
+  @Override
+  public void startEntity(final String type) {
+    builder.setLength(0);
+    builder.append(type).append('[');
+    firstField = true;
+  }
+
+  @Override
+  public void field(final String name, final long value) {
+    appendName(name).append(value);
+  }
+
+  @Override
+  public void field(final String name, final String value) {
+    appendName(name).append('"').append(value).append('"');
+  }
+
+  @Override
+  public void field(final String name, final DirectBuffer value) {
+    appendName(name)
+        .append('"')
+        .append(value.getStringWithoutLengthUtf8(0, value.capacity()))
+        .append('"');
+  }
+
+  @Override
+  public void field(final String name, final Enum<?> value) {
+    appendName(name).append(value);
+  }
+
+  @Override
+  public void endEntity() {
+    builder.append(']');
+    consumer.accept(builder.toString());
+    entityCount++;
+  }
+
+  @Override
+  public void text(final String text) {
+    consumer.accept(text);
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public long getEntityCount() {
+    return entityCount;
+  }
+
+  private StringBuilder appendName(final String name) {
+    if (!firstField) {
+      builder.append(", ");
+    }
+    firstField = false;
+    return builder.append(name).append(": ");
+  }
+}
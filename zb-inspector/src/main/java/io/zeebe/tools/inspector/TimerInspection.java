@@ -0,0 +1,126 @@
+package io.zeebe.tools.inspector;
+
+import static io.zeebe.util.buffer.BufferUtil.bufferAsString;
+
+import io.zeebe.engine.state.ZbColumnFamilies;
+import java.time.Duration;
+import java.util.function.Consumer;
+import org.agrona.collections.MutableInteger;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Shows the timers of the partition. Timers which are overdue by far mean that the broker doesn't
+ * keep up with triggering them, or can't trigger them at all.
+ */
+public final class TimerInspection implements EntityInspection {
+
+  private static final int TIMERS = 0;
+  private static final int OVERDUE = 1;
+
+  // the upper bounds of the due date buckets, relative to now
+  private static final long[] BUCKET_BOUNDS = {
+    -Duration.ofDays(1).toMillis(),
+    -Duration.ofHours(1).toMillis(),
+    0,
+    Duration.ofMinutes(1).toMillis(),
+    Duration.ofHours(1).toMillis(),
+    Duration.ofDays(1).toMillis(),
+    Long.MAX_VALUE
+  };
+  private static final String[] BUCKET_NAMES = {
+    "overdue more than 1 day",
+    "overdue more than 1 hour",
+    "overdue less than 1 hour",
+    "due within 1 minute",
+    "due within 1 hour",
+    "due within 1 day",
+    "due later"
+  };
+
+  /**
+   * Summarizes the timers with one pass: a histogram of their due dates, relative to now, followed
+   * by the number of timers per element, ordered by the number of timers. Only the element id and
+   * the due date of a timer are read.
+   */
+  @Override
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+    final var now = System.currentTimeMillis();
+
+    final var timerReader = new PropertyReader();
+    final var elementId = timerReader.addString("handlerNodeId");
+    final var dueDate = timerReader.addInteger("dueDate");
+
+    final var histogram = new long[BUCKET_BOUNDS.length];
+    final var counters = new GroupCounters(options, "element-id", "timers", "overdue");
+    final var valueView = new UnsafeBuffer(0, 0);
+
+    try (final var timers = partitionState.getZeebeDb().newIterator(ZbColumnFamilies.TIMERS)) {
+      if (timers == null) {
+        return ListCursor.NO_CONTINUATION;
+      }
+
+      for (timers.seekToFirst(); timers.isValid(); timers.next()) {
+        final var timer = timers.value();
+        valueView.wrap(timer);
+        timerReader.read(valueView, 0, timer.length);
+
+        final var dueIn = timerReader.getInteger(dueDate) - now;
+        var bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length - 1 && dueIn >= BUCKET_BOUNDS[bucket]) {
+          bucket++;
+        }
+        histogram[bucket]++;
+
+        final var elementCounters = counters.get(timerReader.getString(elementId));
+        elementCounters[TIMERS]++;
+        if (dueIn < 0) {
+          elementCounters[OVERDUE]++;
+        }
+      }
+    }
+
+    for (int bucket = 0; bucket < histogram.length; bucket++) {
+      entityWriter.startEntity("DueDates");
+      entityWriter.field("due-date", BUCKET_NAMES[bucket]);
+      entityWriter.field("timers", histogram[bucket]);
+      entityWriter.endEntity();
+    }
+    counters.write("TimerElement", entityWriter);
+
+    return ListCursor.NO_CONTINUATION;
+  }
+
+  /** Shows the timers of the element instance with the given key. */
+  @Override
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var timerState = partitionState.getZeebeState().getWorkflowState().getTimerState();
+    final var timerCount = new MutableInteger();
+
+    timerState.forEachTimerForElementInstance(
+        key,
+        timer -> {
+          timerCount.increment();
+          entityConsumer.accept(
+              String.format(
+                  "Timer[key: %d, element-instance-key: %d, workflow-instance-key: %d, element-id: \"%s\", due-date: %d, repetitions: %d]",
+                  timer.getKey(),
+                  timer.getElementInstanceKey(),
+                  timer.getWorkflowInstanceKey(),
+                  bufferAsString(timer.getHandlerNodeId()),
+                  timer.getDueDate(),
+                  timer.getRepetitions()));
+        });
+
+    if (timerCount.get() == 0) {
+      entityConsumer.accept("No timer found for the element instance with key: " + key);
+    }
+  }
+}
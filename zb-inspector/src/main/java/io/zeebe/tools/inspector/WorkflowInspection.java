@@ -2,41 +2,226 @@ package io.zeebe.tools.inspector;
 
 import static io.zeebe.util.buffer.BufferUtil.bufferAsString;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import io.zeebe.db.impl.DbLong;
+import io.zeebe.engine.state.ZbColumnFamilies;
+import io.zeebe.model.bpmn.Bpmn;
+import io.zeebe.model.bpmn.instance.FlowElement;
+import io.zeebe.model.bpmn.instance.Process;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.io.DirectBufferInputStream;
 
+/**
+ * Shows the deployed workflows. The workflows are read from their serialized form, which contains
+ * the BPMN resource. Only the metadata is read, unless the resource is requested explicitly.
+ */
 public final class WorkflowInspection implements EntityInspection {
 
+  private static final String RESOURCE_NONE = "none";
+  private static final String RESOURCE_XML = "xml";
+  private static final String RESOURCE_ELEMENTS = "elements";
+
+  private static final int MAX_CACHED_SUMMARIES = 64;
+  private static final int RESOURCE_CHUNK_SIZE = 8 * 1024;
+
+  // a workflow key is unique across the partitions, the resource is the same on all of them
+  private final Map<Long, String> elementSummaries =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, String> eldest) {
+          return size() > MAX_CACHED_SUMMARIES;
+        }
+      };
+
+  /** Reads only the metadata of the workflows and skips their resources. */
   @Override
-  public List<String> list(final PartitionState partitionState) {
-    final var workflowState = partitionState.getZeebeState().getWorkflowState();
-
-    return workflowState.getWorkflows().stream()
-        .map(
-            workflow ->
-                String.format(
-                    "Workflow[key: %d, BPMN-process-id: \"%s\", version: %d]",
-                    workflow.getKey(),
-                    bufferAsString(workflow.getBpmnProcessId()),
-                    workflow.getVersion()))
-        .collect(Collectors.toList());
+  public long list(
+      final PartitionState partitionState,
+      final ListCursor cursor,
+      final InspectionOptions options,
+      final EntityWriter entityWriter) {
+
+    final var metadata = new WorkflowMetadata();
+
+    return cursor.walk(
+        getWorkflowColumnFamily(partitionState),
+        (value, workflowKey) -> {
+          metadata.read(value);
+
+          entityWriter.startEntity("Workflow");
+          entityWriter.field("key", workflowKey);
+          entityWriter.field("BPMN-process-id", metadata.bpmnProcessId);
+          entityWriter.field("version", metadata.version);
+          entityWriter.endEntity();
+        });
   }
 
+  /**
+   * Shows the metadata and the size of the resource. Supports the option {@code resource}, which
+   * defines how the BPMN resource is shown:
+   *
+   * <ul>
+   *   <li>{@code none} - the resource is not shown (default)
+   *   <li>{@code xml} - the resource is streamed in chunks of lines, without converting it to one
+   *       string
+   *   <li>{@code elements} - the resource is parsed and summarized by its processes and the number
+   *       of elements per type. The summaries of the last workflows are cached by their key.
+   * </ul>
+   */
   @Override
-  public String entity(final PartitionState partitionState, final long key) {
-    final var workflowState = partitionState.getZeebeState().getWorkflowState();
-
-    return Optional.ofNullable(workflowState.getWorkflowByKey(key))
-        .map(
-            workflow ->
-                String.format(
-                    "Workflow[key: %d, BPMN-process-id: \"%s\", version: %d, resource-name: \"%s\", resource: \"%s\"]",
-                    workflow.getKey(),
-                    bufferAsString(workflow.getBpmnProcessId()),
-                    workflow.getVersion(),
-                    bufferAsString(workflow.getResourceName()),
-                    bufferAsString(workflow.getResource())))
-        .orElse("No workflow found with key: " + key);
+  public void entity(
+      final PartitionState partitionState,
+      final long key,
+      final InspectionOptions options,
+      final Consumer<String> entityConsumer) {
+    final var resourceView = options.getString("resource", RESOURCE_NONE);
+    if (!resourceView.equals(RESOURCE_NONE)
+        && !resourceView.equals(RESOURCE_XML)
+        && !resourceView.equals(RESOURCE_ELEMENTS)) {
+      throw new IllegalArgumentException(
+          "Expected resource to be one of none, xml or elements, but got " + resourceView);
+    }
+
+    final var workflowKey = new DbLong();
+    workflowKey.wrapLong(key);
+    final var value = getWorkflowColumnFamily(partitionState).get(workflowKey);
+    if (value == null) {
+      entityConsumer.accept("No workflow found with key: " + key);
+      return;
+    }
+
+    final var metadata = new WorkflowMetadata();
+    metadata.read(value);
+
+    entityConsumer.accept(
+        String.format(
+            "Workflow[key: %d, BPMN-process-id: \"%s\", version: %d, resource-name: \"%s\", resource-bytes: %d]",
+            key,
+            bufferAsString(metadata.bpmnProcessId),
+            metadata.version,
+            bufferAsString(metadata.resourceName),
+            metadata.resource.capacity()));
+
+    switch (resourceView) {
+      case RESOURCE_XML:
+        streamResource(metadata.resource, entityConsumer);
+        break;
+      case RESOURCE_ELEMENTS:
+        entityConsumer.accept(getElementSummary(key, metadata.resource));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static void streamResource(
+      final DirectBuffer resource, final Consumer<String> entityConsumer) {
+    try (final var reader =
+        new BufferedReader(
+            new InputStreamReader(
+                new DirectBufferInputStream(resource), StandardCharsets.UTF_8))) {
+      final var chunk = new StringBuilder();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (chunk.length() > 0 && chunk.length() + line.length() > RESOURCE_CHUNK_SIZE) {
+          entityConsumer.accept(chunk.toString());
+          chunk.setLength(0);
+        }
+
+        if (chunk.length() > 0) {
+          chunk.append('\n');
+        }
+        chunk.append(line);
+      }
+
+      if (chunk.length() > 0) {
+        entityConsumer.accept(chunk.toString());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private String getElementSummary(final long workflowKey, final DirectBuffer resource) {
+    synchronized (elementSummaries) {
+      final var summary = elementSummaries.get(workflowKey);
+      if (summary != null) {
+        return summary;
+      }
+    }
+
+    // parsed outside of the lock, another partition may parse the same resource concurrently
+    final var summary = summarizeElements(resource);
+    synchronized (elementSummaries) {
+      elementSummaries.put(workflowKey, summary);
+    }
+    return summary;
+  }
+
+  private static String summarizeElements(final DirectBuffer resource) {
+    final var model = Bpmn.readModelFromStream(new DirectBufferInputStream(resource));
+
+    final var builder = new StringBuilder("Processes:");
+    for (final var process : model.getModelElementsByType(Process.class)) {
+      builder.append("\n\t").append(process.getId());
+    }
+
+    final var elementCounts = new TreeMap<String, Integer>();
+    final var flowElements = model.getModelElementsByType(FlowElement.class);
+    for (final var flowElement : flowElements) {
+      elementCounts.merge(flowElement.getElementType().getTypeName(), 1, Integer::sum);
+    }
+
+    builder.append("\nElements: ").append(flowElements.size());
+    elementCounts.forEach(
+        (type, count) -> builder.append("\n\t").append(type).append(": ").append(count));
+
+    return builder.toString();
+  }
+
+  private ReadOnlyColumnFamily<DbLong, DbBufferView> getWorkflowColumnFamily(
+      final PartitionState partitionState) {
+    return partitionState
+        .getZeebeDb()
+        .createColumnFamily(
+            ZbColumnFamilies.WORKFLOW_CACHE,
+            partitionState.getDbContext(),
+            new DbLong(),
+            new DbBufferView());
+  }
+
+  /**
+   * The properties of a persisted workflow, read from its serialized MsgPack. The buffers are views
+   * of the value, they are only valid until the next entry is read.
+   */
+  private static final class WorkflowMetadata {
+
+    private final PropertyReader reader = new PropertyReader();
+    private final int versionIndex = reader.addInteger("version");
+    private final int bpmnProcessIdIndex = reader.addString("bpmnProcessId");
+    private final int resourceNameIndex = reader.addString("resourceName");
+    // only wrapped, the bytes are not read unless the resource is shown
+    private final int resourceIndex = reader.addBinary("resource");
+
+    private DirectBuffer bpmnProcessId;
+    private DirectBuffer resourceName;
+    private DirectBuffer resource;
+    private long version;
+
+    private void read(final DbBufferView value) {
+      reader.read(value.getBuffer(), 0, value.getLength());
+      version = reader.isFound(versionIndex) ? reader.getInteger(versionIndex) : -1;
+      bpmnProcessId = reader.getString(bpmnProcessIdIndex);
+      resourceName = reader.getString(resourceNameIndex);
+      resource = reader.getBinary(resourceIndex);
+    }
   }
 }
@@ -0,0 +1,232 @@
+package de.zell;
+
+import io.zeebe.logstreams.impl.log.LogEntryDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+/**
+ * Copies the entries of a partition which contain the records of a position range into a new data
+ * folder, so a region of a log can be inspected without the whole data folder. The start of the
+ * range is found by the {@link RawLogReader}, without reading the log from its beginning.
+ *
+ * <p>The entries are copied as they are, since their checksums cover all of their records: the
+ * first and the last entry may contain records outside of the range. The entries of each source
+ * segment are contiguous, so they are transferred with one channel transfer per segment, without
+ * copying them through the heap. Each source segment becomes one segment of the extract, with the
+ * descriptor of the source segment and the raft index of its first copied entry, so the extract is
+ * a valid raft log which can be read by the checker and by the inspector.
+ *
+ * <p>A {@link SegmentIndex} of each extracted segment is written into the index directory of the
+ * extract. The partition of the extract gets an empty state, since the inspector opens the state of
+ * a partition before it inspects its log, e.g. to replay it.
+ */
+final class LogExtractor {
+
+  private static final String STATE_DIRECTORY = "runtime";
+
+  private final File partitionDirectory;
+  private final String partitionName;
+  private final String segmentFileFormat;
+  private final File indexDirectory;
+
+  /** @param indexDirectory the directory of the segment indexes, or null to read without them */
+  LogExtractor(File partitionDirectory, String partitionName, File indexDirectory) {
+    this.partitionDirectory = partitionDirectory;
+    this.partitionName = partitionName;
+    final var partitionId = Integer.parseInt(partitionDirectory.getName());
+    this.segmentFileFormat =
+        String.format(LogReader.PARTITION_NAME_FORMAT, partitionName, partitionId)
+            + "-%d"
+            + SegmentScanner.SEGMENT_FILE_SUFFIX;
+    this.indexDirectory = indexDirectory;
+  }
+
+  /**
+   * Copies the entries with records from the first position to the last position, both inclusive.
+   *
+   * @param outputDirectory the partition directory of the extract, which is created
+   * @param outputIndexDirectory the directory for the indexes of the extracted segments
+   * @return the extracted segments, empty if the log has no records in the range
+   */
+  List<ExtractedSegment> extract(
+      long fromPosition, long toPosition, File outputDirectory, File outputIndexDirectory)
+      throws IOException {
+    final var segments = new ArrayList<ExtractedSegment>();
+    try (final var reader = new RawLogReader(partitionDirectory, partitionName, indexDirectory)) {
+      reader.open();
+      if (!reader.seek(fromPosition)) {
+        return segments;
+      }
+
+      ExtractedSegment segment = null;
+      do {
+        final var firstPosition = firstPosition(reader);
+        if (firstPosition > toPosition) {
+          break;
+        }
+
+        if (segment == null || segment.sourceId != reader.segmentId()) {
+          segment =
+              new ExtractedSegment(
+                  reader.segmentFile(),
+                  reader.segmentId(),
+                  segments.size() + 1,
+                  reader.entryIndex(),
+                  reader.entryOffset());
+          segments.add(segment);
+        }
+        segment.onEntry(reader, firstPosition);
+      } while (reader.nextEntry());
+    }
+
+    if (segments.isEmpty()) {
+      return segments;
+    }
+
+    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+      throw new IOException("Failed to create the directory " + outputDirectory);
+    }
+    if (!outputIndexDirectory.isDirectory() && !outputIndexDirectory.mkdirs()) {
+      throw new IOException("Failed to create the directory " + outputIndexDirectory);
+    }
+    for (var extractedSegment : segments) {
+      extractedSegment.write(outputDirectory, outputIndexDirectory);
+    }
+    createEmptyState(new File(outputDirectory, STATE_DIRECTORY));
+    return segments;
+  }
+
+  private static void createEmptyState(File stateDirectory) throws IOException {
+    if (stateDirectory.exists()) {
+      return;
+    }
+
+    RocksDB.loadLibrary();
+    try (final var options = new Options().setCreateIfMissing(true)) {
+      // an empty database only has the default column family, it is closed right away
+      RocksDB.open(options, stateDirectory.getPath()).close();
+    } catch (RocksDBException e) {
+      throw new IOException("Failed to create an empty state in " + stateDirectory, e);
+    }
+  }
+
+  /** @return the position of the first record of the entry, -1 if it has none */
+  private static long firstPosition(RawLogReader reader) {
+    if (!reader.isZeebeEntry() || reader.dataLength() <= 0) {
+      return -1;
+    }
+    return LogEntryDescriptor.getPosition(reader.buffer(), reader.dataOffset());
+  }
+
+  /** The contiguous entries of one source segment, which are copied into one segment. */
+  final class ExtractedSegment {
+
+    private final File sourceFile;
+    private final long sourceId;
+    private final long id;
+    private final long firstIndex;
+    private final int sourceOffset;
+    private final SegmentIndex index;
+    private int length;
+    private File file;
+
+    private ExtractedSegment(
+        File sourceFile, long sourceId, long id, long firstIndex, int sourceOffset) {
+      this.sourceFile = sourceFile;
+      this.sourceId = sourceId;
+      this.id = id;
+      this.firstIndex = firstIndex;
+      this.sourceOffset = sourceOffset;
+      this.index = new SegmentIndex(id, firstIndex);
+      index.firstPosition = -1;
+      index.lastPosition = -1;
+    }
+
+    private void onEntry(RawLogReader reader, long firstPosition) {
+      if (firstPosition >= 0) {
+        index.onEntry(
+            reader.entryIndex(),
+            SegmentScanner.DESCRIPTOR_LENGTH + reader.entryOffset() - sourceOffset,
+            firstPosition);
+        if (index.firstPosition < 0) {
+          index.firstPosition = firstPosition;
+        }
+        index.lastPosition = reader.lastPosition();
+      }
+      index.entries++;
+      length = reader.entryOffset() + reader.entryLength() - sourceOffset;
+    }
+
+    /**
+     * Writes the descriptor of the source segment with the id and first index of the extracted
+     * segment, followed by the entries which are transferred from the source segment directly.
+     */
+    private void write(File outputDirectory, File outputIndexDirectory) throws IOException {
+      file = new File(outputDirectory, String.format(segmentFileFormat, id));
+      try (final var source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+          final var target =
+              FileChannel.open(
+                  file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        final var descriptor =
+            ByteBuffer.allocate(SegmentScanner.DESCRIPTOR_LENGTH).order(ByteOrder.BIG_ENDIAN);
+        while (descriptor.hasRemaining()) {
+          if (source.read(descriptor, descriptor.position()) < 0) {
+            throw new IOException("Expected a descriptor in segment " + sourceFile);
+          }
+        }
+        descriptor.putLong(SegmentScanner.DESCRIPTOR_ID_OFFSET, id);
+        descriptor.putLong(SegmentScanner.DESCRIPTOR_INDEX_OFFSET, firstIndex);
+        descriptor.flip();
+        while (descriptor.hasRemaining()) {
+          target.write(descriptor);
+        }
+
+        long transferred = 0;
+        while (transferred < length) {
+          transferred +=
+              source.transferTo(sourceOffset + transferred, length - transferred, target);
+        }
+        target.force(true);
+      }
+      index.write(outputIndexDirectory, file.getName());
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    long getSourceId() {
+      return sourceId;
+    }
+
+    long getFirstIndex() {
+      return firstIndex;
+    }
+
+    long getEntries() {
+      return index.entries;
+    }
+
+    long getFirstPosition() {
+      return index.firstPosition;
+    }
+
+    long getLastPosition() {
+      return index.lastPosition;
+    }
+
+    /** @return the bytes of the extracted segment, including its descriptor */
+    long getBytes() {
+      return SegmentScanner.DESCRIPTOR_LENGTH + (long) length;
+    }
+  }
+}
@@ -14,40 +14,74 @@ import io.zeebe.util.sched.ActorScheduler;
 import io.zeebe.util.sched.future.ActorFuture;
 import io.zeebe.util.sched.future.CompletableActorFuture;
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 
 public final class LogReader extends Actor {
 
-  private static final String ANSI_RESET = "\u001B[0m";
-  private static final String ANSI_GREEN = "\u001B[32m";
-  private static final String ANSI_RED = "\u001B[31m";
-
   private static final String DIR_FORMAT = "%s/data/%s/partitions/%d";
-  private static final String PARTITION_NAME_FORMAT = "%s-partition-%d";
+  static final String PARTITION_NAME_FORMAT = "%s-partition-%d";
 
   private final String path;
   private final ActorScheduler actorScheduler;
   private final String partitionName;
   private final int partitionId;
+  private final String outputPrefix;
+  private final boolean collectStatistics;
+  private final ScanMetrics metrics;
+  // completed once the reader is closed after the scan, awaited by threads which are no actors
+  private final CompletableFuture<ScanResult> scanFuture = new CompletableFuture<>();
+  private RaftLog raftLog;
   private ActorFuture<LogStream> logStreamFuture;
-
+  private long raftLogMillis;
+  private long logStreamMillis;
+  private ScanResult scanResult;
+  private Throwable scanError;
+
+  /**
+   * @param collectStatistics if true, the statistics of the log content are collected in the same
+   *     pass, see {@link LogStatistics}
+   * @param reportIntervalMillis the interval in which the progress of the scan is printed, never if
+   *     0, see {@link ScanMetrics}
+   */
   public LogReader(
-      ActorScheduler actorScheduler, String path, String partitionName, int partitionId) {
+      ActorScheduler actorScheduler,
+      String path,
+      String partitionName,
+      int partitionId,
+      boolean collectStatistics,
+      long reportIntervalMillis) {
     this.actorScheduler = actorScheduler;
     this.path = String.format(DIR_FORMAT, path, partitionName, partitionId);
     this.partitionName = String.format(PARTITION_NAME_FORMAT, partitionName, partitionId);
     this.partitionId = partitionId;
+    this.outputPrefix = "[Partition " + partitionId + "] ";
+    this.collectStatistics = collectStatistics;
+    this.metrics = new ScanMetrics(partitionId, outputPrefix, reportIntervalMillis);
   }
 
-
   @Override
   protected void onActorStarting() {
+    try {
+      openLog();
+    } catch (RuntimeException e) {
+      // the reader fails to start and is never closed, so the scan is completed here
+      scanFuture.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void openLog() {
     final var resourceDir = new File(path);
 
     final var startTime = System.currentTimeMillis();
-    final var raftLog =
+    raftLog =
         RaftLog.builder()
             .withDirectory(resourceDir)
             .withName(partitionName)
@@ -58,7 +92,9 @@ public final class LogReader extends Actor {
             .build();
 
     final var endtime = System.currentTimeMillis();
-    System.out.println("Log opened in " + (endtime - startTime) + " ms");
+    raftLogMillis = endtime - startTime;
+    System.out.println(outputPrefix + "Log opened in " + raftLogMillis + " ms");
+    metrics.onSegments(readSegmentIds(resourceDir));
 
     final var atomixLogStorage =
         new AtomixLogStorage(
@@ -74,113 +110,171 @@ public final class LogReader extends Actor {
         .withLogName(partitionName)
         .withPartitionId(partitionId)
         .buildAsync();
+    logStreamFuture.onComplete(
+        (logStream, t) -> {
+          logStreamMillis = System.currentTimeMillis() - endtime;
+          metrics.onOpened(raftLogMillis + logStreamMillis);
+        });
+    metrics.register();
   }
 
-  public CompletableActorFuture<Boolean> scan() {
-    final var future = new CompletableActorFuture<Boolean>();
-
-    actor
-        .call(
-            () -> {
-              logStreamFuture.onComplete(
-                      (logStream, t) -> {
-                        if (t == null) {
-                          logStream
-                              .newLogStreamReader()
-                              .onComplete(
-                                  (reader, t2) -> {
-                                    if (t2 == null) {
-                                      future.complete(scanLog(reader));
-                                    } else {
-                                      future.completeExceptionally(t2);
-                                    }
-                                  });
-                        }
-                        else
-                        {
-                          future.completeExceptionally(t);
-                        }
-                      });
-            });
-    return future;
-  }
-
-  private boolean scanLog(LogStreamReader reader) {
-    System.out.println("Scan log...");
-    reader.seekToFirstEvent();
-
-    final var validationContext = new ValidationContext();
-
-    while (reader.hasNext()) {
-      final var next = reader.next();
-      final var position = next.getPosition();
+  /**
+   * Reads the id and the first raft index of each segment from its descriptor, so the scan metrics
+   * can tell the segment of an entry.
+   *
+   * @return the segment ids by the first index, empty if a descriptor can't be read
+   */
+  private NavigableMap<Long, Long> readSegmentIds(File directory) {
+    final var segmentIds = new TreeMap<Long, Long>();
+    final var segmentFiles =
+        directory.listFiles(
+            (dir, name) ->
+                name.startsWith(partitionName + "-")
+                    && name.endsWith(SegmentScanner.SEGMENT_FILE_SUFFIX));
+    if (segmentFiles == null) {
+      return segmentIds;
+    }
 
-      validationContext.onNextPosition(position);
+    final var descriptor = ByteBuffer.allocate(SegmentScanner.DESCRIPTOR_LENGTH);
+    for (var segmentFile : segmentFiles) {
+      try (final var channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+        descriptor.clear();
+        while (descriptor.hasRemaining()) {
+          if (channel.read(descriptor, descriptor.position()) < 0) {
+            throw new IOException("Expected a descriptor in segment " + segmentFile);
+          }
+        }
+        segmentIds.put(
+            descriptor.getLong(SegmentScanner.DESCRIPTOR_INDEX_OFFSET),
+            descriptor.getLong(SegmentScanner.DESCRIPTOR_ID_OFFSET));
+      } catch (IOException e) {
+        System.out.println(outputPrefix + "Failed to read the segment descriptors: " + e);
+        return new TreeMap<>();
+      }
     }
+    return segmentIds;
+  }
 
-    System.out.println("Scan finished");
+  @Override
+  protected void onActorClosing() {
+    metrics.unregister();
+    if (logStreamFuture == null) {
+      return;
+    }
 
-    return validationContext.finishValidation();
+    logStreamFuture.onComplete(
+        (logStream, t) -> {
+          if (t == null) {
+            actor.runOnCompletionBlockingCurrentPhase(
+                logStream.closeAsync(), (v, t2) -> raftLog.close());
+          } else {
+            raftLog.close();
+          }
+        });
   }
 
+  /**
+   * The log is scanned as soon as the reader is started, and the reader closes itself after the
+   * scan. The future is completed once the reader is closed, so it can be awaited and composed
+   * without an actor.
+   */
+  public CompletableFuture<ScanResult> scan() {
+    return scanFuture;
+  }
 
-  private static class ValidationContext {
-
-    long low = Long.MAX_VALUE;
-    long high = Long.MIN_VALUE;
-    long lastPosition = 0;
-    int eventCount = 0;
-    boolean inconsistentLog = false;
+  @Override
+  protected void onActorStarted() {
+    final var scan = new CompletableActorFuture<ScanResult>();
+    logStreamFuture.onComplete(
+        (logStream, t) -> {
+          if (t == null) {
+            logStream
+                .newLogStreamReader()
+                .onComplete(
+                    (reader, t2) -> {
+                      if (t2 == null) {
+                        completeScan(scan, reader);
+                      } else {
+                        scan.completeExceptionally(t2);
+                      }
+                    });
+          }
+          else
+          {
+            scan.completeExceptionally(t);
+          }
+        });
+
+    actor.runOnCompletion(
+        scan,
+        (result, error) -> {
+          scanResult = result;
+          scanError = error;
+          actor.close();
+        });
+  }
 
-    void onNextPosition(long position) {
+  /** A failed scan would fail the actor, which never completes the scan otherwise. */
+  private void completeScan(CompletableActorFuture<ScanResult> scan, LogStreamReader reader) {
+    try {
+      scan.complete(scanLog(reader));
+    } catch (RuntimeException e) {
+      scan.completeExceptionally(e);
+    }
+  }
 
-      if (lastPosition > position) {
-        inconsistentLog = true;
-        onInconsistentLog(low, high, lastPosition, eventCount, position);
-      }
+  @Override
+  protected void onActorClosed() {
+    if (scanError != null) {
+      scanFuture.completeExceptionally(scanError);
+    } else if (scanResult != null) {
+      scanFuture.complete(scanResult);
+    } else {
+      scanFuture.completeExceptionally(
+          new IllegalStateException("The reader was closed before the log was scanned"));
+    }
+  }
 
-      if (position < low)
-      {
-        low = position;
-      } else if (position > high) {
-        high = position;
-      }
+  private ScanResult scanLog(LogStreamReader reader) {
+    System.out.println(outputPrefix + "Scan log...");
+    final var startTime = System.currentTimeMillis();
+    metrics.onScanStarted(raftLog.writer().getLastIndex());
+    reader.seekToFirstEvent();
 
+    final var validationContext = new ValidationContext(outputPrefix);
+    final var statistics = collectStatistics ? new LogStatistics() : null;
 
-      lastPosition = position;
-      eventCount++;
-    }
+    while (reader.hasNext()) {
+      final var next = reader.next();
+      final var position = next.getPosition();
 
-    boolean finishValidation() {
-      if (inconsistentLog)
-      {
-        System.out.println(ANSI_RED + "LOG IS INCONSISTENT!" + ANSI_RESET);
-      }
-      else
-      {
-        System.out.println(ANSI_GREEN + "LOG IS CONSISTENT." + ANSI_RESET);
+      validationContext.onNextPosition(position);
+      metrics.onEvent(position, reader.lastReadAddress(), next.getLength());
+      if (statistics != null) {
+        statistics.onRecord(next);
       }
-      System.out.println("Last position: " + lastPosition);
-      System.out.println("Lowest position: " + low);
-      System.out.println("Highest position: " + high);
-      System.out.println("Events: " + eventCount);
-      return inconsistentLog;
-    }
-
-    private static void onInconsistentLog(long low, long high, long lastPosition, int eventCount,
-        long position) {
-      System.out.println("===============");
-      System.out.println("At idx " + eventCount);
-      System.out.print("Current position " + position);
-      System.out.print(" (Segment id " + (position >> 32) + " segment offset " + (int) position + ')');
-      System.out.println();
-      System.out.print("Is smaller then this last position " + lastPosition);
-      System.out.print(" (Segment id " + (lastPosition >> 32) + " segment offset " + (int) lastPosition + ')');
-      System.out.println();
-      System.out.println("Current lowest " + low + " current highest " + high);
-      System.out.println("===============");
     }
 
+    final var scanMillis = System.currentTimeMillis() - startTime;
+    System.out.println(outputPrefix + "Scan finished in " + scanMillis + " ms");
+    metrics.onScanFinished(validationContext.lastPosition, reader.lastReadAddress());
+    metrics.printTiming(raftLogMillis, logStreamMillis);
+
+    validationContext.finishValidation();
+
+    final var scanResult = new ScanResult(
+        partitionId,
+        validationContext.inconsistentLog,
+        validationContext.eventCount,
+        metrics.getBytes(),
+        0,
+        validationContext.low,
+        validationContext.high,
+        validationContext.lastPosition,
+        raftLogMillis + logStreamMillis,
+        scanMillis);
+    scanResult.setStatistics(statistics);
+    return scanResult;
   }
 
   private class NoopAppender implements ZeebeLogAppender {
@@ -0,0 +1,188 @@
+package de.zell;
+
+import io.zeebe.logstreams.log.LoggedEvent;
+import io.zeebe.protocol.record.ValueType;
+import io.zeebe.protocol.record.intent.Intent;
+import java.util.Arrays;
+import org.agrona.collections.Long2LongHashMap;
+
+/**
+ * Aggregates the content of a log while it is scanned, for capacity planning: the records and bytes
+ * per value type and intent, the records per second of the record timestamps, and the records and
+ * bytes per append. Only primitive counters are updated per record, the names are resolved when the
+ * statistics are written as JSON.
+ */
+final class LogStatistics {
+
+  private static final int VALUE_TYPES = ValueType.values().length;
+  private static final int INTENTS = Intent.maxCardinality();
+  private static final int SIZE_BUCKETS = Long.SIZE;
+  private static final long MILLIS_PER_SECOND = 1000;
+  private static final long SECONDS_PER_MINUTE = 60;
+  private static final long MISSING_COUNT = 0;
+
+  private final MetadataReader metadataReader = new MetadataReader();
+  // indexed by value type ordinal * INTENTS + intent
+  private final long[] records = new long[VALUE_TYPES * INTENTS];
+  private final long[] bytes = new long[VALUE_TYPES * INTENTS];
+  private final Long2LongHashMap recordsPerSecond = new Long2LongHashMap(MISSING_COUNT);
+  // the power of two buckets, bucket i counts the appends with up to 2^i records or bytes
+  private final long[] recordsPerAppend = new long[SIZE_BUCKETS];
+  private final long[] bytesPerAppend = new long[SIZE_BUCKETS];
+  private long unknownRecords;
+  private long unknownBytes;
+
+  void onRecord(LoggedEvent event) {
+    final var length = event.getMetadataLength() + event.getValueLength();
+    final var second = Math.floorDiv(event.getTimestamp(), MILLIS_PER_SECOND);
+    recordsPerSecond.put(second, recordsPerSecond.get(second) + 1);
+
+    if (!metadataReader.wrap(event)) {
+      unknownRecords++;
+      unknownBytes += length;
+      return;
+    }
+
+    final var valueType = metadataReader.valueType();
+    final var intent = metadataReader.intent();
+    if (intent < 0 || intent >= INTENTS) {
+      unknownRecords++;
+      unknownBytes += length;
+      return;
+    }
+
+    final var index = valueType.ordinal() * INTENTS + intent;
+    records[index]++;
+    bytes[index] += length;
+  }
+
+  /** Counts one append, which is written as one entry with all of its records. */
+  void onAppend(int recordCount, int byteCount) {
+    recordsPerAppend[sizeBucket(recordCount)]++;
+    bytesPerAppend[sizeBucket(byteCount)]++;
+  }
+
+  private static int sizeBucket(long size) {
+    return size <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(size - 1);
+  }
+
+  /** Adds the statistics of another part of the same log, e.g. of another segment. */
+  void append(LogStatistics other) {
+    for (int i = 0; i < records.length; i++) {
+      records[i] += other.records[i];
+      bytes[i] += other.bytes[i];
+    }
+    for (int i = 0; i < SIZE_BUCKETS; i++) {
+      recordsPerAppend[i] += other.recordsPerAppend[i];
+      bytesPerAppend[i] += other.bytesPerAppend[i];
+    }
+    other.recordsPerSecond.longForEach(
+        (second, count) -> recordsPerSecond.put(second, recordsPerSecond.get(second) + count));
+    unknownRecords += other.unknownRecords;
+    unknownBytes += other.unknownBytes;
+  }
+
+  /**
+   * Writes the statistics as JSON object. The records per second are summarized per minute, with
+   * the average and the peak of the seconds in the minute which have records.
+   */
+  void writeJson(StringBuilder json, int partitionId) {
+    long totalRecords = unknownRecords;
+    long totalBytes = unknownBytes;
+    for (int i = 0; i < records.length; i++) {
+      totalRecords += records[i];
+      totalBytes += bytes[i];
+    }
+
+    json.append("{\"partition\":").append(partitionId)
+        .append(",\"records\":").append(totalRecords)
+        .append(",\"bytes\":").append(totalBytes)
+        .append(",\"unknownRecords\":").append(unknownRecords)
+        .append(",\"unknownBytes\":").append(unknownBytes);
+
+    json.append(",\"valueTypes\":[");
+    var first = true;
+    final var valueTypes = ValueType.values();
+    for (int i = 0; i < records.length; i++) {
+      if (records[i] == 0) {
+        continue;
+      }
+
+      final var valueType = valueTypes[i / INTENTS];
+      final var intent = (short) (i % INTENTS);
+      first = appendSeparator(json, first);
+      json.append("{\"valueType\":\"").append(valueType.name())
+          .append("\",\"intent\":\"").append(intentName(valueType, intent))
+          .append("\",\"records\":").append(records[i])
+          .append(",\"bytes\":").append(bytes[i])
+          .append('}');
+    }
+
+    json.append("],\"recordsPerMinute\":[");
+    writeRecordsPerMinute(json);
+    json.append("],\"recordsPerAppend\":[");
+    writeSizeBuckets(json, recordsPerAppend);
+    json.append("],\"bytesPerAppend\":[");
+    writeSizeBuckets(json, bytesPerAppend);
+    json.append("]}");
+  }
+
+  private void writeRecordsPerMinute(StringBuilder json) {
+    final var seconds = new long[recordsPerSecond.size()];
+    final var index = new int[1];
+    recordsPerSecond.longForEach((second, count) -> seconds[index[0]++] = second);
+    Arrays.sort(seconds);
+
+    var first = true;
+    var i = 0;
+    while (i < seconds.length) {
+      final var minute = Math.floorDiv(seconds[i], SECONDS_PER_MINUTE);
+      long minuteRecords = 0;
+      long peak = 0;
+      var activeSeconds = 0;
+      for (; i < seconds.length && Math.floorDiv(seconds[i], SECONDS_PER_MINUTE) == minute; i++) {
+        final var count = recordsPerSecond.get(seconds[i]);
+        minuteRecords += count;
+        peak = Math.max(peak, count);
+        activeSeconds++;
+      }
+
+      first = appendSeparator(json, first);
+      json.append("{\"timestamp\":").append(minute * SECONDS_PER_MINUTE * MILLIS_PER_SECOND)
+          .append(",\"records\":").append(minuteRecords)
+          .append(",\"averagePerSecond\":").append(minuteRecords / activeSeconds)
+          .append(",\"peakPerSecond\":").append(peak)
+          .append('}');
+    }
+  }
+
+  private static void writeSizeBuckets(StringBuilder json, long[] buckets) {
+    var first = true;
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] == 0) {
+        continue;
+      }
+
+      first = appendSeparator(json, first);
+      json.append("{\"upTo\":").append(1L << i)
+          .append(",\"appends\":").append(buckets[i])
+          .append('}');
+    }
+  }
+
+  private static boolean appendSeparator(StringBuilder json, boolean first) {
+    if (!first) {
+      json.append(',');
+    }
+    return false;
+  }
+
+  private static String intentName(ValueType valueType, short intent) {
+    try {
+      final var name = Intent.fromProtocolValue(valueType, intent);
+      return name != Intent.UNKNOWN ? name.name() : String.valueOf(intent);
+    } catch (RuntimeException e) {
+      return String.valueOf(intent);
+    }
+  }
+}
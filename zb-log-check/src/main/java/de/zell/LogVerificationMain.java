@@ -2,27 +2,125 @@ package de.zell;
 
 import static java.lang.System.exit;
 
+import io.zeebe.logstreams.impl.log.LogEntryDescriptor;
 import io.zeebe.util.sched.ActorScheduler.ActorSchedulerBuilder;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 public class LogVerificationMain
 {
     private static final String PARTITIONS_DIRECTORY_FORMAT = "%s/data/%s/partitions/";
+    private static final int DEFAULT_PROGRESS_INTERVAL_SECONDS = 10;
+    private static final String EXTRACT_INDEX_DIRECTORY = "index";
+    private static final String USAGE = "Correct usage: java -jar LogVerificationMain PATH_TO_DATA_FOLDER [--parallelism N] [--progress-interval SECONDS] [--deep] [--stats FILE] [--raw] [--checkpoint-dir DIR] [--locate POSITION] [--extract DIR --from POSITION [--to POSITION]]";
 
     public static void main( String[] args )
     {
-        if (args.length != 1)
+        if (args.length < 1)
         {
-            System.out.println("Expected to be called with one parameter, got " + args.length);
-            System.out.println("Correct usage: java -jar LogVerificationMain PATH_TO_DATA_FOLDER");
+            System.out.println("Expected to be called with at least one parameter, got " + args.length);
+            System.out.println(USAGE);
             return;
         }
 
         final var pathToDataFolder = args[0];
 
+        int parallelism = 0;
+        int progressIntervalSeconds = DEFAULT_PROGRESS_INTERVAL_SECONDS;
+        boolean raw = false;
+        boolean deepValidation = false;
+        File checkpointDirectory = null;
+        File statisticsFile = null;
+        Long locatePosition = null;
+        File extractDirectory = null;
+        Long fromPosition = null;
+        long toPosition = Long.MAX_VALUE;
+        for (int i = 1; i < args.length; i++)
+        {
+            if (args[i].equals("--parallelism") && i + 1 < args.length && isInteger(args[i + 1]) && Integer.parseInt(args[i + 1]) > 0)
+            {
+                parallelism = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--progress-interval") && i + 1 < args.length && isInteger(args[i + 1]) && Integer.parseInt(args[i + 1]) >= 0)
+            {
+                progressIntervalSeconds = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--deep"))
+            {
+                deepValidation = true;
+            }
+            else if (args[i].equals("--raw"))
+            {
+                raw = true;
+            }
+            else if (args[i].equals("--checkpoint-dir") && i + 1 < args.length)
+            {
+                checkpointDirectory = new File(args[++i]);
+            }
+            else if (args[i].equals("--locate") && i + 1 < args.length && isLong(args[i + 1]))
+            {
+                locatePosition = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--extract") && i + 1 < args.length)
+            {
+                extractDirectory = new File(args[++i]);
+            }
+            else if (args[i].equals("--from") && i + 1 < args.length && isLong(args[i + 1]))
+            {
+                fromPosition = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--to") && i + 1 < args.length && isLong(args[i + 1]))
+            {
+                toPosition = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--stats") && i + 1 < args.length)
+            {
+                statisticsFile = new File(args[++i]);
+            }
+            else
+            {
+                System.out.println("Unexpected parameter " + args[i]);
+                System.out.println(USAGE);
+                return;
+            }
+        }
+
+        if (extractDirectory != null && (fromPosition == null || fromPosition > toPosition))
+        {
+            System.out.println("Expected --extract to be used with --from, and --from to be at most --to");
+            System.out.println(USAGE);
+            return;
+        }
+
+        // the log stream reader can't see the entries and checksums, the deep validation runs in the single pass of the raw scan
+        final var rawScan = raw || deepValidation;
+        if (checkpointDirectory != null)
+        {
+            if (!rawScan && locatePosition == null && extractDirectory == null)
+            {
+                System.out.println("Expected --checkpoint-dir to be used with --raw, --deep, --locate or --extract, since the checkpoints and indexes are kept per segment");
+                System.out.println(USAGE);
+                return;
+            }
+            if (!checkpointDirectory.isDirectory() && !checkpointDirectory.mkdirs())
+            {
+                System.err.println("Failed to create the checkpoint directory " + checkpointDirectory);
+                return;
+            }
+        }
+
         final var partitionsFolder = new File(String
             .format(PARTITIONS_DIRECTORY_FORMAT, pathToDataFolder, "raft-partition"));
 
@@ -46,28 +144,322 @@ public class LogVerificationMain
             return;
         }
 
-        final var inconsistentLog = verifyPartitions(pathToDataFolder, partitionDirectories);
+        if (locatePosition != null)
+        {
+            locatePosition(partitionDirectories, checkpointDirectory, locatePosition);
+            return;
+        }
+
+        if (extractDirectory != null)
+        {
+            final var extracted = extractPositions(partitionDirectories, checkpointDirectory, fromPosition, toPosition, extractDirectory);
+            exit(extracted ? 0 : 1);
+        }
+
+        final var collectStatistics = statisticsFile != null;
+        final var results = new ArrayList<ScanResult>();
+        boolean inconsistentLog;
+        if (rawScan)
+        {
+            inconsistentLog = scanPartitions(partitionDirectories, parallelism, checkpointDirectory, deepValidation, collectStatistics, results);
+        }
+        else
+        {
+            if (parallelism == 0)
+            {
+                parallelism = Math.min(partitionDirectories.size(), Runtime.getRuntime().availableProcessors());
+            }
+            inconsistentLog = verifyPartitions(pathToDataFolder, partitionDirectories, parallelism, collectStatistics, progressIntervalSeconds * 1000L, results);
+        }
+
+        if (collectStatistics)
+        {
+            try
+            {
+                writeStatistics(results, statisticsFile);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Failed to write the statistics to " + statisticsFile + ": " + e);
+                inconsistentLog = true;
+            }
+        }
 
         exit(inconsistentLog ? 1 : 0);
     }
 
-    private static boolean verifyPartitions(String pathToDataFolder, List<File> partitionDirectories) {
-        final var actorScheduler = new ActorSchedulerBuilder().build();
+    /**
+     * Verifies up to {@code parallelism} partitions at the same time. A scan occupies an actor thread
+     * until it is done, so the scheduler gets one thread per concurrent scan, plus one for the log
+     * stream actors. The next log reader is only submitted when a scan is done.
+     */
+    private static boolean verifyPartitions(String pathToDataFolder, List<File> partitionDirectories, int parallelism, boolean collectStatistics, long reportIntervalMillis, List<ScanResult> results) {
+        final var actorScheduler = new ActorSchedulerBuilder()
+            .setCpuBoundActorThreadCount(parallelism + 1)
+            .build();
         actorScheduler.start();
 
+        System.out.println("Verify " + partitionDirectories.size() + " partitions with parallelism " + parallelism);
+        final var startTime = System.currentTimeMillis();
+
+        final var outstandingScans = new Semaphore(parallelism);
+        final var scans = new ArrayList<CompletableFuture<ScanResult>>();
+        boolean inconsistentLog = false;
+        try {
+            for (var partitionDir : partitionDirectories) {
+                outstandingScans.acquire();
+                System.out.println("Verify partition at " + partitionDir);
+                final var logReader = new LogReader(actorScheduler,
+                    pathToDataFolder,
+                    "raft-partition", Integer.parseInt(partitionDir.getName()), collectStatistics, reportIntervalMillis);
+                scans.add(logReader.scan().whenComplete((result, error) -> outstandingScans.release()));
+                actorScheduler.submitActor(logReader);
+            }
+
+            for (int i = 0; i < scans.size(); i++) {
+                try {
+                    results.add(scans.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("Failed to verify partition at " + partitionDirectories.get(i) + ": " + e.getCause());
+                    inconsistentLog = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted the verification of the partitions");
+            inconsistentLog = true;
+        }
+        final var wallClockMillis = System.currentTimeMillis() - startTime;
+
+        try {
+            actorScheduler.stop().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Failed to stop the actor scheduler: " + e.getCause());
+        }
+
+        inconsistentLog |= printSummary(results, wallClockMillis);
+        return inconsistentLog;
+    }
+
+    /**
+     * Scans the segments of all partitions directly, without opening the logs. Up to {@code parallelism}
+     * segments are scanned at the same time, by default one per processor. The segments of a partition
+     * are stitched together after all of them are scanned. With a checkpoint directory, only the segments
+     * which changed since the last run are read.
+     */
+    private static boolean scanPartitions(List<File> partitionDirectories, int parallelism, File checkpointDirectory, boolean deepValidation, boolean collectStatistics, List<ScanResult> results) {
+        final var partitionScans = new ArrayList<RawPartitionScan>();
+        final var segmentScanners = new ArrayList<List<SegmentScanner>>();
+        int segmentCount = 0;
+        for (var partitionDir : partitionDirectories) {
+            final var partitionScan = new RawPartitionScan(partitionDir, "raft-partition", checkpointDirectory, deepValidation, collectStatistics);
+            final List<SegmentScanner> scanners;
+            try {
+                scanners = partitionScan.segmentScanners();
+            } catch (IOException e) {
+                System.err.println("Failed to read the checkpoint of partition at " + partitionDir + ": " + e);
+                return true;
+            }
+            partitionScans.add(partitionScan);
+            segmentScanners.add(scanners);
+            segmentCount += scanners.size();
+        }
+
+        if (parallelism == 0)
+        {
+            parallelism = Math.max(1, Math.min(segmentCount, Runtime.getRuntime().availableProcessors()));
+        }
+
+        System.out.println("Scan " + segmentCount + " segments of " + partitionDirectories.size() + " partitions with parallelism " + parallelism);
+        final var startTime = System.currentTimeMillis();
+
+        final var executor = Executors.newFixedThreadPool(parallelism);
+        final var scans = new ArrayList<List<Future<SegmentScanner.Result>>>();
+        for (var scanners : segmentScanners) {
+            final var segmentScans = new ArrayList<Future<SegmentScanner.Result>>();
+            for (var scanner : scanners) {
+                segmentScans.add(executor.submit(scanner));
+            }
+            scans.add(segmentScans);
+        }
+
         boolean inconsistentLog = false;
+        for (int i = 0; i < partitionScans.size(); i++) {
+            final var partitionScan = partitionScans.get(i);
+            final var segments = new ArrayList<SegmentScanner.Result>();
+            try {
+                for (var segmentScan : scans.get(i)) {
+                    segments.add(segmentScan.get());
+                }
+                results.add(partitionScan.stitch(segments, System.currentTimeMillis() - startTime));
+            } catch (IOException | InterruptedException | ExecutionException e) {
+                System.err.println("Failed to scan partition at " + partitionDirectories.get(i) + ": " + (e instanceof ExecutionException ? e.getCause() : e));
+                inconsistentLog = true;
+            }
+        }
+        final var wallClockMillis = System.currentTimeMillis() - startTime;
+
+        executor.shutdown();
+
+        inconsistentLog |= printSummary(results, wallClockMillis);
+        return inconsistentLog;
+    }
+
+    /**
+     * Finds the record at or after the position in each partition, without opening the logs. With a
+     * checkpoint directory, the segment indexes written by the raw scan are used to skip most entries.
+     */
+    private static void locatePosition(List<File> partitionDirectories, File checkpointDirectory, long position) {
+        for (var partitionDir : partitionDirectories) {
+            final var outputPrefix = "[Partition " + partitionDir.getName() + "] ";
+            final var startTime = System.currentTimeMillis();
+            try (final var reader = new RawLogReader(partitionDir, "raft-partition", checkpointDirectory)) {
+                reader.open();
+                final var openMillis = System.currentTimeMillis() - startTime;
+
+                final var output = new StringBuilder(outputPrefix);
+                if (reader.seek(position)) {
+                    final var recordOffset = reader.recordOffset(position);
+                    output.append("Position ").append(position).append(" is at or before the record at position ")
+                        .append(LogEntryDescriptor.getPosition(reader.buffer(), recordOffset));
+                    output.append('\n').append(outputPrefix).append("Segment ").append(reader.segmentId())
+                        .append(" (").append(reader.segmentFile().getName()).append("), entry index ").append(reader.entryIndex())
+                        .append(" at offset ").append(reader.entryOffset()).append(", record at offset ").append(recordOffset);
+                }
+                else
+                {
+                    output.append("No record at or after position ").append(position);
+                }
+                output.append('\n').append(outputPrefix).append("Opened ").append(reader.getSegmentCount())
+                    .append(" segments in ").append(openMillis).append(" ms, located in ")
+                    .append(System.currentTimeMillis() - startTime - openMillis).append(" ms");
+                System.out.println(output);
+            } catch (IOException e) {
+                System.err.println("Failed to locate position " + position + " in partition at " + partitionDir + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Extracts the entries of the position range of each partition into a data folder with the same
+     * layout, so the checker and the inspector can be run on it. The indexes of the extracted
+     * segments are written into its index directory, which can be used as checkpoint directory.
+     *
+     * @return false if the extraction of a partition failed
+     */
+    private static boolean extractPositions(List<File> partitionDirectories, File checkpointDirectory, long fromPosition, long toPosition, File extractDirectory) {
+        final var outputPartitionsFolder = new File(String.format(PARTITIONS_DIRECTORY_FORMAT, extractDirectory, "raft-partition"));
+        final var outputIndexDirectory = new File(extractDirectory, EXTRACT_INDEX_DIRECTORY);
+        boolean extracted = true;
         for (var partitionDir : partitionDirectories) {
-            System.out.println("Verify partition at " + partitionDir);
-            final var logReader = new LogReader(actorScheduler,
-                pathToDataFolder,
-                "raft-partition", Integer.parseInt(partitionDir.getName()));
-            actorScheduler.submitActor(logReader).join();
+            final var outputPrefix = "[Partition " + partitionDir.getName() + "] ";
+            final var startTime = System.currentTimeMillis();
+            try {
+                final var extractor = new LogExtractor(partitionDir, "raft-partition", checkpointDirectory);
+                final var segments = extractor.extract(fromPosition, toPosition, new File(outputPartitionsFolder, partitionDir.getName()), outputIndexDirectory);
 
-            inconsistentLog |= logReader.scan().join();
+                final var output = new StringBuilder(outputPrefix);
+                if (segments.isEmpty())
+                {
+                    output.append("No records from position ").append(fromPosition).append(" to ").append(toPosition);
+                }
+                long entries = 0;
+                long bytes = 0;
+                for (var segment : segments)
+                {
+                    output.append(segment == segments.get(0) ? "" : "\n" + outputPrefix)
+                        .append("Extracted ").append(segment.getEntries()).append(" entries from index ").append(segment.getFirstIndex())
+                        .append(" of segment ").append(segment.getSourceId()).append(", positions ").append(segment.getFirstPosition())
+                        .append(" to ").append(segment.getLastPosition()).append(", into ").append(segment.getFile());
+                    entries += segment.getEntries();
+                    bytes += segment.getBytes();
+                }
+                output.append('\n').append(outputPrefix).append(String.format("Extracted %d entries, %.1f MB, in %d ms",
+                    entries, toMegabytes(bytes), System.currentTimeMillis() - startTime));
+                System.out.println(output);
+            } catch (IOException e) {
+                System.err.println("Failed to extract the positions " + fromPosition + " to " + toPosition + " of partition at " + partitionDir + ": " + e);
+                extracted = false;
+            }
         }
+        return extracted;
+    }
+
+    private static boolean printSummary(List<ScanResult> results, long wallClockMillis) {
+        boolean inconsistentLog = false;
+        results.sort(Comparator.comparingInt(ScanResult::getPartitionId));
+        long events = 0;
+        long bytes = 0;
+        System.out.println();
+        System.out.println(String.format("%-10s %-13s %12s %12s %10s %10s %12s", "Partition", "Result", "Events", "Invalid", "Open ms", "Scan ms", "Scanned MB"));
+        for (var result : results) {
+            inconsistentLog |= result.isInconsistentLog();
+
+            final var scannedBytes = result.getScannedBytes();
+            events += result.getEventCount();
+            bytes += scannedBytes;
+
+            System.out.println(String.format("%-10d %-13s %12d %12d %10d %10d %12.1f",
+                result.getPartitionId(),
+                result.isInconsistentLog() ? "INCONSISTENT" : "CONSISTENT",
+                result.getEventCount(),
+                result.getInvalidRecords(),
+                result.getOpenMillis(),
+                result.getScanMillis(),
+                toMegabytes(scannedBytes)));
+        }
+
+        final var seconds = Math.max(wallClockMillis, 1) / 1000.0;
+        System.out.println(String.format("Verified %d partitions in %d ms: %d events (%.0f events/s), %.1f MB (%.1f MB/s)",
+            results.size(),
+            wallClockMillis,
+            events,
+            events / seconds,
+            toMegabytes(bytes),
+            toMegabytes(bytes) / seconds));
+
         return inconsistentLog;
     }
 
+    /**
+     * Writes the statistics of all partitions as one JSON document, to the file or to the standard
+     * output for {@code -}.
+     */
+    private static void writeStatistics(List<ScanResult> results, File statisticsFile) throws IOException {
+        final var json = new StringBuilder("{\"partitions\":[");
+        for (var result : results) {
+            if (result.getStatistics() == null) {
+                continue;
+            }
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            result.getStatistics().writeJson(json, result.getPartitionId());
+        }
+        json.append("]}");
+
+        if (statisticsFile.getPath().equals("-")) {
+            System.out.println(json);
+        } else {
+            Files.writeString(statisticsFile.toPath(), json, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static double toMegabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static boolean isLong(String string) {
+        try {
+            Long.parseLong(string);
+            return true;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
     private static boolean isInteger(String string) {
         try {
             Integer.parseInt(string);
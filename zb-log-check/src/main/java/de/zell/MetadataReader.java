@@ -0,0 +1,50 @@
+package de.zell;
+
+import io.zeebe.logstreams.log.LoggedEvent;
+import io.zeebe.protocol.record.MessageHeaderDecoder;
+import io.zeebe.protocol.record.RecordMetadataDecoder;
+import io.zeebe.protocol.record.RecordType;
+import io.zeebe.protocol.record.ValueType;
+
+/** Decodes the metadata of records in place, with the same decoders for all records. */
+final class MetadataReader {
+
+  private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+  private final RecordMetadataDecoder metadataDecoder = new RecordMetadataDecoder();
+
+  /** @return true if the record has metadata which can be decoded */
+  boolean wrap(LoggedEvent event) {
+    final var metadataLength = event.getMetadataLength();
+    if (metadataLength < MessageHeaderDecoder.ENCODED_LENGTH) {
+      return false;
+    }
+
+    final var buffer = event.getMetadata();
+    final var offset = event.getMetadataOffset();
+    headerDecoder.wrap(buffer, offset);
+    if (headerDecoder.schemaId() != RecordMetadataDecoder.SCHEMA_ID
+        || headerDecoder.templateId() != RecordMetadataDecoder.TEMPLATE_ID
+        || headerDecoder.encodedLength() + headerDecoder.blockLength() > metadataLength) {
+      return false;
+    }
+
+    metadataDecoder.wrap(
+        buffer,
+        offset + headerDecoder.encodedLength(),
+        headerDecoder.blockLength(),
+        headerDecoder.version());
+    return true;
+  }
+
+  RecordType recordType() {
+    return metadataDecoder.recordType();
+  }
+
+  ValueType valueType() {
+    return metadataDecoder.valueType();
+  }
+
+  short intent() {
+    return metadataDecoder.intent();
+  }
+}
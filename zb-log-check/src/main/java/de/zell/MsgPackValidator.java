@@ -0,0 +1,164 @@
+package de.zell;
+
+import java.nio.ByteOrder;
+import org.agrona.DirectBuffer;
+
+/**
+ * Checks that a buffer contains one well-formed MessagePack document, without decoding its values:
+ * the formats and lengths are walked in place, so no objects are created. Nested maps and arrays are
+ * tracked as the number of values which are still pending.
+ */
+final class MsgPackValidator {
+
+  static final int MALFORMED = -1;
+
+  private MsgPackValidator() {}
+
+  /** @return true if the buffer contains exactly one map, like the value of a record */
+  static boolean isDocument(DirectBuffer buffer, int offset, int length) {
+    if (length <= 0) {
+      return false;
+    }
+
+    final var format = buffer.getByte(offset) & 0xFF;
+    final var isMap = (format >= 0x80 && format <= 0x8F) || format == 0xDE || format == 0xDF;
+    return isMap && skipValue(buffer, offset, offset + length) == offset + length;
+  }
+
+  /** @return the offset after the value at the offset, or {@link #MALFORMED} */
+  static int skipValue(DirectBuffer buffer, int offset, int limit) {
+    var current = offset;
+    long pendingValues = 1;
+
+    while (pendingValues > 0) {
+      if (current >= limit) {
+        return MALFORMED;
+      }
+
+      final var format = buffer.getByte(current) & 0xFF;
+      current++;
+      pendingValues--;
+
+      // the value is either skipped, or its length is the number of array elements or map entries
+      long skip = 0;
+      var lengthBytes = 0;
+      var valuesPerLength = 0;
+      if (format <= 0x7F || format >= 0xE0) {
+        // positive or negative fixint
+      } else if (format <= 0x8F) {
+        pendingValues += 2L * (format & 0x0F);
+      } else if (format <= 0x9F) {
+        pendingValues += format & 0x0F;
+      } else if (format <= 0xBF) {
+        skip = format & 0x1F;
+      } else {
+        switch (format) {
+          case 0xC0: // nil
+          case 0xC2: // false
+          case 0xC3: // true
+            break;
+          case 0xC4: // bin 8
+          case 0xD9: // str 8
+            lengthBytes = 1;
+            break;
+          case 0xC5: // bin 16
+          case 0xDA: // str 16
+            lengthBytes = 2;
+            break;
+          case 0xC6: // bin 32
+          case 0xDB: // str 32
+            lengthBytes = 4;
+            break;
+          case 0xC7: // ext 8, 16 and 32, followed by the type
+            lengthBytes = 1;
+            skip = 1;
+            break;
+          case 0xC8:
+            lengthBytes = 2;
+            skip = 1;
+            break;
+          case 0xC9:
+            lengthBytes = 4;
+            skip = 1;
+            break;
+          case 0xCC: // uint 8
+          case 0xD0: // int 8
+            skip = 1;
+            break;
+          case 0xCD: // uint 16
+          case 0xD1: // int 16
+            skip = 2;
+            break;
+          case 0xCA: // float 32
+          case 0xCE: // uint 32
+          case 0xD2: // int 32
+            skip = 4;
+            break;
+          case 0xCB: // float 64
+          case 0xCF: // uint 64
+          case 0xD3: // int 64
+            skip = 8;
+            break;
+          case 0xD4: // fixext 1, 2, 4, 8 and 16, followed by the type
+          case 0xD5:
+          case 0xD6:
+          case 0xD7:
+          case 0xD8:
+            skip = (1 << (format - 0xD4)) + 1;
+            break;
+          case 0xDC: // array 16 and 32
+            lengthBytes = 2;
+            valuesPerLength = 1;
+            break;
+          case 0xDD:
+            lengthBytes = 4;
+            valuesPerLength = 1;
+            break;
+          case 0xDE: // map 16 and 32
+            lengthBytes = 2;
+            valuesPerLength = 2;
+            break;
+          case 0xDF:
+            lengthBytes = 4;
+            valuesPerLength = 2;
+            break;
+          default: // 0xC1 is never used
+            return MALFORMED;
+        }
+      }
+
+      if (lengthBytes > 0) {
+        if (current + lengthBytes > limit) {
+          return MALFORMED;
+        }
+
+        final var length = readLength(buffer, current, lengthBytes);
+        current += lengthBytes;
+        if (valuesPerLength > 0) {
+          pendingValues += valuesPerLength * length;
+        } else {
+          skip += length;
+        }
+      }
+
+      // each pending value takes at least one byte
+      if (current + skip > limit || pendingValues > limit - current - skip) {
+        return MALFORMED;
+      }
+      current += (int) skip;
+    }
+
+    return current;
+  }
+
+  private static long readLength(DirectBuffer buffer, int offset, int bytes) {
+    switch (bytes) {
+      case 1:
+        return buffer.getByte(offset) & 0xFFL;
+      case 2:
+        return buffer.getShort(offset, ByteOrder.BIG_ENDIAN) & 0xFFFFL;
+      default:
+        return buffer.getInt(offset, ByteOrder.BIG_ENDIAN) & 0xFFFF_FFFFL;
+    }
+  }
+}
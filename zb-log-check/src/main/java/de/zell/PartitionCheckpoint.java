@@ -0,0 +1,152 @@
+package de.zell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of the last scan of a partition's segments, so a later scan only needs to read the
+ * new or changed segments. The checkpoint is a text file with one line per segment: where its scan
+ * ended, the last modified time and length of its file, and the state of its validation.
+ */
+final class PartitionCheckpoint {
+
+  private static final String FILE_NAME_FORMAT = "partition-%d.checkpoint";
+  private static final String COMMENT = "#";
+  private static final int FIELD_COUNT = 22;
+
+  private final File file;
+
+  PartitionCheckpoint(File checkpointDirectory, int partitionId) {
+    this.file = new File(checkpointDirectory, String.format(FILE_NAME_FORMAT, partitionId));
+  }
+
+  /** @return the results of the last scan by segment file name, empty if there is no checkpoint */
+  Map<String, SegmentScanner.Result> read(String outputPrefix) throws IOException {
+    final var results = new HashMap<String, SegmentScanner.Result>();
+    if (!file.exists()) {
+      return results;
+    }
+
+    for (var line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+      if (line.isBlank() || line.startsWith(COMMENT)) {
+        continue;
+      }
+
+      final var fields = line.split(" ");
+      if (fields.length != FIELD_COUNT) {
+        // written by another version, the segments are scanned again
+        System.out.println(
+            outputPrefix + "Ignore checkpoint " + file + ", expected " + FIELD_COUNT
+                + " fields per segment but got: " + line);
+        return new HashMap<>();
+      }
+
+      var i = 0;
+      final var fileName = fields[i++];
+      final var segmentId = Long.parseLong(fields[i++]);
+      final var segmentPrefix = outputPrefix + "[Segment " + segmentId + "] ";
+      final var validation = new ValidationContext(segmentPrefix);
+      final var records = new RecordValidator(segmentPrefix);
+      final var result =
+          new SegmentScanner.Result(
+              fileName, segmentId, Long.parseLong(fields[i++]), validation, records);
+      result.lastModified = Long.parseLong(fields[i++]);
+      result.fileLength = Long.parseLong(fields[i++]);
+      result.entries = Long.parseLong(fields[i++]);
+      result.bytes = Long.parseLong(fields[i++]);
+      result.lastEntryOffset = Integer.parseInt(fields[i++]);
+      result.lastEntryChecksum = Integer.parseInt(fields[i++]);
+      result.endOffset = Integer.parseInt(fields[i++]);
+      result.invalidEntryOffset = Integer.parseInt(fields[i++]);
+      result.tornWrite = Boolean.parseBoolean(fields[i++]);
+      validation.low = Long.parseLong(fields[i++]);
+      validation.high = Long.parseLong(fields[i++]);
+      validation.firstPosition = Long.parseLong(fields[i++]);
+      validation.lastPosition = Long.parseLong(fields[i++]);
+      validation.eventCount = Long.parseLong(fields[i++]);
+      validation.inconsistentLog = Boolean.parseBoolean(fields[i++]);
+      result.deepValidation = Boolean.parseBoolean(fields[i++]);
+      result.firstTerm = Long.parseLong(fields[i++]);
+      result.lastTerm = Long.parseLong(fields[i++]);
+      final var violations = fields[i].split(",");
+      for (var violation : RecordValidator.Violation.values()) {
+        records.addViolations(violation, Long.parseLong(violations[violation.ordinal()]));
+      }
+
+      results.put(fileName, result);
+    }
+    return results;
+  }
+
+  /**
+   * Writes the results of the segments, replacing the previous checkpoint at once. The stitched
+   * result of the partition is only written as comment, since it is derived from the segments.
+   */
+  void write(List<SegmentScanner.Result> segments, ScanResult scanResult) throws IOException {
+    final var lines = new ArrayList<String>();
+    lines.add(
+        COMMENT + " partition " + scanResult.getPartitionId() + ", last position "
+            + scanResult.getLastPosition() + ", events " + scanResult.getEventCount()
+            + ", inconsistent " + scanResult.isInconsistentLog());
+    lines.add(
+        COMMENT + " file segment-id first-index last-modified file-length entries bytes"
+            + " last-entry-offset last-entry-checksum end-offset invalid-entry-offset"
+            + " torn-write low high first-position last-position events inconsistent"
+            + " deep-validation first-term last-term invalid-records");
+
+    for (var segment : segments) {
+      final var validation = segment.validation;
+      lines.add(
+          String.join(
+              " ",
+              segment.fileName,
+              String.valueOf(segment.segmentId),
+              String.valueOf(segment.firstIndex),
+              String.valueOf(segment.lastModified),
+              String.valueOf(segment.fileLength),
+              String.valueOf(segment.entries),
+              String.valueOf(segment.bytes),
+              String.valueOf(segment.lastEntryOffset),
+              String.valueOf(segment.lastEntryChecksum),
+              String.valueOf(segment.endOffset),
+              String.valueOf(segment.invalidEntryOffset),
+              String.valueOf(segment.tornWrite),
+              String.valueOf(validation.low),
+              String.valueOf(validation.high),
+              String.valueOf(validation.firstPosition),
+              String.valueOf(validation.lastPosition),
+              String.valueOf(validation.eventCount),
+              String.valueOf(validation.inconsistentLog),
+              String.valueOf(segment.deepValidation),
+              String.valueOf(segment.firstTerm),
+              String.valueOf(segment.lastTerm),
+              formatViolations(segment.records)));
+    }
+
+    final var temporaryFile = new File(file.getPath() + ".tmp");
+    Files.write(temporaryFile.toPath(), lines, StandardCharsets.UTF_8);
+    Files.move(
+        temporaryFile.toPath(),
+        file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String formatViolations(RecordValidator records) {
+    final var violations = new StringBuilder();
+    for (var violation : RecordValidator.Violation.values()) {
+      if (violations.length() > 0) {
+        violations.append(',');
+      }
+      violations.append(records.getViolations(violation));
+    }
+    return violations.toString();
+  }
+}
@@ -0,0 +1,341 @@
+package de.zell;
+
+import io.zeebe.logstreams.impl.log.LogEntryDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.agrona.UnsafeAccess;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reads the entries of a partition's segments from a given position, without the raft log. Unlike
+ * opening the raft log, which reads all segments to build their indexes, opening the reader only
+ * lists the segment files and reads their {@link SegmentIndex} sidecars, if there are any. A
+ * segment is only mapped when it is read, and the first position of a segment without index is
+ * only read when a seek needs it.
+ *
+ * <p>The entries are read like by the {@link SegmentScanner}, but without verifying the checksums:
+ * a segment ends at the first entry with an invalid length.
+ */
+final class RawLogReader implements AutoCloseable {
+
+  private static final long UNKNOWN_POSITION = -2;
+  private static final long NO_POSITION = -1;
+
+  private final File partitionDirectory;
+  private final String segmentFilePrefix;
+  private final File indexDirectory;
+  private final List<Segment> segments = new ArrayList<>();
+  private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+
+  private int segmentNumber = -1;
+  private MappedByteBuffer mappedSegment;
+  private long entryIndex;
+  private int entryOffset;
+  private int entryLength;
+
+  /** @param indexDirectory the directory of the segment indexes, or null to read without them */
+  RawLogReader(File partitionDirectory, String partitionName, File indexDirectory) {
+    this.partitionDirectory = partitionDirectory;
+    final var partitionId = Integer.parseInt(partitionDirectory.getName());
+    this.segmentFilePrefix =
+        String.format(LogReader.PARTITION_NAME_FORMAT, partitionName, partitionId) + "-";
+    this.indexDirectory = indexDirectory;
+  }
+
+  /** Lists the segments of the partition, in their order. */
+  void open() throws IOException {
+    final var segmentFiles =
+        partitionDirectory.listFiles(
+            (dir, name) ->
+                name.startsWith(segmentFilePrefix)
+                    && name.endsWith(SegmentScanner.SEGMENT_FILE_SUFFIX));
+    if (segmentFiles == null) {
+      return;
+    }
+
+    for (var segmentFile : segmentFiles) {
+      final var name = segmentFile.getName();
+      final var id =
+          name.substring(
+              segmentFilePrefix.length(),
+              name.length() - SegmentScanner.SEGMENT_FILE_SUFFIX.length());
+      try {
+        final var segment = new Segment(segmentFile, Long.parseLong(id));
+        if (indexDirectory != null) {
+          segment.index = SegmentIndex.read(indexDirectory, name);
+        }
+        segments.add(segment);
+      } catch (NumberFormatException e) {
+        // not a segment of the raft log
+      }
+    }
+    segments.sort(Comparator.comparingLong(segment -> segment.id));
+  }
+
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Moves the reader to the first entry with a record at or after the position. The search starts
+   * at the last segment which begins before the position, and within the segment at the last index
+   * sample before the position.
+   *
+   * @return false if the log doesn't contain a record at or after the position
+   */
+  boolean seek(long position) throws IOException {
+    if (segments.isEmpty()) {
+      return false;
+    }
+
+    var start = 0;
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      final var firstPosition = firstPosition(i);
+      if (firstPosition != NO_POSITION && firstPosition <= position) {
+        start = i;
+        break;
+      }
+    }
+
+    map(start);
+    seekInSegment(position);
+    do {
+      if (isZeebeEntry() && lastPosition() >= position) {
+        return true;
+      }
+    } while (nextEntry());
+    return false;
+  }
+
+  /**
+   * Moves the reader to the next entry, in the same or in the next segment.
+   *
+   * @return false if there is no further entry
+   */
+  boolean nextEntry() throws IOException {
+    if (segmentNumber < 0) {
+      return false;
+    }
+
+    if (readEntry(entryOffset + entryLength, entryIndex + 1)) {
+      return true;
+    }
+    while (segmentNumber + 1 < segments.size()) {
+      map(segmentNumber + 1);
+      if (readEntry(SegmentScanner.DESCRIPTOR_LENGTH, firstIndex())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  File segmentFile() {
+    return segments.get(segmentNumber).file;
+  }
+
+  long segmentId() {
+    return segments.get(segmentNumber).id;
+  }
+
+  /** @return the raft index of the current entry */
+  long entryIndex() {
+    return entryIndex;
+  }
+
+  /** @return the offset of the current entry in its segment file, including its header */
+  int entryOffset() {
+    return entryOffset;
+  }
+
+  /** @return the length of the current entry, including its length and checksum header */
+  int entryLength() {
+    return entryLength;
+  }
+
+  UnsafeBuffer buffer() {
+    return buffer;
+  }
+
+  boolean isZeebeEntry() {
+    return SegmentScanner.isZeebeEntry(
+        buffer,
+        entryOffset + SegmentScanner.ENTRY_HEADER_LENGTH,
+        entryLength - SegmentScanner.ENTRY_HEADER_LENGTH);
+  }
+
+  /** @return the offset of the first record of the current entry, which has to be a Zeebe entry */
+  int dataOffset() {
+    return entryOffset + SegmentScanner.ENTRY_HEADER_LENGTH + SegmentScanner.ZEEBE_ENTRY_DATA_OFFSET;
+  }
+
+  int dataLength() {
+    return buffer.getInt(
+        entryOffset + SegmentScanner.ENTRY_HEADER_LENGTH
+            + SegmentScanner.ZEEBE_ENTRY_DATA_LENGTH_OFFSET,
+        ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * @return the offset of the first record of the current entry at or after the position, or -1 if
+   *     there is none
+   */
+  int recordOffset(long position) {
+    final var dataEnd = dataOffset() + dataLength();
+    var offset = dataOffset();
+    while (offset < dataEnd) {
+      final var fragmentLength = LogEntryDescriptor.getFragmentLength(buffer, offset);
+      if (fragmentLength <= 0) {
+        break;
+      }
+      if (LogEntryDescriptor.getPosition(buffer, offset) >= position) {
+        return offset;
+      }
+      offset += fragmentLength;
+    }
+    return -1;
+  }
+
+  /** @return the position of the last record of the current entry, -1 if it has no records */
+  long lastPosition() {
+    final var dataEnd = dataOffset() + dataLength();
+    long lastPosition = NO_POSITION;
+    var offset = dataOffset();
+    while (offset < dataEnd) {
+      final var fragmentLength = LogEntryDescriptor.getFragmentLength(buffer, offset);
+      if (fragmentLength <= 0) {
+        break;
+      }
+      lastPosition = LogEntryDescriptor.getPosition(buffer, offset);
+      offset += fragmentLength;
+    }
+    return lastPosition;
+  }
+
+  @Override
+  public void close() {
+    unmap();
+    segmentNumber = -1;
+  }
+
+  /** Positions the reader at the last index sample before the position, if it is still valid. */
+  private void seekInSegment(long position) {
+    final var index = segments.get(segmentNumber).index;
+    if (index != null && index.segmentId == segmentId()) {
+      final var sample = index.floorSample(position);
+      if (sample >= 0
+          && readEntry(index.sampleOffset(sample), index.sampleIndex(sample))
+          && isZeebeEntry()
+          && dataLength() > 0
+          && LogEntryDescriptor.getPosition(buffer, dataOffset()) == index.samplePosition(sample)) {
+        return;
+      }
+    }
+
+    if (!readEntry(SegmentScanner.DESCRIPTOR_LENGTH, firstIndex())) {
+      // an empty segment, the next entry is in the next segment
+      entryLength = 0;
+      entryOffset = buffer.capacity();
+    }
+  }
+
+  /**
+   * @return the position of the first record in the segment, from its index if there is one, or
+   *     -1 if the segment has no records
+   */
+  private long firstPosition(int segmentNumber) throws IOException {
+    final var segment = segments.get(segmentNumber);
+    if (segment.firstPosition != UNKNOWN_POSITION) {
+      return segment.firstPosition;
+    }
+
+    if (segment.index != null && segment.index.entries > 0) {
+      segment.firstPosition = segment.index.firstPosition;
+      return segment.firstPosition;
+    }
+
+    segment.firstPosition = NO_POSITION;
+    map(segmentNumber);
+    if (readEntry(SegmentScanner.DESCRIPTOR_LENGTH, firstIndex())) {
+      do {
+        if (isZeebeEntry() && dataLength() > 0) {
+          segment.firstPosition = LogEntryDescriptor.getPosition(buffer, dataOffset());
+          break;
+        }
+      } while (readEntry(entryOffset + entryLength, entryIndex + 1));
+    }
+    return segment.firstPosition;
+  }
+
+  /** @return true if there is a valid entry at the offset, which is then the current entry */
+  private boolean readEntry(int offset, long index) {
+    if (offset + SegmentScanner.ENTRY_HEADER_LENGTH > buffer.capacity()) {
+      return false;
+    }
+
+    final var length = buffer.getInt(offset, ByteOrder.BIG_ENDIAN);
+    if (length <= 0
+        || length > SegmentScanner.MAX_ENTRY_SIZE
+        || offset + SegmentScanner.ENTRY_HEADER_LENGTH + length > buffer.capacity()) {
+      return false;
+    }
+
+    entryOffset = offset;
+    entryLength = SegmentScanner.ENTRY_HEADER_LENGTH + length;
+    entryIndex = index;
+    return true;
+  }
+
+  private long firstIndex() {
+    return buffer.getLong(SegmentScanner.DESCRIPTOR_INDEX_OFFSET, ByteOrder.BIG_ENDIAN);
+  }
+
+  private void map(int segmentNumber) throws IOException {
+    if (this.segmentNumber == segmentNumber) {
+      return;
+    }
+
+    unmap();
+    final var segmentFile = segments.get(segmentNumber).file;
+    try (final var channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(
+            "Expected segment " + segmentFile + " to be smaller than 2 GB, but has " + channel.size()
+                + " bytes");
+      }
+      mappedSegment = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.wrap(mappedSegment);
+    this.segmentNumber = segmentNumber;
+    entryOffset = SegmentScanner.DESCRIPTOR_LENGTH;
+    entryLength = 0;
+  }
+
+  private void unmap() {
+    if (mappedSegment != null) {
+      buffer.wrap(0, 0);
+      UnsafeAccess.UNSAFE.invokeCleaner(mappedSegment);
+      mappedSegment = null;
+    }
+  }
+
+  private static final class Segment {
+
+    private final File file;
+    private final long id;
+    private SegmentIndex index;
+    private long firstPosition = UNKNOWN_POSITION;
+
+    private Segment(File file, long id) {
+      this.file = file;
+      this.id = id;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package de.zell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verifies the log of a partition with a {@link SegmentScanner} per segment. The segments are
+ * independent of each other, so they can be scanned in parallel. Afterwards, the results are
+ * stitched together in the order of the segments, which only checks the positions at the
+ * boundaries of the segments.
+ *
+ * <p>With a checkpoint, only the segments which changed since the last scan are read, see {@link
+ * SegmentScanner}. The checkpoint is updated after the segments are stitched together, together
+ * with the {@link SegmentIndex} of each segment which was scanned.
+ */
+final class RawPartitionScan {
+
+  private final int partitionId;
+  private final File partitionDirectory;
+  private final String segmentFilePrefix;
+  private final String outputPrefix;
+  private final PartitionCheckpoint checkpoint;
+  private final File checkpointDirectory;
+  private final boolean deepValidation;
+  private final boolean collectStatistics;
+
+  RawPartitionScan(
+      File partitionDirectory,
+      String partitionName,
+      File checkpointDirectory,
+      boolean deepValidation,
+      boolean collectStatistics) {
+    this.partitionDirectory = partitionDirectory;
+    this.partitionId = Integer.parseInt(partitionDirectory.getName());
+    // the segments are named like the raft log: <partition name>-<segment id>.log
+    this.segmentFilePrefix =
+        String.format(LogReader.PARTITION_NAME_FORMAT, partitionName, partitionId) + "-";
+    this.outputPrefix = "[Partition " + partitionId + "] ";
+    this.checkpoint =
+        checkpointDirectory == null
+            ? null
+            : new PartitionCheckpoint(checkpointDirectory, partitionId);
+    this.checkpointDirectory = checkpointDirectory;
+    this.deepValidation = deepValidation;
+    this.collectStatistics = collectStatistics;
+  }
+
+  List<SegmentScanner> segmentScanners() throws IOException {
+    final var segmentFiles =
+        partitionDirectory.listFiles(
+            (dir, name) ->
+                name.startsWith(segmentFilePrefix)
+                    && name.endsWith(SegmentScanner.SEGMENT_FILE_SUFFIX));
+    if (segmentFiles == null) {
+      return List.of();
+    }
+
+    final var previousResults =
+        checkpoint == null
+            ? Map.<String, SegmentScanner.Result>of()
+            : checkpoint.read(outputPrefix);
+
+    final var scanners = new ArrayList<SegmentScanner>();
+    for (var segmentFile : segmentFiles) {
+      scanners.add(
+          new SegmentScanner(
+              segmentFile,
+              outputPrefix,
+              previousResults.get(segmentFile.getName()),
+              deepValidation,
+              collectStatistics,
+              checkpointDirectory));
+    }
+    return scanners;
+  }
+
+  ScanResult stitch(List<SegmentScanner.Result> segments, long scanMillis) throws IOException {
+    final var orderedSegments = new ArrayList<>(segments);
+    orderedSegments.sort(Comparator.comparingLong(segment -> segment.segmentId));
+
+    final var validationContext = new ValidationContext(outputPrefix);
+    final var records = new RecordValidator(outputPrefix);
+    final var statistics = collectStatistics ? new LogStatistics() : null;
+    final var scans = new EnumMap<SegmentScanner.Scan, Integer>(SegmentScanner.Scan.class);
+    verifyEntries(orderedSegments, records, validationContext);
+
+    long scannedBytes = 0;
+    SegmentScanner.Result previous = null;
+    for (var segment : orderedSegments) {
+      scans.merge(segment.scan, 1, Integer::sum);
+      scannedBytes += segment.scannedBytes;
+      if (deepValidation && previous != null && previous.lastTerm > segment.firstTerm
+          && segment.firstTerm > 0) {
+        records.onViolation(
+            RecordValidator.Violation.TERM,
+            segment.validation.firstPosition,
+            "segment " + segment.segmentId + " starts with term " + segment.firstTerm
+                + ", but the previous segment ends with term " + previous.lastTerm);
+      }
+
+      validationContext.append(segment.validation);
+      records.append(segment.records);
+      if (statistics != null) {
+        statistics.append(segment.statistics);
+      }
+      previous = segment;
+    }
+
+    if (checkpoint != null) {
+      System.out.println(
+          outputPrefix + "Segments unchanged: " + scans.getOrDefault(SegmentScanner.Scan.UNCHANGED, 0)
+              + ", resumed: " + scans.getOrDefault(SegmentScanner.Scan.RESUMED, 0)
+              + ", fully scanned: " + scans.getOrDefault(SegmentScanner.Scan.FULL, 0));
+    }
+
+    validationContext.finishValidation();
+    final var invalidRecords = records.getViolationCount();
+    if (deepValidation) {
+      records.finishValidation();
+    }
+
+    final var scanResult = new ScanResult(
+        partitionId,
+        validationContext.inconsistentLog || invalidRecords > 0,
+        validationContext.eventCount,
+        scannedBytes,
+        invalidRecords,
+        validationContext.low,
+        validationContext.high,
+        validationContext.lastPosition,
+        0,
+        scanMillis);
+    scanResult.setStatistics(statistics);
+
+    if (checkpoint != null) {
+      writeIndexes(orderedSegments);
+      checkpoint.write(orderedSegments, scanResult);
+    }
+    return scanResult;
+  }
+
+  /**
+   * Verifies that the segments contain all entries of the log: the raft indexes of a segment have
+   * to continue the indexes of the previous segment, and no segment may have an invalid entry. The
+   * journal stops reading a segment at an invalid entry, so the entries after it would be missing
+   * silently. Only the last entry of the log may be invalid, if nothing but zeros follow it: it is
+   * a torn write of the last append, which the journal truncates too. A violation marks the log as
+   * inconsistent.
+   *
+   * @param orderedSegments the scanned segments, in the order of their ids
+   */
+  void verifyEntries(
+      List<SegmentScanner.Result> orderedSegments,
+      RecordValidator records,
+      ValidationContext validation) {
+    SegmentScanner.Result previous = null;
+    for (int i = 0; i < orderedSegments.size(); i++) {
+      final var segment = orderedSegments.get(i);
+      if (previous != null && previous.firstIndex + previous.entries != segment.firstIndex) {
+        records.onViolation(
+            RecordValidator.Violation.INDEX_GAP,
+            "segment " + segment.segmentId + " starts at index " + segment.firstIndex
+                + ", but the previous segment ends at index "
+                + (previous.firstIndex + previous.entries - 1));
+        validation.inconsistentLog = true;
+      }
+
+      if (segment.invalidEntryOffset != SegmentScanner.NO_INVALID_ENTRY) {
+        final var description =
+            "segment " + segment.segmentId + " has an invalid entry at offset "
+                + segment.invalidEntryOffset + ", after " + segment.entries + " entries";
+        if (segment.tornWrite && i == orderedSegments.size() - 1) {
+          System.out.println(outputPrefix + "Ignore a torn write: " + description);
+        } else {
+          records.onViolation(RecordValidator.Violation.CHECKSUM, description);
+          validation.inconsistentLog = true;
+        }
+      }
+      previous = segment;
+    }
+  }
+
+  /** Writes the indexes of the scanned segments, before the checkpoint which refers to them. */
+  private void writeIndexes(List<SegmentScanner.Result> segments) throws IOException {
+    for (var segment : segments) {
+      final var index = segment.index;
+      if (segment.scan == SegmentScanner.Scan.UNCHANGED || index == null) {
+        continue;
+      }
+
+      index.entries = segment.entries;
+      index.firstPosition = segment.validation.firstPosition;
+      index.lastPosition = segment.validation.lastPosition;
+      index.write(checkpointDirectory, segment.fileName);
+    }
+  }
+
+  int getPartitionId() {
+    return partitionId;
+  }
+}
@@ -0,0 +1,138 @@
+package de.zell;
+
+import io.zeebe.logstreams.log.LoggedEvent;
+import io.zeebe.protocol.record.RecordType;
+import io.zeebe.protocol.record.ValueType;
+import io.zeebe.protocol.record.intent.Intent;
+
+/**
+ * Validates the content of the records, in addition to their positions: the metadata has to decode
+ * to a known record type, value type and intent, the value has to be a well-formed MessagePack
+ * document, and the source record has to be written before the record. The decoders are reused for
+ * all records, only a reported violation creates objects.
+ *
+ * <p>The violations of the entries which contain the records are counted here too, like an invalid
+ * checksum or a gap between the raft indexes, see {@link RawPartitionScan#verifyEntries}.
+ */
+final class RecordValidator {
+
+  private static final int MAX_REPORTED_VIOLATIONS = 10;
+  private static final long NO_SOURCE_POSITION = -1;
+
+  enum Violation {
+    METADATA,
+    VALUE,
+    SOURCE_POSITION,
+    ENTRY_POSITIONS,
+    TERM,
+    CHECKSUM,
+    INDEX_GAP
+  }
+
+  private final String outputPrefix;
+  private final MetadataReader metadataReader = new MetadataReader();
+  private final long[] violations = new long[Violation.values().length];
+  private int reportedViolations;
+
+  RecordValidator(String outputPrefix) {
+    this.outputPrefix = outputPrefix;
+  }
+
+  void validate(LoggedEvent event) {
+    final var position = event.getPosition();
+
+    if (!hasValidMetadata(event)) {
+      onViolation(Violation.METADATA, position, "the metadata can't be decoded");
+    }
+
+    if (!MsgPackValidator.isDocument(
+        event.getValueBuffer(), event.getValueOffset(), event.getValueLength())) {
+      onViolation(Violation.VALUE, position, "the value is not a MessagePack document");
+    }
+
+    final var sourcePosition = event.getSourceEventPosition();
+    if (sourcePosition != NO_SOURCE_POSITION && (sourcePosition < 0 || sourcePosition >= position)) {
+      onViolation(
+          Violation.SOURCE_POSITION,
+          position,
+          "the source position " + sourcePosition + " doesn't point backwards");
+    }
+  }
+
+  private boolean hasValidMetadata(LoggedEvent event) {
+    if (!metadataReader.wrap(event)) {
+      return false;
+    }
+
+    final var recordType = metadataReader.recordType();
+    final var valueType = metadataReader.valueType();
+    if (recordType == RecordType.NULL_VAL
+        || recordType == RecordType.SBE_UNKNOWN
+        || valueType == ValueType.NULL_VAL
+        || valueType == ValueType.SBE_UNKNOWN) {
+      return false;
+    }
+
+    try {
+      return Intent.fromProtocolValue(valueType, metadataReader.intent()) != Intent.UNKNOWN;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  void onViolation(Violation violation, long position, String description) {
+    violations[violation.ordinal()]++;
+
+    if (reportedViolations < MAX_REPORTED_VIOLATIONS) {
+      reportedViolations++;
+      System.out.println(
+          outputPrefix + "Invalid record at position " + position + ": " + description);
+    }
+  }
+
+  /** Counts a violation of the entries of the log, which doesn't belong to a record. */
+  void onViolation(Violation violation, String description) {
+    violations[violation.ordinal()]++;
+
+    if (reportedViolations < MAX_REPORTED_VIOLATIONS) {
+      reportedViolations++;
+      System.out.println(outputPrefix + "Invalid log: " + description);
+    }
+  }
+
+  long getViolationCount() {
+    long count = 0;
+    for (var violationCount : violations) {
+      count += violationCount;
+    }
+    return count;
+  }
+
+  /** Adds the violations of the validated part which follows, see {@link ValidationContext#append}. */
+  void append(RecordValidator next) {
+    for (int i = 0; i < violations.length; i++) {
+      violations[i] += next.violations[i];
+    }
+  }
+
+  void addViolations(Violation violation, long count) {
+    violations[violation.ordinal()] += count;
+  }
+
+  long getViolations(Violation violation) {
+    return violations[violation.ordinal()];
+  }
+
+  void finishValidation() {
+    final var output = new StringBuilder(outputPrefix).append("Invalid records: ");
+    output.append(getViolationCount());
+    for (var violation : Violation.values()) {
+      output
+          .append(", ")
+          .append(violation.name().toLowerCase().replace('_', ' '))
+          .append(": ")
+          .append(violations[violation.ordinal()]);
+    }
+    System.out.println(output);
+  }
+}
@@ -0,0 +1,229 @@
+package de.zell;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.NavigableMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts the events and bytes of a log scan, and reports the progress: periodically as a line on
+ * the output, and as JMX bean for monitoring tools. The counters are only updated by the scanning
+ * thread; every {@link #PUBLISH_INTERVAL_EVENTS} events they are published to the volatile fields
+ * which are read by JMX, so the scan doesn't pay for a memory barrier per event.
+ *
+ * <p>The progress is estimated from the address of the last read entry, relative to the first and
+ * the last entry of the log when the scan started. The address is the raft index of the entry, so
+ * its segment is the last segment which starts at or before it.
+ */
+final class ScanMetrics implements ScanMetricsMBean {
+
+  private static final String OBJECT_NAME_FORMAT = "de.zell:type=LogScan,partition=%d";
+  private static final int PUBLISH_INTERVAL_EVENTS = 1024;
+  private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+  private final int partitionId;
+  private final String outputPrefix;
+  private final long reportIntervalMillis;
+  private ObjectName objectName;
+
+  // only accessed by the scanning thread
+  private long events;
+  private long bytes;
+  private long firstAddress;
+  private long lastAddress;
+  private long startMillis;
+  private long nextReportMillis;
+  private NavigableMap<Long, Long> segmentIds = Collections.emptyNavigableMap();
+
+  private volatile long publishedEvents;
+  private volatile long publishedBytes;
+  private volatile long lastPosition;
+  private volatile long segmentId = -1;
+  private volatile double progressPercent;
+  private volatile double eventsPerSecond;
+  private volatile double megabytesPerSecond;
+  private volatile long etaSeconds = -1;
+  private volatile long openMillis;
+  private volatile long scanMillis;
+  private volatile boolean done;
+
+  /** @param reportIntervalMillis the interval of the progress lines, no lines are printed if 0 */
+  ScanMetrics(int partitionId, String outputPrefix, long reportIntervalMillis) {
+    this.partitionId = partitionId;
+    this.outputPrefix = outputPrefix;
+    this.reportIntervalMillis = reportIntervalMillis;
+  }
+
+  /** Registers the JMX bean of the partition, the scan continues without it if that fails. */
+  void register() {
+    try {
+      objectName = new ObjectName(String.format(OBJECT_NAME_FORMAT, partitionId));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    } catch (JMException e) {
+      System.err.println(outputPrefix + "Failed to register the scan metrics: " + e);
+      objectName = null;
+    }
+  }
+
+  void unregister() {
+    if (objectName == null) {
+      return;
+    }
+
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      System.err.println(outputPrefix + "Failed to unregister the scan metrics: " + e);
+    }
+    objectName = null;
+  }
+
+  void onOpened(long openMillis) {
+    this.openMillis = openMillis;
+  }
+
+  /** @param segmentIds the ids of the segments by the raft index of their first entry */
+  void onSegments(NavigableMap<Long, Long> segmentIds) {
+    this.segmentIds = segmentIds;
+  }
+
+  /** @param lastAddress the address of the last entry of the log */
+  void onScanStarted(long lastAddress) {
+    this.lastAddress = lastAddress;
+    startMillis = System.currentTimeMillis();
+    nextReportMillis = startMillis + reportIntervalMillis;
+  }
+
+  /**
+   * @param address the address of the entry of the event
+   * @param length the length of the event in the log
+   */
+  void onEvent(long position, long address, int length) {
+    if (events == 0) {
+      firstAddress = address;
+    }
+    events++;
+    bytes += length;
+
+    if (events % PUBLISH_INTERVAL_EVENTS == 0) {
+      final var now = System.currentTimeMillis();
+      publish(now, position, address);
+
+      if (reportIntervalMillis > 0 && now >= nextReportMillis) {
+        nextReportMillis = now + reportIntervalMillis;
+        printProgress(address);
+      }
+    }
+  }
+
+  void onScanFinished(long position, long address) {
+    publish(System.currentTimeMillis(), position, address);
+    done = true;
+  }
+
+  private void publish(long now, long position, long address) {
+    final var elapsedMillis = Math.max(now - startMillis, 1);
+    final var entries = lastAddress - firstAddress;
+    final var progress =
+        entries > 0 ? Math.min(Math.max((double) (address - firstAddress) / entries, 0), 1) : 1;
+
+    publishedEvents = events;
+    publishedBytes = bytes;
+    lastPosition = position;
+    final var segment = segmentIds.floorEntry(address);
+    segmentId = segment != null ? segment.getValue() : -1;
+    scanMillis = now - startMillis;
+    progressPercent = progress * 100;
+    eventsPerSecond = events * 1000.0 / elapsedMillis;
+    megabytesPerSecond = bytes / BYTES_PER_MEGABYTE * 1000.0 / elapsedMillis;
+    etaSeconds = progress > 0 ? Math.round(elapsedMillis * (1 - progress) / progress / 1000) : -1;
+  }
+
+  private void printProgress(long address) {
+    System.out.println(
+        String.format(
+            "%sScanned %d events (%.1f%%), %.1f MB, %.0f events/s, %.1f MB/s, segment %d,"
+                + " entry %d of %d, ETA %s",
+            outputPrefix,
+            publishedEvents,
+            progressPercent,
+            publishedBytes / BYTES_PER_MEGABYTE,
+            eventsPerSecond,
+            megabytesPerSecond,
+            getSegmentId(),
+            address,
+            lastAddress,
+            etaSeconds < 0 ? "unknown" : etaSeconds + " s"));
+  }
+
+  /** Prints where the time of the verification was spent, once the scan is finished. */
+  void printTiming(long raftLogMillis, long logStreamMillis) {
+    final var output = new StringBuilder(outputPrefix);
+    output.append("Timing: raft log opened in ").append(raftLogMillis).append(" ms");
+    output.append(", log stream opened in ").append(logStreamMillis).append(" ms");
+    output.append(", scanned in ").append(scanMillis).append(" ms");
+    output.append(String.format(" (%.0f events/s, %.1f MB/s)", eventsPerSecond, megabytesPerSecond));
+    System.out.println(output);
+  }
+
+  @Override
+  public int getPartitionId() {
+    return partitionId;
+  }
+
+  @Override
+  public long getEvents() {
+    return publishedEvents;
+  }
+
+  @Override
+  public long getBytes() {
+    return publishedBytes;
+  }
+
+  @Override
+  public long getLastPosition() {
+    return lastPosition;
+  }
+
+  @Override
+  public long getSegmentId() {
+    return segmentId;
+  }
+
+  @Override
+  public double getProgressPercent() {
+    return progressPercent;
+  }
+
+  @Override
+  public double getEventsPerSecond() {
+    return eventsPerSecond;
+  }
+
+  @Override
+  public double getMegabytesPerSecond() {
+    return megabytesPerSecond;
+  }
+
+  @Override
+  public long getEtaSeconds() {
+    return etaSeconds;
+  }
+
+  @Override
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+  @Override
+  public long getScanMillis() {
+    return scanMillis;
+  }
+
+  @Override
+  public boolean isDone() {
+    return done;
+  }
+}
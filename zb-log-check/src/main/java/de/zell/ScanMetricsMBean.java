@@ -0,0 +1,32 @@
+package de.zell;
+
+/** The progress of a running log scan, registered as JMX bean per partition, see {@link ScanMetrics}. */
+public interface ScanMetricsMBean {
+
+  int getPartitionId();
+
+  long getEvents();
+
+  long getBytes();
+
+  long getLastPosition();
+
+  /** @return the id of the segment of the last read entry, -1 if it is not known */
+  long getSegmentId();
+
+  /** @return the scanned share of the log entries in percent */
+  double getProgressPercent();
+
+  double getEventsPerSecond();
+
+  double getMegabytesPerSecond();
+
+  /** @return the estimated time until the scan is done, -1 if it is not known yet */
+  long getEtaSeconds();
+
+  long getOpenMillis();
+
+  long getScanMillis();
+
+  boolean isDone();
+}
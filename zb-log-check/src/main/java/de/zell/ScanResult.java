@@ -0,0 +1,91 @@
+package de.zell;
+
+/** The outcome of the verification of one partition's log. */
+public final class ScanResult {
+
+  private final int partitionId;
+  private final boolean inconsistentLog;
+  private final long eventCount;
+  private final long scannedBytes;
+  private final long invalidRecords;
+  private final long lowestPosition;
+  private final long highestPosition;
+  private final long lastPosition;
+  private final long openMillis;
+  private final long scanMillis;
+  private LogStatistics statistics;
+
+  public ScanResult(
+      int partitionId,
+      boolean inconsistentLog,
+      long eventCount,
+      long scannedBytes,
+      long invalidRecords,
+      long lowestPosition,
+      long highestPosition,
+      long lastPosition,
+      long openMillis,
+      long scanMillis) {
+    this.partitionId = partitionId;
+    this.inconsistentLog = inconsistentLog;
+    this.eventCount = eventCount;
+    this.scannedBytes = scannedBytes;
+    this.invalidRecords = invalidRecords;
+    this.lowestPosition = lowestPosition;
+    this.highestPosition = highestPosition;
+    this.lastPosition = lastPosition;
+    this.openMillis = openMillis;
+    this.scanMillis = scanMillis;
+  }
+
+  public int getPartitionId() {
+    return partitionId;
+  }
+
+  public boolean isInconsistentLog() {
+    return inconsistentLog;
+  }
+
+  public long getEventCount() {
+    return eventCount;
+  }
+
+  /** @return the bytes of the log which were read by the scan, without the unused end of a segment */
+  public long getScannedBytes() {
+    return scannedBytes;
+  }
+
+  /** @return the number of records which failed the deep validation, 0 if it is not enabled */
+  public long getInvalidRecords() {
+    return invalidRecords;
+  }
+
+  public long getLowestPosition() {
+    return lowestPosition;
+  }
+
+  public long getHighestPosition() {
+    return highestPosition;
+  }
+
+  public long getLastPosition() {
+    return lastPosition;
+  }
+
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+  public long getScanMillis() {
+    return scanMillis;
+  }
+
+  /** @return the statistics of the log content, null if they are not collected */
+  LogStatistics getStatistics() {
+    return statistics;
+  }
+
+  void setStatistics(LogStatistics statistics) {
+    this.statistics = statistics;
+  }
+}
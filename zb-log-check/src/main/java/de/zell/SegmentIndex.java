@@ -0,0 +1,167 @@
+package de.zell;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sparse index of one segment, kept as sidecar file next to the checkpoint of the partition: the
+ * raft index, the file offset and the first record position of an entry about every {@link
+ * #SAMPLE_INTERVAL_BYTES}, together with the number of entries and the first and last position of
+ * the segment. With it, a record can be found by reading the sidecars and the entries between two
+ * samples, instead of reading the segments up to the record.
+ *
+ * <p>The samples are only a hint, the entry at a sample offset has to be checked before it is used,
+ * since the segment may have been rewritten after the index was written.
+ */
+final class SegmentIndex {
+
+  static final String FILE_SUFFIX = ".index";
+
+  private static final int MAGIC = 0x5A42_4958;
+  private static final int VERSION = 1;
+  private static final int SAMPLE_INTERVAL_BYTES = 1024 * 1024;
+  private static final int INITIAL_CAPACITY = 16;
+
+  final long segmentId;
+  final long firstIndex;
+  long entries;
+  long firstPosition;
+  long lastPosition;
+
+  private long[] indexes = new long[INITIAL_CAPACITY];
+  private int[] offsets = new int[INITIAL_CAPACITY];
+  private long[] positions = new long[INITIAL_CAPACITY];
+  private int size;
+  private int nextSampleOffset;
+
+  SegmentIndex(long segmentId, long firstIndex) {
+    this.segmentId = segmentId;
+    this.firstIndex = firstIndex;
+  }
+
+  static File file(File directory, String segmentFileName) {
+    return new File(directory, segmentFileName + FILE_SUFFIX);
+  }
+
+  /**
+   * Samples the entry if it is the first one after the sample interval. The entries have to be
+   * passed in the order of the segment.
+   *
+   * @param position the position of the first record of the entry
+   */
+  void onEntry(long index, int offset, long position) {
+    if (offset < nextSampleOffset) {
+      return;
+    }
+
+    addSample(index, offset, position);
+    nextSampleOffset = offset + SAMPLE_INTERVAL_BYTES;
+  }
+
+  private void addSample(long index, int offset, long position) {
+    if (size == offsets.length) {
+      indexes = Arrays.copyOf(indexes, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    indexes[size] = index;
+    offsets[size] = offset;
+    positions[size] = position;
+    size++;
+  }
+
+  /** @return the last sample with a position lower or equal to the position, -1 if there is none */
+  int floorSample(long position) {
+    var low = 0;
+    var high = size - 1;
+    var floor = -1;
+    while (low <= high) {
+      final var middle = (low + high) >>> 1;
+      if (positions[middle] <= position) {
+        floor = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return floor;
+  }
+
+  long sampleIndex(int sample) {
+    return indexes[sample];
+  }
+
+  int sampleOffset(int sample) {
+    return offsets[sample];
+  }
+
+  long samplePosition(int sample) {
+    return positions[sample];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Writes the index to its sidecar file, replacing the previous one at once. */
+  void write(File directory, String segmentFileName) throws IOException {
+    final var file = file(directory, segmentFileName);
+    final var temporaryFile = new File(file.getPath() + ".tmp");
+    try (final var output =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temporaryFile.toPath())))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(segmentId);
+      output.writeLong(firstIndex);
+      output.writeLong(entries);
+      output.writeLong(firstPosition);
+      output.writeLong(lastPosition);
+      output.writeInt(nextSampleOffset);
+      output.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        output.writeLong(indexes[i]);
+        output.writeInt(offsets[i]);
+        output.writeLong(positions[i]);
+      }
+    }
+    Files.move(
+        temporaryFile.toPath(),
+        file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** @return the index of the segment, or null if there is no sidecar or it has another version */
+  static SegmentIndex read(File directory, String segmentFileName) throws IOException {
+    final var file = file(directory, segmentFileName);
+    if (!file.exists()) {
+      return null;
+    }
+
+    try (final var input =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        return null;
+      }
+
+      final var index = new SegmentIndex(input.readLong(), input.readLong());
+      index.entries = input.readLong();
+      index.firstPosition = input.readLong();
+      index.lastPosition = input.readLong();
+      index.nextSampleOffset = input.readInt();
+      final var size = input.readInt();
+      for (int i = 0; i < size; i++) {
+        index.addSample(input.readLong(), input.readInt(), input.readLong());
+      }
+      return index;
+    }
+  }
+}
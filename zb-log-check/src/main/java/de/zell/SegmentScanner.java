@@ -0,0 +1,456 @@
+package de.zell;
+
+import io.atomix.protocols.raft.partition.impl.RaftNamespaces;
+import io.atomix.protocols.raft.zeebe.ZeebeEntry;
+import io.zeebe.logstreams.impl.log.LogEntryDescriptor;
+import io.zeebe.logstreams.impl.log.LoggedEventImpl;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import org.agrona.DirectBuffer;
+import org.agrona.UnsafeAccess;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reads the positions of one journal segment without the raft log and log stream stack. The segment
+ * file is memory-mapped and the entries are decoded in place: no entry is copied or deserialized,
+ * and no objects are created per entry or record.
+ *
+ * <p>A segment starts with a descriptor, followed by the entries. Each entry is written as its
+ * length, its CRC32 checksum and the entry serialized by the raft namespace. Like the journal, the
+ * scan stops at the first entry with an invalid length or checksum. Unlike the journal, it remembers
+ * this entry and whether only zeros follow it, so an invalid entry can be told apart from a torn
+ * write of the last entry, see {@link RawPartitionScan#verifyEntries}. With deep validation, the
+ * bytes after the last entry have to be zeros too.
+ *
+ * <p>With deep validation, the term of each entry and the content of each record is validated too:
+ * the terms must not go down, the lowest and highest position of an entry must be the positions of
+ * its first and last record, and each record is validated by a {@link RecordValidator}.
+ *
+ * <p>If the segment was scanned before, the previous result is reused if the segment is unchanged.
+ * If entries were appended since, the scan continues after the last scanned entry, as long as this
+ * entry is still the same.
+ *
+ * <p>The statistics of the log content are collected in the same pass, with one append per entry.
+ * They are not part of the previous result, so the segment is scanned again to collect them.
+ *
+ * <p>With an index directory, a sparse {@link SegmentIndex} of the segment is built in the same
+ * pass. A previous result is only reused if the index of the segment exists too.
+ */
+final class SegmentScanner implements Callable<SegmentScanner.Result> {
+
+  static final String SEGMENT_FILE_SUFFIX = ".log";
+
+  static final int DESCRIPTOR_LENGTH = 64;
+  static final int DESCRIPTOR_ID_OFFSET = 4;
+  static final int DESCRIPTOR_INDEX_OFFSET = 12;
+  static final int ENTRY_HEADER_LENGTH = Integer.BYTES + Integer.BYTES;
+  static final int MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+  static final int NO_INVALID_ENTRY = -1;
+
+  // the entry type, the buffer type, the direct and little endian flags and the data length are
+  // followed by the data, and by the positions, term and timestamp as variable length longs
+  private static final byte[] ZEEBE_ENTRY_PREFIX;
+  static final int ZEEBE_ENTRY_DATA_LENGTH_OFFSET;
+  static final int ZEEBE_ENTRY_DATA_OFFSET;
+
+  static {
+    // an empty entry with zero values ends with the four longs, each written in one byte
+    final var emptyEntry =
+        RaftNamespaces.RAFT_STORAGE.serialize(new ZeebeEntry(0, 0, 0, 0, ByteBuffer.allocate(0)));
+    ZEEBE_ENTRY_DATA_OFFSET = emptyEntry.length - 4;
+    ZEEBE_ENTRY_DATA_LENGTH_OFFSET = ZEEBE_ENTRY_DATA_OFFSET - Integer.BYTES;
+    ZEEBE_ENTRY_PREFIX = Arrays.copyOf(emptyEntry, ZEEBE_ENTRY_DATA_LENGTH_OFFSET - 2);
+  }
+
+  private final File segmentFile;
+  private final String outputPrefix;
+  private final Result previousResult;
+  private final boolean deepValidation;
+  private final boolean collectStatistics;
+  private final File indexDirectory;
+  private final LoggedEventImpl event = new LoggedEventImpl();
+  private int varLongEnd;
+
+  SegmentScanner(
+      File segmentFile,
+      String outputPrefix,
+      Result previousResult,
+      boolean deepValidation,
+      boolean collectStatistics,
+      File indexDirectory) {
+    this.segmentFile = segmentFile;
+    this.outputPrefix = outputPrefix;
+    // a previous scan without deep validation can't be reused for a deep validation
+    this.previousResult =
+        previousResult != null
+                && (previousResult.deepValidation || !deepValidation)
+                && !collectStatistics
+                && (indexDirectory == null
+                    || SegmentIndex.file(indexDirectory, segmentFile.getName()).exists())
+            ? previousResult
+            : null;
+    this.deepValidation = deepValidation;
+    this.collectStatistics = collectStatistics;
+    this.indexDirectory = indexDirectory;
+  }
+
+  @Override
+  public Result call() throws IOException {
+    final var startTime = System.currentTimeMillis();
+    final var lastModified = segmentFile.lastModified();
+    final var fileLength = segmentFile.length();
+    if (previousResult != null
+        && previousResult.lastModified == lastModified
+        && previousResult.fileLength == fileLength) {
+      previousResult.scan = Scan.UNCHANGED;
+      previousResult.scannedBytes = 0;
+      return previousResult;
+    }
+
+    final MappedByteBuffer mappedSegment;
+    try (final var channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(
+            "Expected segment " + segmentFile + " to be smaller than 2 GB, but has " + channel.size()
+                + " bytes");
+      }
+      mappedSegment = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      final var segment = new UnsafeBuffer(mappedSegment);
+      final var segmentId = segment.getLong(DESCRIPTOR_ID_OFFSET, ByteOrder.BIG_ENDIAN);
+      final var firstIndex = segment.getLong(DESCRIPTOR_INDEX_OFFSET, ByteOrder.BIG_ENDIAN);
+
+      final var resume = canResume(segment, segmentId, firstIndex);
+      final var previousIndex = resume && indexDirectory != null ? readIndex() : null;
+      final Result result;
+      if (resume && (indexDirectory == null || previousIndex != null)) {
+        result = previousResult;
+        result.scan = Scan.RESUMED;
+        result.deepValidation &= deepValidation;
+        result.index = previousIndex;
+      } else {
+        final var segmentPrefix = outputPrefix + "[Segment " + segmentId + "] ";
+        result =
+            new Result(
+                segmentFile.getName(),
+                segmentId,
+                firstIndex,
+                new ValidationContext(segmentPrefix),
+                new RecordValidator(segmentPrefix));
+        result.deepValidation = deepValidation;
+        result.statistics = collectStatistics ? new LogStatistics() : null;
+        result.index = indexDirectory != null ? new SegmentIndex(segmentId, firstIndex) : null;
+      }
+      result.lastModified = lastModified;
+      result.fileLength = fileLength;
+
+      scanEntries(segment, mappedSegment, result);
+      result.scanMillis = System.currentTimeMillis() - startTime;
+      return result;
+    } finally {
+      // unmap right away, instead of keeping the segments mapped until the buffers are collected
+      UnsafeAccess.UNSAFE.invokeCleaner(mappedSegment);
+    }
+  }
+
+  /** @return true if the segment still contains the last entry which was scanned before */
+  private boolean canResume(UnsafeBuffer segment, long segmentId, long firstIndex) {
+    if (previousResult == null
+        || previousResult.segmentId != segmentId
+        || previousResult.firstIndex != firstIndex
+        || previousResult.entries == 0
+        || previousResult.endOffset > segment.capacity()) {
+      return false;
+    }
+
+    final var lastEntryOffset = previousResult.lastEntryOffset;
+    return segment.getInt(lastEntryOffset, ByteOrder.BIG_ENDIAN)
+            == previousResult.endOffset - lastEntryOffset - ENTRY_HEADER_LENGTH
+        && segment.getInt(lastEntryOffset + Integer.BYTES, ByteOrder.BIG_ENDIAN)
+            == previousResult.lastEntryChecksum;
+  }
+
+  /** @return the index of the previous scan, null if it is missing and the segment is scanned again */
+  private SegmentIndex readIndex() throws IOException {
+    final var index = SegmentIndex.read(indexDirectory, segmentFile.getName());
+    return index != null
+            && index.segmentId == previousResult.segmentId
+            && index.firstIndex == previousResult.firstIndex
+        ? index
+        : null;
+  }
+
+  private void scanEntries(UnsafeBuffer segment, MappedByteBuffer mappedSegment, Result result) {
+    final var checksum = new CRC32();
+    final var capacity = segment.capacity();
+    result.invalidEntryOffset = NO_INVALID_ENTRY;
+    result.tornWrite = false;
+    result.scannedBytes = 0;
+
+    var offset = result.entries > 0 ? result.endOffset : DESCRIPTOR_LENGTH;
+    while (offset + ENTRY_HEADER_LENGTH <= capacity) {
+      final var length = segment.getInt(offset, ByteOrder.BIG_ENDIAN);
+      final var entryOffset = offset + ENTRY_HEADER_LENGTH;
+      if (length == 0 && (!deepValidation || isZero(segment, offset, capacity))) {
+        // the preallocated rest of the segment
+        break;
+      }
+      if (length <= 0 || length > MAX_ENTRY_SIZE || entryOffset + length > capacity) {
+        onInvalidEntry(segment, offset, entryOffset, result);
+        break;
+      }
+
+      final var expectedChecksum =
+          segment.getInt(offset + Integer.BYTES, ByteOrder.BIG_ENDIAN) & 0xFFFF_FFFFL;
+      checksum.reset();
+      mappedSegment.limit(entryOffset + length).position(entryOffset);
+      checksum.update(mappedSegment);
+      if (checksum.getValue() != expectedChecksum) {
+        onInvalidEntry(segment, offset, entryOffset + length, result);
+        break;
+      }
+
+      if (isZeebeEntry(segment, entryOffset, length)) {
+        final var dataLength =
+            segment.getInt(entryOffset + ZEEBE_ENTRY_DATA_LENGTH_OFFSET, ByteOrder.BIG_ENDIAN);
+        final var dataOffset = entryOffset + ZEEBE_ENTRY_DATA_OFFSET;
+        if (result.index != null && dataLength > 0) {
+          result.index.onEntry(
+              result.firstIndex + result.entries,
+              offset,
+              LogEntryDescriptor.getPosition(segment, dataOffset));
+        }
+
+        final int recordCount;
+        if (deepValidation) {
+          recordCount =
+              validateEntry(segment, dataOffset, dataLength, entryOffset + length, result);
+        } else {
+          recordCount = scanRecords(segment, dataOffset, dataLength, result);
+        }
+        if (result.statistics != null) {
+          result.statistics.onAppend(recordCount, dataLength);
+        }
+      }
+
+      result.entries++;
+      result.bytes += ENTRY_HEADER_LENGTH + length;
+      result.scannedBytes += ENTRY_HEADER_LENGTH + length;
+      result.lastEntryOffset = offset;
+      result.lastEntryChecksum = (int) expectedChecksum;
+      offset = entryOffset + length;
+      result.endOffset = offset;
+    }
+  }
+
+  /**
+   * Remembers the invalid entry, which is a torn write if the segment only contains zeros after it.
+   *
+   * @param entryEnd the end of the entry, or the end of its header if its length is invalid
+   */
+  private static void onInvalidEntry(
+      UnsafeBuffer segment, int offset, int entryEnd, Result result) {
+    result.invalidEntryOffset = offset;
+    result.tornWrite = isZero(segment, entryEnd, segment.capacity());
+  }
+
+  private static boolean isZero(UnsafeBuffer segment, int from, int to) {
+    var offset = from;
+    for (; offset + Long.BYTES <= to; offset += Long.BYTES) {
+      if (segment.getLong(offset) != 0) {
+        return false;
+      }
+    }
+    for (; offset < to; offset++) {
+      if (segment.getByte(offset) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean isZeebeEntry(DirectBuffer segment, int entryOffset, int length) {
+    if (length < ZEEBE_ENTRY_DATA_OFFSET) {
+      return false;
+    }
+
+    for (int i = 0; i < ZEEBE_ENTRY_PREFIX.length; i++) {
+      if (segment.getByte(entryOffset + i) != ZEEBE_ENTRY_PREFIX[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return the number of records in the entry */
+  private int scanRecords(UnsafeBuffer segment, int dataOffset, int dataLength, Result result) {
+    final var dataEnd = dataOffset + dataLength;
+    final var statistics = result.statistics;
+
+    var recordCount = 0;
+    var offset = dataOffset;
+    while (offset < dataEnd) {
+      final var fragmentLength = LogEntryDescriptor.getFragmentLength(segment, offset);
+      if (fragmentLength <= 0 || offset + fragmentLength > dataEnd) {
+        // an exception would leave the scan incomplete, the rest of the entry can't be read
+        result.records.onViolation(
+            RecordValidator.Violation.ENTRY_POSITIONS,
+            result.validation.lastPosition,
+            "the record at segment offset " + offset + " has an invalid length " + fragmentLength);
+        return recordCount;
+      }
+
+      result.validation.onNextPosition(LogEntryDescriptor.getPosition(segment, offset));
+      if (statistics != null) {
+        event.wrap(segment, offset);
+        statistics.onRecord(event);
+      }
+      recordCount++;
+      offset += fragmentLength;
+    }
+    return recordCount;
+  }
+
+  /**
+   * Scans the records of the entry like {@link #scanRecords}, and validates the entry and its
+   * records. The data of the entry is followed by its highest and lowest position and its term.
+   *
+   * @return the number of records in the entry which were scanned
+   */
+  private int validateEntry(
+      UnsafeBuffer segment, int dataOffset, int dataLength, int entryEnd, Result result) {
+    final var records = result.records;
+    final var dataEnd = dataOffset + dataLength;
+    final var highestPosition = readVarLong(segment, dataEnd, entryEnd);
+    final var lowestPosition = readVarLong(segment, varLongEnd, entryEnd);
+    final var term = readVarLong(segment, varLongEnd, entryEnd);
+
+    if (term < result.lastTerm) {
+      records.onViolation(
+          RecordValidator.Violation.TERM,
+          lowestPosition,
+          "the term " + term + " is lower than the previous term " + result.lastTerm);
+    }
+    if (result.firstTerm == 0) {
+      result.firstTerm = term;
+    }
+    result.lastTerm = Math.max(result.lastTerm, term);
+
+    final var statistics = result.statistics;
+    long firstPosition = -1;
+    long lastPosition = -1;
+    var recordCount = 0;
+    var offset = dataOffset;
+    while (offset < dataEnd) {
+      final var fragmentLength = LogEntryDescriptor.getFragmentLength(segment, offset);
+      if (fragmentLength <= 0 || offset + fragmentLength > dataEnd) {
+        records.onViolation(
+            RecordValidator.Violation.ENTRY_POSITIONS,
+            lowestPosition,
+            "the record at segment offset " + offset + " has an invalid length " + fragmentLength);
+        return recordCount;
+      }
+
+      event.wrap(segment, offset);
+      lastPosition = event.getPosition();
+      if (firstPosition == -1) {
+        firstPosition = lastPosition;
+      }
+      result.validation.onNextPosition(lastPosition);
+      records.validate(event);
+      if (statistics != null) {
+        statistics.onRecord(event);
+      }
+      recordCount++;
+      offset += fragmentLength;
+    }
+
+    if (firstPosition != lowestPosition || lastPosition != highestPosition) {
+      records.onViolation(
+          RecordValidator.Violation.ENTRY_POSITIONS,
+          lowestPosition,
+          "the entry has the positions " + lowestPosition + " to " + highestPosition
+              + ", but its records " + firstPosition + " to " + lastPosition);
+    }
+    return recordCount;
+  }
+
+  /** Reads a variable length long like Kryo, and remembers where it ends. */
+  private long readVarLong(UnsafeBuffer segment, int offset, int limit) {
+    long value = 0;
+    var current = offset;
+    for (int shift = 0; current < limit; shift += 7) {
+      final var b = segment.getByte(current++);
+      if (shift == 56) {
+        value |= (long) (b & 0xFF) << shift;
+        break;
+      }
+
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    varLongEnd = current;
+
+    // zig-zag encoded, to write small negative values in few bytes
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  enum Scan {
+    FULL,
+    RESUMED,
+    UNCHANGED
+  }
+
+  /** The entries and positions of one segment, and where its scan ended. */
+  static final class Result {
+
+    final String fileName;
+    final long segmentId;
+    final long firstIndex;
+    final ValidationContext validation;
+    final RecordValidator records;
+    boolean deepValidation;
+    LogStatistics statistics;
+    SegmentIndex index;
+    long firstTerm;
+    long lastTerm;
+    long lastModified;
+    long fileLength;
+    long entries;
+    long bytes;
+    long scannedBytes;
+    int lastEntryOffset;
+    int lastEntryChecksum;
+    int endOffset;
+    int invalidEntryOffset = NO_INVALID_ENTRY;
+    boolean tornWrite;
+    long scanMillis;
+    Scan scan = Scan.FULL;
+
+    Result(
+        String fileName,
+        long segmentId,
+        long firstIndex,
+        ValidationContext validation,
+        RecordValidator records) {
+      this.fileName = fileName;
+      this.segmentId = segmentId;
+      this.firstIndex = firstIndex;
+      this.validation = validation;
+      this.records = records;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package de.zell;
+
+/**
+ * Validates that the positions of a log never go down. A log can be validated in parts, e.g. per
+ * segment, which are appended in their order afterwards.
+ */
+final class ValidationContext {
+
+  private static final String ANSI_RESET = "\u001B[0m";
+  private static final String ANSI_GREEN = "\u001B[32m";
+  private static final String ANSI_RED = "\u001B[31m";
+
+  private final String outputPrefix;
+
+  long low = Long.MAX_VALUE;
+  long high = Long.MIN_VALUE;
+  long firstPosition = 0;
+  long lastPosition = 0;
+  long eventCount = 0;
+  boolean inconsistentLog = false;
+
+  ValidationContext(String outputPrefix) {
+    this.outputPrefix = outputPrefix;
+  }
+
+  void onNextPosition(long position) {
+
+    if (lastPosition > position) {
+      inconsistentLog = true;
+      onInconsistentLog(low, high, lastPosition, eventCount, position);
+    }
+
+    if (position < low)
+    {
+      low = position;
+    } else if (position > high) {
+      high = position;
+    }
+
+    if (eventCount == 0) {
+      firstPosition = position;
+    }
+    lastPosition = position;
+    eventCount++;
+  }
+
+  /**
+   * Appends the validated part which follows directly after the parts which were validated so far.
+   * Only the boundary between them needs to be checked, the part itself is already validated.
+   */
+  void append(ValidationContext next) {
+    if (next.eventCount == 0) {
+      return;
+    }
+
+    if (lastPosition > next.firstPosition) {
+      inconsistentLog = true;
+      onInconsistentLog(low, high, lastPosition, eventCount, next.firstPosition);
+    }
+
+    low = Math.min(low, next.low);
+    high = Math.max(high, next.high);
+    if (eventCount == 0) {
+      firstPosition = next.firstPosition;
+    }
+    lastPosition = next.lastPosition;
+    eventCount += next.eventCount;
+    inconsistentLog |= next.inconsistentLog;
+  }
+
+  void finishValidation() {
+    // the partitions are scanned concurrently, so each block is printed at once
+    final var output = new StringBuilder();
+    if (inconsistentLog)
+    {
+      output.append(outputPrefix).append(ANSI_RED + "LOG IS INCONSISTENT!" + ANSI_RESET);
+    }
+    else
+    {
+      output.append(outputPrefix).append(ANSI_GREEN + "LOG IS CONSISTENT." + ANSI_RESET);
+    }
+    output.append('\n').append(outputPrefix).append("Last position: ").append(lastPosition);
+    output.append('\n').append(outputPrefix).append("Lowest position: ").append(low);
+    output.append('\n').append(outputPrefix).append("Highest position: ").append(high);
+    output.append('\n').append(outputPrefix).append("Events: ").append(eventCount);
+    System.out.println(output);
+  }
+
+  private void onInconsistentLog(long low, long high, long lastPosition, long eventCount,
+      long position) {
+    final var output = new StringBuilder();
+    output.append(outputPrefix).append("===============");
+    output.append('\n').append(outputPrefix).append("At idx ").append(eventCount);
+    output.append('\n').append(outputPrefix).append("Current position ").append(position);
+    output.append(" (Segment id " + (position >> 32) + " segment offset " + (int) position + ')');
+    output.append('\n').append(outputPrefix).append("Is smaller then this last position ").append(lastPosition);
+    output.append(" (Segment id " + (lastPosition >> 32) + " segment offset " + (int) lastPosition + ')');
+    output.append('\n').append(outputPrefix).append("Current lowest " + low + " current highest " + high);
+    output.append('\n').append(outputPrefix).append("===============");
+    System.out.println(output);
+  }
+}
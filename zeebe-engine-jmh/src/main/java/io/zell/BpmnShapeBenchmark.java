@@ -0,0 +1,241 @@
+package io.zell;
+
+import io.camunda.zeebe.client.ZeebeClient;
+import io.camunda.zeebe.client.api.response.ProcessInstanceResult;
+import io.camunda.zeebe.client.api.worker.JobWorker;
+import io.camunda.zeebe.model.bpmn.Bpmn;
+import io.camunda.zeebe.model.bpmn.BpmnModelInstance;
+import io.camunda.zeebe.model.bpmn.builder.AbstractFlowNodeBuilder;
+import io.camunda.zeebe.model.bpmn.builder.ServiceTaskBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.camunda.community.eze.EngineFactory;
+import org.camunda.community.eze.ZeebeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of process instances for the BPMN constructs our models are made of.
+ * Every {@link Shape} builds a process of one construct, scaled by the {@code size} parameter, so a
+ * run gives a throughput curve per construct.
+ *
+ * <p>Every construct wraps service tasks, which are completed by a job worker, since that is what
+ * the constructs surround in real models. {@link Shape#SERVICE_TASKS} is the baseline: a shape
+ * costs about as much as the same number of sequential service tasks, plus its construct.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class BpmnShapeBenchmark {
+
+  private static final String PROCESS_ID = "process";
+  private static final String JOB_TYPE = "task";
+  private static final Consumer<ServiceTaskBuilder> SERVICE_TASK = t -> t.zeebeJobType(JOB_TYPE);
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  public ProcessInstanceResult testShapeThroughput(Engine engine) {
+    return engine
+        .zeebeClient
+        .newCreateInstanceCommand()
+        .bpmnProcessId(PROCESS_ID)
+        .latestVersion()
+        .variables(engine.variables)
+        .withResult()
+        .send()
+        .join();
+  }
+
+  /** Samples the duration of single instances of the shape, like {@code testEngineLatency}. */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public ProcessInstanceResult testShapeLatency(Engine engine) {
+    return testShapeThroughput(engine);
+  }
+
+  public enum Shape {
+    /** A sequence of {@code size} service tasks. */
+    SERVICE_TASKS {
+      @Override
+      BpmnModelInstance createProcess(int size) {
+        AbstractFlowNodeBuilder<?, ?> builder =
+            Bpmn.createExecutableProcess(PROCESS_ID).startEvent();
+        for (int i = 0; i < size; i++) {
+          builder = builder.serviceTask("task-" + i, SERVICE_TASK);
+        }
+        return builder.endEvent().done();
+      }
+    },
+
+    /** A parallel gateway which forks into {@code size} branches with a service task each. */
+    PARALLEL_GATEWAY {
+      @Override
+      BpmnModelInstance createProcess(int size) {
+        AbstractFlowNodeBuilder<?, ?> builder =
+            Bpmn.createExecutableProcess(PROCESS_ID)
+                .startEvent()
+                .parallelGateway("fork")
+                .serviceTask("task-0", SERVICE_TASK)
+                .parallelGateway("join")
+                .endEvent();
+        for (int i = 1; i < size; i++) {
+          builder =
+              builder.moveToNode("fork").serviceTask("task-" + i, SERVICE_TASK).connectTo("join");
+        }
+        return builder.done();
+      }
+    },
+
+    /** A service task in {@code size} nested embedded subprocesses. */
+    SUBPROCESS {
+      @Override
+      BpmnModelInstance createProcess(int size) {
+        AbstractFlowNodeBuilder<?, ?> builder =
+            Bpmn.createExecutableProcess(PROCESS_ID).startEvent();
+        for (int i = 0; i < size; i++) {
+          builder = builder.subProcess("subprocess-" + i).embeddedSubProcess().startEvent();
+        }
+        builder = builder.serviceTask("task", SERVICE_TASK);
+        for (int i = 0; i < size; i++) {
+          builder = builder.endEvent().subProcessDone();
+        }
+        return builder.endEvent().done();
+      }
+    },
+
+    /** A parallel multi-instance service task over a collection of {@code size} items. */
+    MULTI_INSTANCE {
+      @Override
+      BpmnModelInstance createProcess(int size) {
+        return Bpmn.createExecutableProcess(PROCESS_ID)
+            .startEvent()
+            .serviceTask(
+                "task",
+                t ->
+                    t.zeebeJobType(JOB_TYPE)
+                        .multiInstance(m -> m.parallel().zeebeInputCollectionExpression("items")))
+            .endEvent()
+            .done();
+      }
+
+      @Override
+      void addVariables(int size, Map<String, Object> variables) {
+        final List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          items.add(i);
+        }
+        variables.put("items", items);
+      }
+    },
+
+    /**
+     * A sequence of {@code size} exclusive gateways, each with a condition which is evaluated and a
+     * default flow which is taken, followed by a service task.
+     */
+    EXCLUSIVE_GATEWAY {
+      @Override
+      BpmnModelInstance createProcess(int size) {
+        AbstractFlowNodeBuilder<?, ?> builder =
+            Bpmn.createExecutableProcess(PROCESS_ID).startEvent();
+        for (int i = 0; i < size; i++) {
+          builder =
+              builder
+                  .exclusiveGateway("split-" + i)
+                  .defaultFlow()
+                  .exclusiveGateway("merge-" + i)
+                  .moveToNode("split-" + i)
+                  .conditionExpression("amount > " + (100 + i))
+                  .connectTo("merge-" + i);
+        }
+        return builder.serviceTask("task", SERVICE_TASK).endEvent().done();
+      }
+
+      @Override
+      void addVariables(int size, Map<String, Object> variables) {
+        variables.put("amount", 50);
+      }
+    };
+
+    abstract BpmnModelInstance createProcess(int size);
+
+    /** Adds the variables an instance of the process is created with. */
+    void addVariables(int size, Map<String, Object> variables) {}
+  }
+
+  @State(Scope.Thread)
+  public static class Engine {
+
+    @Param({
+      "SERVICE_TASKS",
+      "PARALLEL_GATEWAY",
+      "SUBPROCESS",
+      "MULTI_INSTANCE",
+      "EXCLUSIVE_GATEWAY"
+    })
+    public Shape shape;
+
+    @Param({"1", "5", "25"})
+    public int size;
+
+    private final ZeebeClient zeebeClient;
+    private final ZeebeEngine zeebeEngine;
+    private final Map<String, Object> variables = new HashMap<>();
+    private JobWorker jobWorker;
+
+    public Engine() {
+      zeebeEngine = EngineFactory.INSTANCE.create(List.of());
+      zeebeClient = zeebeEngine.createClient();
+    }
+
+    @Setup
+    public void setup() {
+      zeebeEngine.start();
+      zeebeClient
+          .newDeployCommand()
+          .addProcessModel(shape.createProcess(size), "process.bpmn")
+          .send()
+          .join();
+      shape.addVariables(size, variables);
+
+      // poll eagerly, otherwise the poll interval of the worker dominates the instance duration
+      jobWorker =
+          zeebeClient
+              .newWorker()
+              .jobType(JOB_TYPE)
+              .handler((client, job) -> client.newCompleteCommand(job.getKey()).send())
+              .maxJobsActive(Math.max(32, size))
+              .pollInterval(Duration.ofMillis(1))
+              .open();
+    }
+
+    @TearDown
+    public void cleanup() {
+      jobWorker.close();
+      zeebeEngine.stop();
+    }
+
+    ZeebeClient getZeebeClient() {
+      return zeebeClient;
+    }
+
+    Map<String, Object> getVariables() {
+      return variables;
+    }
+  }
+}
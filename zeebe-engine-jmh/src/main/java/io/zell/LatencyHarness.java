@@ -0,0 +1,218 @@
+package io.zell;
+
+import io.camunda.zeebe.client.ZeebeClient;
+import io.zell.BpmnShapeBenchmark.Shape;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Measures the create-to-complete latency of process instances under a fixed arrival rate, which
+ * JMH can't do: a JMH benchmark only starts the next instance after the previous one completed, so
+ * a stall of the engine delays the following instances instead of showing up in their latency
+ * (coordinated omission).
+ *
+ * <p>The instances are started asynchronously on a fixed schedule, and the latency of an instance
+ * is measured from the time it was scheduled to start, not from the time it was sent. If the
+ * engine or the client falls behind, the instances which should have been started in the meantime
+ * are late, and their waiting time is part of their latency. The latency from sending to completing
+ * is recorded too, to show how much the correction matters. The instances which don't complete
+ * within a minute after the last start are recorded in the corrected latency with the time they
+ * waited so far, since they are the slowest ones.
+ *
+ * <p>Run it with {@code java -cp benchmarks.jar io.zell.LatencyHarness [--rate PER_SECOND]
+ * [--duration SECONDS] [--warmup SECONDS] [--max-in-flight N] [--shape SHAPE] [--size N]}. The
+ * default process is the start and end event of {@link MyBenchmark}.
+ */
+public final class LatencyHarness {
+
+  private static final String USAGE =
+      "Correct usage: java -cp benchmarks.jar io.zell.LatencyHarness [--rate PER_SECOND]"
+          + " [--duration SECONDS] [--warmup SECONDS] [--max-in-flight N] [--shape SHAPE]"
+          + " [--size N]";
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  private final int rate;
+  private final long warmupNanos;
+  private final long durationNanos;
+  private final int maxInFlight;
+
+  private final Recorder corrected = new Recorder(SIGNIFICANT_DIGITS);
+  private final Recorder uncorrected = new Recorder(SIGNIFICANT_DIGITS);
+  private final LongAdder failures = new LongAdder();
+  // the scheduled starts of the measured instances which didn't complete yet
+  private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+  private LatencyHarness(int rate, long warmupSeconds, long durationSeconds, int maxInFlight) {
+    this.rate = rate;
+    this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+    this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+    this.maxInFlight = maxInFlight;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int rate = 200;
+    long durationSeconds = 60;
+    long warmupSeconds = 10;
+    int maxInFlight = 1000;
+    Shape shape = Shape.SERVICE_TASKS;
+    int size = 0;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        final String option = args[i];
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Expected a value for " + option);
+        }
+
+        final String value = args[++i];
+        switch (option) {
+          case "--rate":
+            rate = Integer.parseInt(value);
+            break;
+          case "--duration":
+            durationSeconds = Long.parseLong(value);
+            break;
+          case "--warmup":
+            warmupSeconds = Long.parseLong(value);
+            break;
+          case "--max-in-flight":
+            maxInFlight = Integer.parseInt(value);
+            break;
+          case "--shape":
+            shape = Shape.valueOf(value);
+            break;
+          case "--size":
+            size = Integer.parseInt(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+      }
+
+      if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || maxInFlight <= 0 || size < 0) {
+        throw new IllegalArgumentException(
+            "Expected a positive rate, duration and max in flight, and no negative warmup or size");
+      }
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      System.out.println(USAGE);
+      System.exit(1);
+    }
+
+    final BpmnShapeBenchmark.Engine engine = new BpmnShapeBenchmark.Engine();
+    engine.shape = shape;
+    engine.size = size;
+    engine.setup();
+    try {
+      System.out.printf(
+          "Starting %d instances/s of %s with size %d, %d s warmup and %d s measurement%n",
+          rate, shape, size, warmupSeconds, durationSeconds);
+      new LatencyHarness(rate, warmupSeconds, durationSeconds, maxInFlight)
+          .run(engine.getZeebeClient(), engine.getVariables());
+    } finally {
+      engine.cleanup();
+    }
+  }
+
+  private void run(ZeebeClient zeebeClient, Map<String, Object> variables)
+      throws InterruptedException {
+    final Semaphore inFlight = new Semaphore(maxInFlight);
+    final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    final long startNanos = System.nanoTime();
+    final long measureNanos = startNanos + warmupNanos;
+    final long endNanos = measureNanos + durationNanos;
+
+    long started = 0;
+    for (long scheduled = startNanos; scheduled < endNanos; scheduled += intervalNanos) {
+      long now;
+      while ((now = System.nanoTime()) < scheduled) {
+        LockSupport.parkNanos(scheduled - now);
+      }
+
+      // waiting for a free slot delays the start, but not the schedule
+      inFlight.acquire();
+      final long scheduledNanos = scheduled;
+      if (scheduledNanos >= measureNanos) {
+        pending.add(scheduledNanos);
+      }
+      final long sentNanos = System.nanoTime();
+      zeebeClient
+          .newCreateInstanceCommand()
+          .bpmnProcessId("process")
+          .latestVersion()
+          .variables(variables)
+          .withResult()
+          .send()
+          .whenComplete(
+              (result, error) -> {
+                final long completedNanos = System.nanoTime();
+                inFlight.release();
+                // an instance which timed out is already recorded
+                if (scheduledNanos < measureNanos || !pending.remove(scheduledNanos)) {
+                  return;
+                }
+
+                if (error != null) {
+                  failures.increment();
+                } else {
+                  corrected.recordValue(
+                      TimeUnit.NANOSECONDS.toMicros(completedNanos - scheduledNanos));
+                  uncorrected.recordValue(
+                      TimeUnit.NANOSECONDS.toMicros(completedNanos - sentNanos));
+                }
+              });
+      if (scheduledNanos >= measureNanos) {
+        started++;
+      }
+    }
+
+    final long scheduleEndNanos = System.nanoTime();
+    final long timedOut;
+    if (inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+      timedOut = 0;
+    } else {
+      timedOut = recordTimedOut(System.nanoTime());
+    }
+
+    final long lateMillis = TimeUnit.NANOSECONDS.toMillis(scheduleEndNanos - endNanos);
+    System.out.printf(
+        "Started %d instances, %d failed, the last start was %d ms late%n",
+        started, failures.sum(), Math.max(lateMillis, 0));
+    report("Latency from the scheduled start", corrected.getIntervalHistogram(), timedOut);
+    report("Latency from sending (not corrected)", uncorrected.getIntervalHistogram(), 0);
+  }
+
+  /** @return the number of instances which were still in flight and are recorded now */
+  private long recordTimedOut(long nowNanos) {
+    long timedOut = 0;
+    for (Long scheduledNanos : pending) {
+      if (pending.remove(scheduledNanos)) {
+        corrected.recordValue(TimeUnit.NANOSECONDS.toMicros(nowNanos - scheduledNanos));
+        timedOut++;
+      }
+    }
+    return timedOut;
+  }
+
+  /** @param timedOut the recorded instances which didn't complete, with their time so far */
+  private static void report(String name, Histogram histogram, long timedOut) {
+    System.out.printf(
+        "%s, in ms: p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f (%d instances, %d timed out)%n",
+        name,
+        histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+        histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+        histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+        histogram.getMaxValue() / MICROS_PER_MILLI,
+        histogram.getTotalCount(),
+        timedOut);
+  }
+}
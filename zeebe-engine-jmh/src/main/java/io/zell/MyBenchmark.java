@@ -30,11 +30,13 @@ import io.camunda.zeebe.client.api.response.ProcessInstanceResult;
 import io.camunda.zeebe.model.bpmn.Bpmn;
 import io.camunda.zeebe.model.bpmn.BpmnModelInstance;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.camunda.community.eze.EngineFactory;
 import org.camunda.community.eze.ZeebeEngine;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -58,6 +60,18 @@ public class MyBenchmark {
         .join();
   }
 
+  /**
+   * Samples the duration of single instances, to see the percentiles next to the throughput. Like
+   * the throughput, it only measures the next instance after the previous one completed, so a stall
+   * is sampled once: see {@link LatencyHarness} for latencies under a fixed arrival rate.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public ProcessInstanceResult testEngineLatency(Engine engine) {
+    return testEngineThroughput(engine);
+  }
+
   @State(Scope.Thread)
   public static class Engine {
 